@@ -0,0 +1,154 @@
+package dk.easv.demo.benchmark;
+
+import dk.easv.demo.DAL.db.EmbeddedSchema;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Embedded H2 database seeded with a synthetic library, using the schema of
+ * the embedded backend.
+ * Points DBConnector at the embedded database through -Ddatabase.config,
+ * so the real DAO classes run unchanged against it.
+ */
+public final class BenchmarkDatabase {
+
+    static final String URL = "jdbc:h2:mem:mytunes-bench;DB_CLOSE_DELAY=-1;MODE=MSSQLServer";
+
+    private static final String[] WORDS = {
+            "love", "night", "dance", "fire", "blue", "sky", "heart", "road", "rain", "gold",
+            "summer", "river", "light", "shadow", "dream", "city", "wild", "young", "home", "stone"
+    };
+    private static final int CATEGORY_COUNT = 25;
+    private static final int BATCH_SIZE = 5_000;
+
+    private static boolean configured = false;
+    private static int seededLibrarySize = -1;
+    private static int[] seededPlaylistSizes = new int[0];
+
+    private BenchmarkDatabase() {}
+
+    /**
+     * Makes sure the embedded database holds a library of the given shape
+     * @param librarySize Number of songs
+     * @param playlistSizes One playlist is created per entry, with that many songs
+     * @return Ids of the created playlists, in the order of playlistSizes
+     */
+    public static synchronized int[] prepare(int librarySize, int... playlistSizes) throws IOException, SQLException {
+        configure();
+
+        try (Connection conn = DriverManager.getConnection(URL)) {
+            EmbeddedSchema.create(conn);
+            if (librarySize != seededLibrarySize || !Arrays.equals(playlistSizes, seededPlaylistSizes)) {
+                seed(conn, librarySize, playlistSizes);
+                seededLibrarySize = librarySize;
+                seededPlaylistSizes = playlistSizes.clone();
+            }
+            return playlistIds(conn);
+        }
+    }
+
+    // Must run before DBConnector is first used
+    private static void configure() throws IOException {
+        if (configured) {
+            return;
+        }
+        Path config = Files.createTempFile("mytunes-bench", ".properties");
+        Files.writeString(config, "Url=" + URL + "\nPoolMinSize=1\nPoolMaxSize=4\n");
+        config.toFile().deleteOnExit();
+        System.setProperty("database.config", config.toString());
+        configured = true;
+    }
+
+    private static void seed(Connection conn, int librarySize, int[] playlistSizes) throws SQLException {
+        Random random = new Random(42);
+        int artistCount = Math.max(10, librarySize / 30);
+
+        try (Statement stmt = conn.createStatement()) {
+            // The shared schema has foreign keys, which H2 only lets TRUNCATE past with checks off
+            stmt.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            stmt.execute("TRUNCATE TABLE song_files");
+            stmt.execute("TRUNCATE TABLE playlist_songs");
+            stmt.execute("TRUNCATE TABLE playlists RESTART IDENTITY");
+            stmt.execute("TRUNCATE TABLE songs RESTART IDENTITY");
+            stmt.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+
+        conn.setAutoCommit(false);
+        String songSql = "INSERT INTO songs (title, artist, category, duration_seconds, file_path) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(songSql)) {
+            for (int i = 1; i <= librarySize; i++) {
+                String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+                stmt.setString(1, title);
+                stmt.setString(2, "Artist " + random.nextInt(artistCount));
+                stmt.setString(3, "Category " + random.nextInt(CATEGORY_COUNT));
+                stmt.setInt(4, 90 + random.nextInt(510));
+                stmt.setString(5, "C:\\MyTunesMusic\\track" + i + ".mp3");
+                stmt.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+
+        String playlistSql = "INSERT INTO playlists (name) VALUES (?)";
+        String entrySql = "INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (?, ?, ?)";
+        try (PreparedStatement playlistStmt = conn.prepareStatement(playlistSql, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement entryStmt = conn.prepareStatement(entrySql)) {
+
+            for (int size : playlistSizes) {
+                playlistStmt.setString(1, "Synthetic " + size);
+                playlistStmt.executeUpdate();
+                int playlistId;
+                try (ResultSet keys = playlistStmt.getGeneratedKeys()) {
+                    keys.next();
+                    playlistId = keys.getInt(1);
+                }
+
+                Set<Integer> songIds = new LinkedHashSet<>();
+                int target = Math.min(size, librarySize);
+                while (songIds.size() < target) {
+                    songIds.add(1 + random.nextInt(librarySize));
+                }
+
+                int position = 0;
+                for (int songId : songIds) {
+                    entryStmt.setInt(1, playlistId);
+                    entryStmt.setInt(2, songId);
+                    entryStmt.setInt(3, position++);
+                    entryStmt.addBatch();
+                    if (position % BATCH_SIZE == 0) {
+                        entryStmt.executeBatch();
+                    }
+                }
+                entryStmt.executeBatch();
+            }
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+
+    private static int[] playlistIds(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id FROM playlists ORDER BY id")) {
+            int[] ids = new int[seededPlaylistSizes.length];
+            int i = 0;
+            while (rs.next() && i < ids.length) {
+                ids[i++] = rs.getInt(1);
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package dk.easv.demo.benchmark;
+
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.db.PlaylistDAO_DB;
+import dk.easv.demo.DAL.db.SongDAO_DB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playlist reads through PlaylistDAO_DB and the in-memory total time calculation
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PlaylistBenchmark {
+
+    // Library always holds one playlist of each size
+    private static final int[] PLAYLIST_SIZES = {100, 1_000, 10_000};
+
+    @Param({"100000"})
+    public int librarySize;
+
+    @Param({"100", "1000", "10000"})
+    public int playlistSize;
+
+    private PlaylistDAO_DB playlistDAO;
+    private List<Song> allSongs;
+    private int playlistId;
+    private Playlist playlist;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int[] playlistIds = BenchmarkDatabase.prepare(librarySize, PLAYLIST_SIZES);
+        for (int i = 0; i < PLAYLIST_SIZES.length; i++) {
+            if (PLAYLIST_SIZES[i] == playlistSize) {
+                playlistId = playlistIds[i];
+            }
+        }
+
+        playlistDAO = new PlaylistDAO_DB();
+        allSongs = new SongDAO_DB().getAllSongs();
+
+        playlist = new Playlist(playlistId, "Benchmark");
+        playlist.setSongs(playlistDAO.getSongsInPlaylist(playlistId));
+    }
+
+    @Benchmark
+    public int calculateTotalTime() {
+        playlist.calculateTotalTime();
+        return playlist.getTotalTime();
+    }
+
+    @Benchmark
+    public List<Song> getSongsInPlaylist() throws Exception {
+        return playlistDAO.getSongsInPlaylist(playlistId);
+    }
+
+    @Benchmark
+    public List<Playlist> getAllPlaylistsWithSongs() throws Exception {
+        return playlistDAO.getAllPlaylistsWithSongs(allSongs);
+    }
+}
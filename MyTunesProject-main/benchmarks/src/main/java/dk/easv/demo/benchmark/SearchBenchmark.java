@@ -0,0 +1,54 @@
+package dk.easv.demo.benchmark;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.BLL.MusicManager;
+import dk.easv.demo.DAL.db.SongDAO_DB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MusicManager.searchSongs as typed in the filter field
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int librarySize;
+
+    // Whole word, short prefix, two words, rare prefix
+    @Param({"love", "lo", "night ro", "artist 12"})
+    public String query;
+
+    private MusicManager musicManager;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkDatabase.prepare(librarySize);
+        SongDAO_DB songDAO = new SongDAO_DB();
+        musicManager = new MusicManager(songDAO);
+        musicManager.buildSearchIndex(songDAO.getAllSongs());
+    }
+
+    @Benchmark
+    public List<Song> searchSongs() {
+        return musicManager.searchSongs(query);
+    }
+}
@@ -0,0 +1,68 @@
+package dk.easv.demo.benchmark;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.db.SongDAO_DB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Song reads through SongDAO_DB; every returned row goes through mapResultSetToSong
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SongDaoBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int librarySize;
+
+    private SongDAO_DB songDAO;
+    private int nextId = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkDatabase.prepare(librarySize);
+        songDAO = new SongDAO_DB();
+    }
+
+    @Benchmark
+    public List<Song> getAllSongs() throws Exception {
+        return songDAO.getAllSongs();
+    }
+
+    @Benchmark
+    public void getAllSongsInChunks(Blackhole blackhole) throws Exception {
+        songDAO.getAllSongsInChunks(500, blackhole::consume);
+    }
+
+    @Benchmark
+    public void streamAllSongs(Blackhole blackhole) throws Exception {
+        try (Stream<Song> songs = songDAO.streamAllSongs(500)) {
+            songs.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public Song getSongById() throws Exception {
+        nextId = nextId % librarySize + 1;
+        return songDAO.getSongById(nextId);
+    }
+}
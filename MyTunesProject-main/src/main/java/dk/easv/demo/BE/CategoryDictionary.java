@@ -0,0 +1,58 @@
+package dk.easv.demo.BE;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Application-wide dictionary of song categories. Each distinct category
+ * string gets a small int id the first time it is seen, and songs store
+ * that id instead of the string, so every song of a category shares one
+ * String instance and grouping or filtering by category compares ints.
+ * Libraries have a few dozen categories, so the dictionary stays small.
+ * Id 0 stands for "no category" (null).
+ */
+public final class CategoryDictionary {
+
+    public static final int NONE = 0;
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // id -> category, copied on growth; published through the volatile write
+    private static volatile String[] names = new String[64];
+    private static int size = 1;
+
+    private CategoryDictionary() {
+    }
+
+    // Id of a category, adding it if it is new
+    public static int idOf(String category) {
+        if (category == null) {
+            return NONE;
+        }
+        Integer id = ids.get(category);
+        return id != null ? id : add(category);
+    }
+
+    private static synchronized int add(String category) {
+        Integer id = ids.get(category);
+        if (id != null) {
+            return id;
+        }
+
+        String[] current = names;
+        if (size == current.length) {
+            String[] grown = new String[current.length * 2];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+        }
+        current[size] = category;
+        names = current;
+        ids.put(category, size);
+        return size++;
+    }
+
+    // Category of an id, null for NONE
+    public static String nameOf(int id) {
+        return names[id];
+    }
+}
@@ -0,0 +1,136 @@
+package dk.easv.demo.BE;
+
+/**
+ * Converts durations between seconds and "M:SS" / "H:MM:SS" text.
+ * Parsing walks the characters directly (no split or substring), and
+ * formatted strings below one hour are cached, so neither allocates per call
+ * on the common paths.
+ */
+public final class DurationConverter {
+
+    // Formatted "M:SS" strings for 0..59:59, filled on first use
+    private static final int CACHED_SECONDS = 3600;
+    private static final String[] MINUTES_CACHE = new String[CACHED_SECONDS];
+
+    private DurationConverter() {}
+
+    /**
+     * Parses "SS", "MM:SS" or "H:MM:SS" (surrounding whitespace allowed)
+     * @param text Duration text
+     * @return Duration in seconds, or -1 if the text is empty or not a valid duration
+     */
+    public static int parseSeconds(CharSequence text) {
+        if (text == null) {
+            return -1;
+        }
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+
+        long total = 0;
+        int field = 0;
+        int digits = 0;
+        int separators = 0;
+
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                field = field * 10 + (c - '0');
+                if (++digits > 6) {
+                    return -1;
+                }
+            } else if (c == ':' && digits > 0 && separators < 2) {
+                total = total * 60 + field;
+                field = 0;
+                digits = 0;
+                separators++;
+            } else {
+                return -1;
+            }
+        }
+
+        if (digits == 0) {
+            return -1;
+        }
+
+        total = total * 60 + field;
+        return total > Integer.MAX_VALUE ? -1 : (int) total;
+    }
+
+    /**
+     * Formats seconds as "M:SS" (minutes are not wrapped into hours)
+     * @param seconds Duration in seconds, negative values are treated as 0
+     * @return Formatted duration, e.g. "3:45"
+     */
+    public static String formatMinutes(int seconds) {
+        if (seconds < 0) {
+            seconds = 0;
+        }
+
+        if (seconds < CACHED_SECONDS) {
+            String cached = MINUTES_CACHE[seconds];
+            if (cached == null) {
+                cached = buildMinutes(seconds);
+                MINUTES_CACHE[seconds] = cached;
+            }
+            return cached;
+        }
+        return buildMinutes(seconds);
+    }
+
+    /**
+     * Formats seconds as "H:MM:SS", or "M:SS" when shorter than an hour
+     * @param seconds Duration in seconds, negative values are treated as 0
+     * @return Formatted duration, e.g. "1:02:03"
+     */
+    public static String formatWithHours(int seconds) {
+        if (seconds < CACHED_SECONDS) {
+            return formatMinutes(seconds);
+        }
+
+        int hours = seconds / 3600;
+        int minutes = (seconds % 3600) / 60;
+        int secs = seconds % 60;
+
+        char[] buffer = new char[16];
+        int pos = writeNumber(buffer, 0, hours);
+        buffer[pos++] = ':';
+        pos = writeTwoDigits(buffer, pos, minutes);
+        buffer[pos++] = ':';
+        pos = writeTwoDigits(buffer, pos, secs);
+        return new String(buffer, 0, pos);
+    }
+
+    private static String buildMinutes(int seconds) {
+        char[] buffer = new char[16];
+        int pos = writeNumber(buffer, 0, seconds / 60);
+        buffer[pos++] = ':';
+        pos = writeTwoDigits(buffer, pos, seconds % 60);
+        return new String(buffer, 0, pos);
+    }
+
+    private static int writeTwoDigits(char[] buffer, int pos, int value) {
+        buffer[pos++] = (char) ('0' + value / 10);
+        buffer[pos++] = (char) ('0' + value % 10);
+        return pos;
+    }
+
+    private static int writeNumber(char[] buffer, int pos, int value) {
+        if (value == 0) {
+            buffer[pos++] = '0';
+            return pos;
+        }
+
+        int digits = 0;
+        for (int v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
@@ -0,0 +1,56 @@
+package dk.easv.demo.BE;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What changed in the library between two versions.
+ * Changed songs are new or updated ones. Changed playlists are new ones and
+ * ones whose name, songs or total time changed, with their song count and
+ * total time but not their songs. Playlist contents hold the full song
+ * order of every playlist whose songs changed, including new playlists.
+ */
+public final class LibraryChanges {
+    private final long version;
+    private final List<Song> changedSongs;
+    private final Set<Integer> deletedSongIds;
+    private final List<Playlist> changedPlaylists;
+    private final Set<Integer> deletedPlaylistIds;
+    private final Map<Integer, List<Integer>> playlistContents;
+
+    public LibraryChanges(long version, List<Song> changedSongs, Set<Integer> deletedSongIds,
+                          List<Playlist> changedPlaylists, Set<Integer> deletedPlaylistIds,
+                          Map<Integer, List<Integer>> playlistContents) {
+        this.version = version;
+        this.changedSongs = changedSongs;
+        this.deletedSongIds = deletedSongIds;
+        this.changedPlaylists = changedPlaylists;
+        this.deletedPlaylistIds = deletedPlaylistIds;
+        this.playlistContents = playlistContents;
+    }
+
+    // Version the library is at once these changes are applied
+    public long getVersion() { return version; }
+    public List<Song> getChangedSongs() { return changedSongs; }
+    public Set<Integer> getDeletedSongIds() { return deletedSongIds; }
+    public List<Playlist> getChangedPlaylists() { return changedPlaylists; }
+    public Set<Integer> getDeletedPlaylistIds() { return deletedPlaylistIds; }
+    public Map<Integer, List<Integer>> getPlaylistContents() { return playlistContents; }
+
+    public boolean hasSongChanges() {
+        return !changedSongs.isEmpty() || !deletedSongIds.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return !hasSongChanges() && changedPlaylists.isEmpty() && deletedPlaylistIds.isEmpty()
+                && playlistContents.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return changedSongs.size() + " songs changed, " + deletedSongIds.size() + " deleted, "
+                + changedPlaylists.size() + " playlists changed, " + deletedPlaylistIds.size() + " deleted, "
+                + playlistContents.size() + " with new contents";
+    }
+}
@@ -2,11 +2,19 @@ package dk.easv.demo.BE;
 
 import javafx.beans.property.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a music playlist containing multiple songs.
- * Automatically tracks song count and total duration.
+ * Song count and total duration are kept up to date incrementally as songs
+ * are added and removed, together with how often each song id occurs, so
+ * membership checks and updates do not walk the song list. The songs
+ * themselves may not be loaded: a playlist read with its totals only knows
+ * its song ids, and the song list stays empty until setSongs is called.
  */
 public class Playlist {
     private final IntegerProperty id = new SimpleIntegerProperty();
@@ -16,6 +24,9 @@ public class Playlist {
     private final IntegerProperty totalTime = new SimpleIntegerProperty();
     private final StringProperty totalDuration = new SimpleStringProperty();
 
+    // song id -> number of times the song is in the playlist
+    private final Map<Integer, Integer> occurrences = new HashMap<>();
+
     public Playlist(int id, String name) {
         setId(id);
         setName(name);
@@ -45,10 +56,33 @@ public class Playlist {
     public void setSongs(List<Song> songs) {
         this.songs.clear();
         this.songs.addAll(songs);
+        occurrences.clear();
+        for (Song song : songs) {
+            occurrences.merge(song.getId(), 1, Integer::sum);
+        }
         setSongCount(songs.size());
         calculateTotalTime();
     }
 
+    /**
+     * Records which songs the playlist contains when only their ids are
+     * loaded; song count and total time are set separately. Any loaded
+     * songs are dropped, as they may no longer match the ids.
+     * @param songIds Song ids in the playlist, a song once per occurrence
+     */
+    public void setSongIds(Collection<Integer> songIds) {
+        songs.clear();
+        occurrences.clear();
+        for (Integer songId : songIds) {
+            occurrences.merge(songId, 1, Integer::sum);
+        }
+    }
+
+    // Ids of the songs in the playlist, loaded or not
+    public Set<Integer> getSongIds() { return occurrences.keySet(); }
+
+    public boolean containsSong(int songId) { return occurrences.containsKey(songId); }
+
     public void setTotalTime(int totalSeconds) {
         this.totalTime.set(totalSeconds);
         this.totalDuration.set(formatSecondsToDuration(totalSeconds));
@@ -56,17 +90,46 @@ public class Playlist {
 
     public void addSong(Song song) {
         songs.add(song);
-        setSongCount(songs.size());
+        occurrences.merge(song.getId(), 1, Integer::sum);
+        setSongCount(getSongCount() + 1);
         setTotalTime(getTotalTime() + song.getDuration());
     }
 
+    // Removes one occurrence of the song
     public void removeSong(Song song) {
-        if (songs.remove(song)) {
-            setSongCount(songs.size());
-            setTotalTime(getTotalTime() - song.getDuration());
+        Integer count = occurrences.get(song.getId());
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            occurrences.remove(song.getId());
+        } else {
+            occurrences.put(song.getId(), count - 1);
+        }
+        songs.remove(song);
+        setSongCount(getSongCount() - 1);
+        setTotalTime(getTotalTime() - song.getDuration());
+    }
+
+    /**
+     * Removes every occurrence of a song, e.g. after it was deleted from the library
+     * @param song Song to remove
+     * @return Number of occurrences removed, 0 if the playlist did not contain it
+     */
+    public int removeAllOccurrences(Song song) {
+        Integer count = occurrences.remove(song.getId());
+        if (count == null) {
+            return 0;
+        }
+        if (!songs.isEmpty()) {
+            songs.removeIf(s -> s.getId() == song.getId());
         }
+        setSongCount(getSongCount() - count);
+        setTotalTime(getTotalTime() - count * song.getDuration());
+        return count;
     }
 
+    // Re-sums the loaded songs; only needed when the songs were changed outside this class
     public void calculateTotalTime() {
         int totalSeconds = 0;
         for (Song song : songs) {
@@ -77,9 +140,7 @@ public class Playlist {
 
     private String formatSecondsToDuration(int seconds) {
         if (seconds <= 0) return "00:00";
-        int minutes = seconds / 60;
-        int secs = seconds % 60;
-        return String.format("%d:%02d", minutes, secs);
+        return DurationConverter.formatMinutes(seconds);
     }
 
     @Override
@@ -2,85 +2,118 @@ package dk.easv.demo.BE;
 
 import javafx.beans.property.*;
 
+import java.util.Comparator;
+
 /**
  * Represents a music track with metadata and file information.
- * Uses JavaFX properties for automatic UI binding.
+ * Values are kept in plain fields; the JavaFX properties used for UI binding
+ * are created together on first use, so only songs that are actually shown
+ * in a table or list cell pay for them. Once created, the properties hold
+ * the values. The category is stored as its CategoryDictionary id.
  */
 public class Song {
-    private final IntegerProperty id = new SimpleIntegerProperty();
-    private final StringProperty title = new SimpleStringProperty();
-    private final StringProperty artist = new SimpleStringProperty();
-    private final StringProperty category = new SimpleStringProperty();
-    private final IntegerProperty duration = new SimpleIntegerProperty();
-    private final StringProperty filePath = new SimpleStringProperty();
-    private final StringProperty formattedDuration = new SimpleStringProperty();
+    /**
+     * Order of the songs table: title ignoring case as on SQL Server's default
+     * collation, ties broken by id. Every sorted copy of the library uses it,
+     * so lists from different sources can be merged.
+     */
+    public static final Comparator<Song> TITLE_ORDER = Comparator
+            .comparing((Song song) -> song.getTitle() == null ? "" : song.getTitle(), String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(Song::getId);
+
+    private int id;
+    private String title;
+    private String artist;
+    private int categoryId;
+    private int duration;
+    private String filePath;
+
+    private Properties properties;
 
     public Song() {}
 
     public Song(String title, String artist, String category, int duration, String filePath) {
-        setTitle(title);
-        setArtist(artist);
-        setCategory(category);
-        setDuration(duration);
-        setFilePath(filePath);
-        updateFormattedDuration();
+        this.title = title;
+        this.artist = artist;
+        this.categoryId = CategoryDictionary.idOf(category);
+        this.duration = duration;
+        this.filePath = filePath;
     }
 
     public Song(int id, String title, String artist, String category, int duration, String filePath) {
-        setId(id);
-        setTitle(title);
-        setArtist(artist);
-        setCategory(category);
-        setDuration(duration);
-        setFilePath(filePath);
-        updateFormattedDuration();
-    }
-
-    public IntegerProperty idProperty() { return id; }
-    public StringProperty titleProperty() { return title; }
-    public StringProperty artistProperty() { return artist; }
-    public StringProperty categoryProperty() { return category; }
-    public IntegerProperty durationProperty() { return duration; }
-    public StringProperty filePathProperty() { return filePath; }
-    public StringProperty formattedDurationProperty() { return formattedDuration; }
-
-    public int getId() { return id.get(); }
-    public String getTitle() { return title.get(); }
-    public String getArtist() { return artist.get(); }
-    public String getCategory() { return category.get(); }
-    public int getDuration() { return duration.get(); }
-    public String getFilePath() { return filePath.get(); }
-    public String getFormattedDuration() { return formattedDuration.get(); }
-
-    public void setId(int id) { this.id.set(id); }
-    public void setTitle(String title) { this.title.set(title); }
-    public void setArtist(String artist) { this.artist.set(artist); }
-    public void setCategory(String category) { this.category.set(category); }
-    public void setFilePath(String filePath) { this.filePath.set(filePath); }
+        this(title, artist, category, duration, filePath);
+        this.id = id;
+    }
 
-    public void setDuration(int duration) {
-        this.duration.set(duration);
-        updateFormattedDuration();
+    public IntegerProperty idProperty() { return properties().id; }
+    public StringProperty titleProperty() { return properties().title; }
+    public StringProperty artistProperty() { return properties().artist; }
+    public StringProperty categoryProperty() { return properties().category; }
+    public IntegerProperty durationProperty() { return properties().duration; }
+    public StringProperty filePathProperty() { return properties().filePath; }
+    public StringProperty formattedDurationProperty() { return properties().formattedDuration; }
+
+    public int getId() { return properties != null ? properties.id.get() : id; }
+    public String getTitle() { return properties != null ? properties.title.get() : title; }
+    public String getArtist() { return properties != null ? properties.artist.get() : artist; }
+    public String getCategory() {
+        return properties != null ? properties.category.get() : CategoryDictionary.nameOf(categoryId);
+    }
+    public int getDuration() { return properties != null ? properties.duration.get() : duration; }
+    public String getFilePath() { return properties != null ? properties.filePath.get() : filePath; }
+
+    // Category as a CategoryDictionary id, for grouping and filtering without string comparisons
+    public int getCategoryId() {
+        return properties != null ? CategoryDictionary.idOf(properties.category.get()) : categoryId;
+    }
+
+    public String getFormattedDuration() {
+        return properties != null ? properties.formattedDuration.get() : getFormattedDurationFromSeconds();
+    }
+
+    public void setId(int id) {
+        if (properties != null) properties.id.set(id); else this.id = id;
+    }
+
+    public void setTitle(String title) {
+        if (properties != null) properties.title.set(title); else this.title = title;
     }
 
-    private void updateFormattedDuration() {
-        this.formattedDuration.set(getFormattedDurationFromSeconds());
+    public void setArtist(String artist) {
+        if (properties != null) properties.artist.set(artist); else this.artist = artist;
+    }
+
+    public void setCategory(String category) {
+        if (properties != null) properties.category.set(category); else this.categoryId = CategoryDictionary.idOf(category);
+    }
+
+    public void setFilePath(String filePath) {
+        if (properties != null) properties.filePath.set(filePath); else this.filePath = filePath;
+    }
+
+    public void setDuration(int duration) {
+        if (properties != null) {
+            properties.duration.set(duration);
+            properties.formattedDuration.set(getFormattedDurationFromSeconds());
+        } else {
+            this.duration = duration;
+        }
     }
 
     public String getFormattedDurationFromSeconds() {
-        int minutes = getDuration() / 60;
-        int seconds = getDuration() % 60;
-        return String.format("%d:%02d", minutes, seconds);
+        return DurationConverter.formatMinutes(getDuration());
     }
 
     public String getFormattedDurationWithHours() {
-        int hours = getDuration() / 3600;
-        int minutes = (getDuration() % 3600) / 60;
-        int seconds = getDuration() % 60;
+        return DurationConverter.formatWithHours(getDuration());
+    }
 
-        return hours > 0
-                ? String.format("%d:%02d:%02d", hours, minutes, seconds)
-                : String.format("%d:%02d", minutes, seconds);
+    // Create the properties from the field values on first use; the fields are not read after that
+    private Properties properties() {
+        if (properties == null) {
+            properties = new Properties(this);
+        }
+        return properties;
     }
 
     @Override
@@ -100,4 +133,26 @@ public class Song {
     public int hashCode() {
         return getId();
     }
-}
\ No newline at end of file
+
+    // JavaFX properties of a song that is bound to the UI
+    private static final class Properties {
+        final IntegerProperty id;
+        final StringProperty title;
+        final StringProperty artist;
+        final StringProperty category;
+        final IntegerProperty duration;
+        final StringProperty filePath;
+        final StringProperty formattedDuration;
+
+        Properties(Song song) {
+            id = new SimpleIntegerProperty(song, "id", song.id);
+            title = new SimpleStringProperty(song, "title", song.title);
+            artist = new SimpleStringProperty(song, "artist", song.artist);
+            category = new SimpleStringProperty(song, "category", CategoryDictionary.nameOf(song.categoryId));
+            duration = new SimpleIntegerProperty(song, "duration", song.duration);
+            filePath = new SimpleStringProperty(song, "filePath", song.filePath);
+            formattedDuration = new SimpleStringProperty(song, "formattedDuration",
+                    DurationConverter.formatMinutes(song.duration));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dk.easv.demo.BE;
+
+/**
+ * File state of a song as recorded by the last library scan.
+ * Size, modification time and content hash are -1/0 for songs that have
+ * not been scanned yet.
+ */
+public final class SongFile {
+    private final int songId;
+    private final String filePath;
+    private final long fileSize;
+    private final long modifiedMillis;
+    private final long contentHash;
+
+    // Song without recorded file state
+    public SongFile(int songId, String filePath) {
+        this(songId, filePath, -1, 0, 0);
+    }
+
+    public SongFile(int songId, String filePath, long fileSize, long modifiedMillis, long contentHash) {
+        this.songId = songId;
+        this.filePath = filePath;
+        this.fileSize = fileSize;
+        this.modifiedMillis = modifiedMillis;
+        this.contentHash = contentHash;
+    }
+
+    public int getSongId() { return songId; }
+    public String getFilePath() { return filePath; }
+    public long getFileSize() { return fileSize; }
+    public long getModifiedMillis() { return modifiedMillis; }
+    public long getContentHash() { return contentHash; }
+
+    public boolean hasState() {
+        return fileSize >= 0;
+    }
+
+    // True if size and modification time still match, so the file is assumed unchanged
+    public boolean matches(long fileSize, long modifiedMillis) {
+        return this.fileSize == fileSize && this.modifiedMillis == modifiedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SongFile{songId=" + songId + ", filePath='" + filePath + "', size=" + fileSize + "}";
+    }
+}
@@ -0,0 +1,216 @@
+package dk.easv.demo.BLL;
+
+import dk.easv.demo.BE.LibraryChanges;
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.BLL.cache.StartupSnapshot;
+import dk.easv.demo.DAL.DataAccessFactory;
+import dk.easv.demo.DAL.DeltaSyncService;
+import dk.easv.demo.DAL.IChangeDataAccess;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings a saved copy of the library up to date by reading only what
+ * changed in the database since the version the copy was saved at, the
+ * same way DeltaSyncService keeps a running client up to date.
+ */
+public class LibraryReconciler {
+    private final IChangeDataAccess changeDAO;
+
+    public LibraryReconciler() {
+        this(DataAccessFactory.createChangeDataAccess());
+    }
+
+    public LibraryReconciler(IChangeDataAccess changeDAO) {
+        this.changeDAO = changeDAO;
+    }
+
+    // Current change version, or -1 when the database does not track changes; read it before the data it describes
+    public long getCurrentVersion() {
+        if (changeDAO == null) {
+            return -1;
+        }
+        try {
+            return changeDAO.isChangeTrackingAvailable() ? changeDAO.getCurrentVersion() : -1;
+        } catch (SQLException e) {
+            System.err.println("Failed to read the library version: " + e.getMessage());
+            throw new RuntimeException("Database error while reading the library version", e);
+        }
+    }
+
+    /**
+     * Reads what changed since a version of the library
+     * @param version Version of the local copy, read before the copy was loaded
+     * @param songIds IDs of the songs in the local copy
+     * @param playlists Playlists of the local copy with their song ids
+     * @return Changes that bring the copy up to the returned version
+     */
+    public LibraryChanges getChangesSince(long version, Set<Integer> songIds, Collection<Playlist> playlists) {
+        Map<Integer, Integer> playlistSizes = new HashMap<>();
+        for (Playlist playlist : playlists) {
+            playlistSizes.put(playlist.getId(), playlist.getSongIds().size());
+        }
+        try {
+            return DeltaSyncService.readChanges(changeDAO, version, songIds, playlistSizes);
+        } catch (SQLException e) {
+            System.err.println("Failed to read library changes: " + e.getMessage());
+            throw new RuntimeException("Database error while reading library changes", e);
+        }
+    }
+
+    /**
+     * Reads the song order of playlists, e.g. to save them in a startup snapshot
+     * @param playlists Playlists to read
+     * @return Playlist ID to song IDs in playlist order
+     */
+    public Map<Integer, List<Integer>> getPlaylistSongIds(Collection<Playlist> playlists) {
+        List<Integer> playlistIds = new ArrayList<>(playlists.size());
+        for (Playlist playlist : playlists) {
+            playlistIds.add(playlist.getId());
+        }
+        try {
+            return playlistIds.isEmpty() ? new HashMap<>() : changeDAO.getPlaylistSongIds(playlistIds);
+        } catch (SQLException e) {
+            System.err.println("Failed to read playlist contents: " + e.getMessage());
+            throw new RuntimeException("Database error while reading playlist contents", e);
+        }
+    }
+
+    /**
+     * Applies the song changes to a list in songs table order
+     * @param songs Songs of the local copy in title order
+     * @param changes Changes to apply
+     * @return New list in title order; unchanged songs are the same objects
+     */
+    public static List<Song> applyToSongs(List<Song> songs, LibraryChanges changes) {
+        if (!changes.hasSongChanges()) {
+            return songs;
+        }
+        Set<Integer> replaced = new HashSet<>(changes.getDeletedSongIds());
+        List<Song> changed = new ArrayList<>();
+        for (Song song : changes.getChangedSongs()) {
+            replaced.add(song.getId());
+            if (!changes.getDeletedSongIds().contains(song.getId())) {
+                changed.add(song);
+            }
+        }
+        changed.sort(Song.TITLE_ORDER);
+
+        // Merge the changed songs into the rest, which is already in order
+        List<Song> merged = new ArrayList<>(songs.size() + changed.size());
+        int next = 0;
+        for (Song song : songs) {
+            if (replaced.contains(song.getId())) {
+                continue;
+            }
+            while (next < changed.size() && Song.TITLE_ORDER.compare(changed.get(next), song) < 0) {
+                merged.add(changed.get(next++));
+            }
+            merged.add(song);
+        }
+        merged.addAll(changed.subList(next, changed.size()));
+        return merged;
+    }
+
+    /**
+     * Brings a startup snapshot up to date and saves the result as the next
+     * snapshot if anything changed
+     * @param snapshot Snapshot with a library version
+     * @param source Name of the database, saved with the snapshot
+     * @return The changes and the updated library
+     */
+    public Result revalidate(StartupSnapshot snapshot, String source) {
+        List<Song> savedSongs = new ArrayList<>(snapshot.getSongs());
+        Set<Integer> songIds = new HashSet<>(savedSongs.size() * 2);
+        for (Song song : savedSongs) {
+            songIds.add(song.getId());
+        }
+        List<Playlist> savedPlaylists = snapshot.getPlaylists();
+
+        LibraryChanges changes = getChangesSince(snapshot.getLibraryVersion(), songIds, savedPlaylists);
+        List<Song> songs = applyToSongs(savedSongs, changes);
+        Map<Integer, Song> songsById = new HashMap<>(songs.size() * 2);
+        for (Song song : songs) {
+            songsById.put(song.getId(), song);
+        }
+
+        if (!changes.isEmpty()) {
+            List<Playlist> playlists = new ArrayList<>();
+            Map<Integer, String> newNames = new HashMap<>();
+            for (Playlist playlist : changes.getChangedPlaylists()) {
+                newNames.put(playlist.getId(), playlist.getName());
+            }
+            for (Playlist saved : savedPlaylists) {
+                if (!changes.getDeletedPlaylistIds().contains(saved.getId())) {
+                    String name = newNames.getOrDefault(saved.getId(), saved.getName());
+                    playlists.add(withSongs(saved.getId(), name, changes.getPlaylistContents().get(saved.getId()),
+                            snapshot.getSongsInPlaylist(saved.getId()), songsById));
+                    newNames.remove(saved.getId());
+                }
+            }
+            for (Map.Entry<Integer, String> created : newNames.entrySet()) {
+                playlists.add(withSongs(created.getKey(), created.getValue(),
+                        changes.getPlaylistContents().get(created.getKey()), List.of(), songsById));
+            }
+
+            try {
+                StartupSnapshot.write(source, changes.getVersion(), songs, playlists);
+            } catch (IOException e) {
+                System.err.println("Failed to save startup snapshot: " + e.getMessage());
+            }
+        }
+        return new Result(changes, songs, songsById);
+    }
+
+    // Playlist for saving, with new contents if there are any and the saved ones otherwise
+    private static Playlist withSongs(int id, String name, List<Integer> newSongIds, List<Song> savedSongs,
+                                      Map<Integer, Song> songsById) {
+        List<Song> songs = new ArrayList<>();
+        if (newSongIds != null) {
+            for (Integer songId : newSongIds) {
+                Song song = songsById.get(songId);
+                if (song != null) {
+                    songs.add(song);
+                }
+            }
+        } else {
+            for (Song saved : savedSongs) {
+                if (songsById.containsKey(saved.getId())) {
+                    songs.add(songsById.get(saved.getId()));
+                }
+            }
+        }
+        Playlist playlist = new Playlist(id, name);
+        playlist.setSongs(songs);
+        return playlist;
+    }
+
+    // Outcome of revalidate()
+    public static final class Result {
+        private final LibraryChanges changes;
+        private final List<Song> songs;
+        private final Map<Integer, Song> songsById;
+
+        private Result(LibraryChanges changes, List<Song> songs, Map<Integer, Song> songsById) {
+            this.changes = changes;
+            this.songs = songs;
+            this.songsById = songsById;
+        }
+
+        public LibraryChanges getChanges() { return changes; }
+
+        // Whole library in title order
+        public List<Song> getSongs() { return songs; }
+
+        public Map<Integer, Song> getSongsById() { return songsById; }
+    }
+}
@@ -1,12 +1,18 @@
 package dk.easv.demo.BLL;
 
+import dk.easv.demo.BE.LibraryChanges;
 import dk.easv.demo.BE.Song;
+import dk.easv.demo.BLL.cache.CachingSongDataAccess;
+import dk.easv.demo.BLL.cache.LibraryCache;
+import dk.easv.demo.DAL.DataAccessFactory;
 import dk.easv.demo.DAL.ISongDataAccess;
-import dk.easv.demo.DAL.db.SongDAO_DB;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Business logic layer for music operations.
@@ -14,10 +20,16 @@ import java.util.stream.Collectors;
  * between the UI and data access layer.
  */
 public class MusicManager {
+    // Rows per round trip when streaming the library
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final ISongDataAccess songDAO;
+    private final SongSearchIndex searchIndex = new SongSearchIndex();
 
     public MusicManager() {
-        this.songDAO = new SongDAO_DB();
+        // The in-memory backend is already a cache of itself
+        ISongDataAccess dao = DataAccessFactory.createSongDataAccess();
+        this.songDAO = DataAccessFactory.isInMemory() ? dao : new CachingSongDataAccess(dao, LibraryCache.getDefault());
     }
 
     public MusicManager(ISongDataAccess songDAO) {
@@ -33,33 +45,159 @@ public class MusicManager {
         }
     }
 
+    public void getAllSongsInChunks(int chunkSize, Consumer<List<Song>> chunkConsumer) {
+        try {
+            songDAO.getAllSongsInChunks(chunkSize, chunkConsumer);
+        } catch (SQLException e) {
+            System.err.println("Failed to retrieve songs: " + e.getMessage());
+            throw new RuntimeException("Database error while loading songs", e);
+        }
+    }
+
+    /**
+     * Streams the library in chunks and rebuilds the search index from them
+     * as they pass, so the caller does not need to keep the songs
+     * @param chunkSize Songs per chunk
+     * @param chunkConsumer Receives each chunk after it was indexed
+     */
+    public void indexAllSongsInChunks(int chunkSize, Consumer<List<Song>> chunkConsumer) {
+        searchIndex.beginRebuild(0);
+        getAllSongsInChunks(chunkSize, chunk -> {
+            searchIndex.addAll(chunk);
+            chunkConsumer.accept(chunk);
+        });
+        searchIndex.finishRebuild();
+    }
+
+    // Whole library as a lazy stream in constant memory; close it (try-with-resources) to release the connection
+    public Stream<Song> streamAllSongs() {
+        try {
+            return songDAO.streamAllSongs(STREAM_FETCH_SIZE);
+        } catch (SQLException e) {
+            System.err.println("Failed to stream songs: " + e.getMessage());
+            throw new RuntimeException("Database error while loading songs", e);
+        }
+    }
+
+    public int countSongs() {
+        try {
+            return songDAO.countSongs();
+        } catch (SQLException e) {
+            System.err.println("Failed to count songs: " + e.getMessage());
+            throw new RuntimeException("Database error while counting songs", e);
+        }
+    }
+
+    // Page of songs after the given one in (title, id) order; null starts at the first song
+    public List<Song> getSongsPage(Song after, int pageSize) {
+        try {
+            return after == null
+                    ? songDAO.getSongsPage(null, 0, pageSize)
+                    : songDAO.getSongsPage(after.getTitle(), after.getId(), pageSize);
+        } catch (SQLException e) {
+            System.err.println("Failed to load a page of songs: " + e.getMessage());
+            throw new RuntimeException("Database error while loading songs", e);
+        }
+    }
+
+    // Page of songs at a row offset in (title, id) order
+    public List<Song> getSongsPageAt(int offset, int pageSize) {
+        try {
+            return songDAO.getSongsPageAt(offset, pageSize);
+        } catch (SQLException e) {
+            System.err.println("Failed to load songs at offset " + offset + ": " + e.getMessage());
+            throw new RuntimeException("Database error while loading songs", e);
+        }
+    }
+
     public Song createSong(String title, String artist, String category, int duration, String filePath) {
         try {
-            return songDAO.createSong(title, artist, category, duration, filePath);
+            Song song = songDAO.createSong(title, artist, category, duration, filePath);
+            if (song != null && searchIndex.isBuilt()) {
+                searchIndex.add(song);
+            }
+            return song;
         } catch (SQLException e) {
             System.err.println("Failed to create song '" + title + "': " + e.getMessage());
             throw new RuntimeException("Database error while creating song", e);
         }
     }
 
+    // Create many songs at once, e.g. during an import
+    public List<Song> createSongs(List<Song> songs) {
+        try {
+            List<Song> created = songDAO.createSongs(songs);
+            if (searchIndex.isBuilt()) {
+                for (Song song : created) {
+                    searchIndex.add(song);
+                }
+            }
+            return created;
+        } catch (SQLException e) {
+            System.err.println("Failed to create " + songs.size() + " songs: " + e.getMessage());
+            throw new RuntimeException("Database error while creating songs", e);
+        }
+    }
+
+    public Set<String> getAllFilePaths() {
+        try {
+            return songDAO.getAllFilePaths();
+        } catch (SQLException e) {
+            System.err.println("Failed to retrieve file paths: " + e.getMessage());
+            throw new RuntimeException("Database error while loading file paths", e);
+        }
+    }
+
     public void updateSong(Song song) {
         try {
             songDAO.updateSong(song);
+            if (searchIndex.isBuilt()) {
+                searchIndex.update(song);
+            }
         } catch (SQLException e) {
             System.err.println("Failed to update song ID " + song.getId() + ": " + e.getMessage());
             throw new RuntimeException("Database error while updating song", e);
         }
     }
 
+    // Update many songs at once, e.g. after a library rescan
+    public void updateSongs(List<Song> songs) {
+        try {
+            songDAO.updateSongs(songs);
+            if (searchIndex.isBuilt()) {
+                for (Song song : songs) {
+                    searchIndex.update(song);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to update " + songs.size() + " songs: " + e.getMessage());
+            throw new RuntimeException("Database error while updating songs", e);
+        }
+    }
+
     public void deleteSong(Song song) {
         try {
             songDAO.deleteSong(song);
+            searchIndex.remove(song);
         } catch (SQLException e) {
             System.err.println("Failed to delete song ID " + song.getId() + ": " + e.getMessage());
             throw new RuntimeException("Database error while deleting song", e);
         }
     }
 
+    // Delete many songs at once, e.g. files that disappeared from the library folder
+    public void deleteSongs(List<Song> songs) {
+        try {
+            songDAO.deleteSongs(songs);
+            for (Song song : songs) {
+                searchIndex.remove(song);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to delete " + songs.size() + " songs: " + e.getMessage());
+            throw new RuntimeException("Database error while deleting songs", e);
+        }
+    }
+
     public Song getSongById(int id) {
         try {
             return songDAO.getSongById(id);
@@ -69,30 +207,53 @@ public class MusicManager {
         }
     }
 
+    // Apply songs another client created, changed or deleted to the cache and the search index
+    public void applyRemoteChanges(LibraryChanges changes) {
+        if (songDAO instanceof CachingSongDataAccess) {
+            LibraryCache cache = ((CachingSongDataAccess) songDAO).getCache();
+            for (Song song : changes.getChangedSongs()) {
+                cache.songUpdated(song);
+            }
+            for (Integer songId : changes.getDeletedSongIds()) {
+                cache.songDeleted(songId);
+            }
+        }
+        if (searchIndex.isBuilt()) {
+            for (Song song : changes.getChangedSongs()) {
+                searchIndex.update(song);
+            }
+            for (Integer songId : changes.getDeletedSongIds()) {
+                searchIndex.remove(songId);
+            }
+        }
+    }
+
+    // Build the search index from songs the caller has already loaded
+    public void buildSearchIndex(Collection<Song> songs) {
+        searchIndex.rebuild(songs);
+    }
+
+    public boolean isSearchIndexBuilt() {
+        return searchIndex.isBuilt();
+    }
+
+    // Ranked prefix search over title, artist and category, served from the in-memory index;
+    // a missing index is built chunk by chunk so the library is never held or cached as a whole
     public List<Song> searchSongs(String query) {
         try {
-            if (songDAO instanceof SongDAO_DB) {
-                return ((SongDAO_DB) songDAO).searchSongs(query);
-            } else {
-                return getAllSongs().stream()
-                        .filter(song -> matchesQuery(song, query))
-                        .collect(Collectors.toList());
+            if (!searchIndex.isBuilt()) {
+                indexAllSongsInChunks(STREAM_FETCH_SIZE, chunk -> { });
             }
+            return searchIndex.search(query);
         } catch (Exception e) {
             System.err.println("Search failed for query '" + query + "': " + e.getMessage());
             return new ArrayList<>();
         }
     }
 
-    private boolean matchesQuery(Song song, String query) {
-        String lowerQuery = query.toLowerCase();
-        return song.getTitle().toLowerCase().contains(lowerQuery) ||
-                song.getArtist().toLowerCase().contains(lowerQuery);
-    }
-
     public int getSongCount() {
         try {
-            return getAllSongs().size();
+            return songDAO.countSongs();
         } catch (Exception e) {
             System.err.println("Failed to get song count: " + e.getMessage());
             return 0;
@@ -101,13 +262,7 @@ public class MusicManager {
 
     public List<Song> getSongsByCategory(String category) {
         try {
-            if (songDAO instanceof SongDAO_DB) {
-                return ((SongDAO_DB) songDAO).getSongsByCategory(category);
-            } else {
-                return getAllSongs().stream()
-                        .filter(song -> category.equalsIgnoreCase(song.getCategory()))
-                        .collect(Collectors.toList());
-            }
+            return songDAO.getSongsByCategory(category);
         } catch (Exception e) {
             System.err.println("Failed to get songs for category '" + category + "': " + e.getMessage());
             return new ArrayList<>();
@@ -116,12 +271,7 @@ public class MusicManager {
 
     public List<String> getAllCategories() {
         try {
-            return getAllSongs().stream()
-                    .map(Song::getCategory)
-                    .filter(category -> category != null && !category.trim().isEmpty())
-                    .distinct()
-                    .sorted()
-                    .collect(Collectors.toList());
+            return songDAO.getAllCategories();
         } catch (Exception e) {
             System.err.println("Failed to retrieve categories: " + e.getMessage());
             return new ArrayList<>();
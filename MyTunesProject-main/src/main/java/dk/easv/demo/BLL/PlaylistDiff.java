@@ -0,0 +1,130 @@
+package dk.easv.demo.BLL;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Minimal edit script between two versions of a playlist.
+ * Song ids are unique within a playlist, so the longest common subsequence
+ * of the two versions is the longest increasing run of old indexes taken in
+ * new order. Those songs stay where they are; every other common song is a
+ * move, songs only in the old version are deletes and songs only in the new
+ * version are inserts. Runs in O(n log n).
+ */
+public final class PlaylistDiff {
+    private final List<Integer> removedSongIds;
+    private final List<Integer> insertedSongIds;
+    private final List<Integer> movedSongIds;
+    private final Set<Integer> keptSongIds;
+
+    private PlaylistDiff(List<Integer> removedSongIds, List<Integer> insertedSongIds,
+                         List<Integer> movedSongIds, Set<Integer> keptSongIds) {
+        this.removedSongIds = removedSongIds;
+        this.insertedSongIds = insertedSongIds;
+        this.movedSongIds = movedSongIds;
+        this.keptSongIds = keptSongIds;
+    }
+
+    /**
+     * Computes the edit script that turns one song order into another
+     * @param oldSongIds Stored song ids in order
+     * @param newSongIds Edited song ids in order
+     * @return Diff between the two
+     */
+    public static PlaylistDiff between(List<Integer> oldSongIds, List<Integer> newSongIds) {
+        Map<Integer, Integer> oldIndex = new HashMap<>(oldSongIds.size() * 2);
+        for (int i = 0; i < oldSongIds.size(); i++) {
+            oldIndex.put(oldSongIds.get(i), i);
+        }
+
+        // Old indexes of the common songs, in new order
+        List<Integer> commonSongIds = new ArrayList<>();
+        List<Integer> inserted = new ArrayList<>();
+        Set<Integer> newIds = new HashSet<>(newSongIds.size() * 2);
+        for (int songId : newSongIds) {
+            newIds.add(songId);
+            if (oldIndex.containsKey(songId)) {
+                commonSongIds.add(songId);
+            } else {
+                inserted.add(songId);
+            }
+        }
+
+        List<Integer> removed = new ArrayList<>();
+        for (int songId : oldSongIds) {
+            if (!newIds.contains(songId)) {
+                removed.add(songId);
+            }
+        }
+
+        Set<Integer> kept = longestIncreasingRun(commonSongIds, oldIndex);
+        List<Integer> moved = new ArrayList<>();
+        for (int songId : commonSongIds) {
+            if (!kept.contains(songId)) {
+                moved.add(songId);
+            }
+        }
+
+        return new PlaylistDiff(removed, inserted, moved, kept);
+    }
+
+    // Patience sorting over old indexes, keeping predecessor links to rebuild the run
+    private static Set<Integer> longestIncreasingRun(List<Integer> songIds, Map<Integer, Integer> oldIndex) {
+        int n = songIds.size();
+        int[] tailIndex = new int[n];  // position in songIds of the smallest tail of each run length
+        int[] previous = new int[n];
+        int length = 0;
+
+        for (int i = 0; i < n; i++) {
+            int value = oldIndex.get(songIds.get(i));
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (oldIndex.get(songIds.get(tailIndex[mid])) < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tailIndex[low - 1] : -1;
+            tailIndex[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        Set<Integer> kept = new HashSet<>(length * 2);
+        for (int i = length > 0 ? tailIndex[length - 1] : -1; i >= 0; i = previous[i]) {
+            kept.add(songIds.get(i));
+        }
+        return kept;
+    }
+
+    public List<Integer> getRemovedSongIds() { return Collections.unmodifiableList(removedSongIds); }
+    public List<Integer> getInsertedSongIds() { return Collections.unmodifiableList(insertedSongIds); }
+    public List<Integer> getMovedSongIds() { return Collections.unmodifiableList(movedSongIds); }
+
+    // Songs that keep their stored position
+    public Set<Integer> getKeptSongIds() { return Collections.unmodifiableSet(keptSongIds); }
+
+    // Number of rows the script writes
+    public int size() {
+        return removedSongIds.size() + insertedSongIds.size() + movedSongIds.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaylistDiff{removed=" + removedSongIds.size() + ", inserted=" + insertedSongIds.size()
+                + ", moved=" + movedSongIds.size() + ", kept=" + keptSongIds.size() + "}";
+    }
+}
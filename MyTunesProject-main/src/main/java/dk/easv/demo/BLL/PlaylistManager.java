@@ -1,8 +1,13 @@
 package dk.easv.demo.BLL;
 
+import dk.easv.demo.BE.DurationConverter;
+import dk.easv.demo.BE.LibraryChanges;
 import dk.easv.demo.BE.Playlist;
 import dk.easv.demo.BE.Song;
-import dk.easv.demo.DAL.db.PlaylistDAO_DB;
+import dk.easv.demo.BLL.cache.CachingPlaylistDataAccess;
+import dk.easv.demo.BLL.cache.LibraryCache;
+import dk.easv.demo.DAL.DataAccessFactory;
+import dk.easv.demo.DAL.IPlaylistDataAccess;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,10 +17,15 @@ import java.util.List;
  * Handles all playlist-related business logic.
  */
 public class PlaylistManager {
-    private final PlaylistDAO_DB daoPlaylist;
+    private final IPlaylistDataAccess daoPlaylist;
 
     public PlaylistManager() {
-        this.daoPlaylist = new PlaylistDAO_DB();
+        IPlaylistDataAccess dao = DataAccessFactory.createPlaylistDataAccess();
+        this.daoPlaylist = DataAccessFactory.isInMemory() ? dao : new CachingPlaylistDataAccess(dao, LibraryCache.getDefault());
+    }
+
+    public PlaylistManager(IPlaylistDataAccess daoPlaylist) {
+        this.daoPlaylist = daoPlaylist;
     }
 
     public List<Playlist> getAllPlaylists() {
@@ -28,6 +38,26 @@ public class PlaylistManager {
         }
     }
 
+    public List<Playlist> getAllPlaylistsWithSongs(List<Song> allSongs) {
+        try {
+            return daoPlaylist.getAllPlaylistsWithSongs(allSongs);
+        } catch (SQLException e) {
+            System.err.println("Failed to retrieve playlists with songs: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public List<Playlist> getAllPlaylistsWithTotals() {
+        try {
+            return daoPlaylist.getAllPlaylistsWithTotals();
+        } catch (SQLException e) {
+            System.err.println("Failed to retrieve playlist totals: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
     public List<Song> getSongsInPlaylist(Playlist playlist) {
         try {
             return daoPlaylist.getSongsInPlaylist(playlist.getId());
@@ -60,8 +90,12 @@ public class PlaylistManager {
 
     public void addSongToPlaylist(Playlist playlist, Song song) {
         try {
-            List<Song> currentSongs = getSongsInPlaylist(playlist);
-            int position = currentSongs.size();
+            int position;
+            if (daoPlaylist instanceof CachingPlaylistDataAccess) {
+                position = ((CachingPlaylistDataAccess) daoPlaylist).getPlaylistSize(playlist.getId());
+            } else {
+                position = daoPlaylist.getSongsInPlaylist(playlist.getId()).size();
+            }
             daoPlaylist.addSongToPlaylist(playlist.getId(), song.getId(), position);
         } catch (SQLException e) {
             System.err.println("Failed to add song to playlist: " + e.getMessage());
@@ -70,6 +104,42 @@ public class PlaylistManager {
         }
     }
 
+    // Append several songs in one batch
+    public void addSongsToPlaylist(Playlist playlist, List<Song> songs) {
+        try {
+            daoPlaylist.addSongsToPlaylist(playlist.getId(), songIds(songs), Integer.MAX_VALUE);
+        } catch (SQLException e) {
+            System.err.println("Failed to add songs to playlist: " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Database error while adding songs to playlist", e);
+        }
+    }
+
+    // Save edited playlist contents, writing only the rows the diff touches
+    public PlaylistDiff savePlaylistSongs(Playlist playlist, List<Song> songs) {
+        try {
+            List<Integer> oldSongIds = songIds(daoPlaylist.getSongsInPlaylist(playlist.getId()));
+            List<Integer> newSongIds = songIds(songs);
+            PlaylistDiff diff = PlaylistDiff.between(oldSongIds, newSongIds);
+            if (!diff.isEmpty()) {
+                daoPlaylist.replacePlaylistSongs(playlist.getId(), newSongIds, diff.getKeptSongIds());
+            }
+            return diff;
+        } catch (SQLException e) {
+            System.err.println("Failed to save songs of playlist '" + playlist.getName() + "': " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Database error while saving playlist songs", e);
+        }
+    }
+
+    private static List<Integer> songIds(List<Song> songs) {
+        List<Integer> songIds = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            songIds.add(song.getId());
+        }
+        return songIds;
+    }
+
     public void removeSongFromPlaylist(Playlist playlist, Song song) {
         try {
             daoPlaylist.removeSongFromPlaylist(playlist.getId(), song.getId());
@@ -110,6 +180,40 @@ public class PlaylistManager {
         }
     }
 
+    public void moveSongToIndex(Playlist playlist, Song song, int targetIndex) {
+        try {
+            daoPlaylist.moveSongToIndex(playlist.getId(), song.getId(), targetIndex);
+        } catch (SQLException e) {
+            System.err.println("Failed to move song: " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Database error while reordering songs", e);
+        }
+    }
+
+    // Save the given song order for the whole playlist
+    public void reorderPlaylist(Playlist playlist, List<Song> orderedSongs) {
+        try {
+            daoPlaylist.reorderPlaylist(playlist.getId(), songIds(orderedSongs));
+        } catch (SQLException e) {
+            System.err.println("Failed to reorder playlist '" + playlist.getName() + "': " + e.getMessage());
+            e.printStackTrace();
+            throw new RuntimeException("Database error while reordering songs", e);
+        }
+    }
+
+    // Forget cached contents of playlists another client changed or deleted; they are read again when shown
+    public void applyRemoteChanges(LibraryChanges changes) {
+        if (daoPlaylist instanceof CachingPlaylistDataAccess) {
+            LibraryCache cache = ((CachingPlaylistDataAccess) daoPlaylist).getCache();
+            for (Integer playlistId : changes.getDeletedPlaylistIds()) {
+                cache.invalidatePlaylist(playlistId);
+            }
+            for (Integer playlistId : changes.getPlaylistContents().keySet()) {
+                cache.invalidatePlaylist(playlistId);
+            }
+        }
+    }
+
     public String calculatePlaylistTotalDuration(Playlist playlist) {
         try {
             List<Song> songs = getSongsInPlaylist(playlist);
@@ -134,12 +238,6 @@ public class PlaylistManager {
             return "00:00";
         }
 
-        int hours = totalSeconds / 3600;
-        int minutes = (totalSeconds % 3600) / 60;
-        int seconds = totalSeconds % 60;
-
-        return hours > 0
-                ? String.format("%d:%02d:%02d", hours, minutes, seconds)
-                : String.format("%d:%02d", minutes, seconds);
+        return DurationConverter.formatWithHours(totalSeconds);
     }
 }
\ No newline at end of file
@@ -0,0 +1,315 @@
+package dk.easv.demo.BLL;
+
+import dk.easv.demo.BE.Song;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over song title, artist and category.
+ * Every word is a token; a query matches songs that contain a token starting
+ * with each query word. Results are ranked by where the words matched
+ * (title before artist before category) and whether they matched whole words,
+ * then by title. Safe to query from one thread while another thread updates it.
+ */
+public class SongSearchIndex {
+
+    // Ranking weights per field; a whole-word match counts double
+    private static final int TITLE_WEIGHT = 3;
+    private static final int ARTIST_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 1;
+
+    // Postings are stored as (doc << WEIGHT_BITS) | weight
+    private static final int WEIGHT_BITS = 2;
+    private static final int WEIGHT_MASK = (1 << WEIGHT_BITS) - 1;
+
+    // Each indexed song gets a dense document number; removed songs leave a null slot
+    private Song[] docs = new Song[1024];
+    private String[] titleKeys = new String[1024];
+    private int docCount = 0;
+    private int removedCount = 0;
+
+    private final Map<Integer, Integer> docBySongId = new HashMap<>();
+    private final TreeMap<String, IntList> postings = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean built = false;
+
+    /**
+     * Replaces the index contents with the given songs
+     * @param songs All songs in the library
+     */
+    public void rebuild(Collection<Song> songs) {
+        lock.writeLock().lock();
+        try {
+            clear(songs.size());
+            for (Song song : songs) {
+                addInternal(song);
+            }
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index for a rebuild from songs that arrive in chunks; it
+     * reads as not built until finishRebuild()
+     * @param expectedSize Number of songs expected, to size the index
+     */
+    public void beginRebuild(int expectedSize) {
+        lock.writeLock().lock();
+        try {
+            built = false;
+            clear(expectedSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Index the next chunk of a rebuild
+    public void addAll(Collection<Song> songs) {
+        lock.writeLock().lock();
+        try {
+            for (Song song : songs) {
+                removeInternal(song.getId());
+                addInternal(song);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishRebuild() {
+        built = true;
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docBySongId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Index a new song
+    public void add(Song song) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(song.getId());
+            addInternal(song);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Re-index a song after its title, artist or category changed
+    public void update(Song song) {
+        add(song);
+    }
+
+    // Remove a song from the index
+    public void remove(Song song) {
+        remove(song.getId());
+    }
+
+    // Remove a song known only by id, e.g. one deleted by another client
+    public void remove(int songId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(songId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds songs matching every word of the query, best matches first
+     * @param query Words to search for; the last word may be incomplete
+     * @return Matching songs ranked by relevance, then title
+     */
+    public List<Song> search(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] scores = new int[docCount];
+            int[] best = new int[docCount];
+            // Number of query tokens each document has matched so far
+            int[] hits = new int[docCount];
+            IntList touched = new IntList(64);
+
+            for (int i = 0; i < queryTokens.size(); i++) {
+                String queryToken = queryTokens.get(i);
+                touched.size = 0;
+
+                for (Map.Entry<String, IntList> match
+                        : postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false).entrySet()) {
+                    boolean wholeWord = match.getKey().length() == queryToken.length();
+                    IntList list = match.getValue();
+
+                    for (int p = 0; p < list.size; p++) {
+                        int doc = list.values[p] >>> WEIGHT_BITS;
+                        if (docs[doc] == null || hits[doc] < i) {
+                            continue;
+                        }
+                        int weight = list.values[p] & WEIGHT_MASK;
+                        int score = wholeWord ? weight * 2 : weight;
+
+                        if (hits[doc] == i) {
+                            hits[doc] = i + 1;
+                            best[doc] = score;
+                            touched.add(doc);
+                        } else if (score > best[doc]) {
+                            best[doc] = score;
+                        }
+                    }
+                }
+
+                if (touched.size == 0) {
+                    return new ArrayList<>();
+                }
+                for (int t = 0; t < touched.size; t++) {
+                    scores[touched.values[t]] += best[touched.values[t]];
+                }
+            }
+
+            // Documents touched by the last token matched every token
+            Integer[] matches = new Integer[touched.size];
+            for (int t = 0; t < touched.size; t++) {
+                matches[t] = touched.values[t];
+            }
+            Arrays.sort(matches, (a, b) -> {
+                int byScore = Integer.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : titleKeys[a].compareTo(titleKeys[b]);
+            });
+
+            List<Song> results = new ArrayList<>(matches.length);
+            for (Integer doc : matches) {
+                results.add(docs[doc]);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void clear(int expectedSize) {
+        int capacity = Math.max(1024, expectedSize);
+        docs = new Song[capacity];
+        titleKeys = new String[capacity];
+        docCount = 0;
+        removedCount = 0;
+        docBySongId.clear();
+        postings.clear();
+    }
+
+    private void addInternal(Song song) {
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docCount * 2);
+            titleKeys = Arrays.copyOf(titleKeys, docCount * 2);
+        }
+
+        int doc = docCount++;
+        docs[doc] = song;
+        titleKeys[doc] = song.getTitle() == null ? "" : song.getTitle().toLowerCase();
+        docBySongId.put(song.getId(), doc);
+
+        Map<String, Integer> weights = new HashMap<>();
+        addField(weights, song.getTitle(), TITLE_WEIGHT);
+        addField(weights, song.getArtist(), ARTIST_WEIGHT);
+        addField(weights, song.getCategory(), CATEGORY_WEIGHT);
+
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), token -> new IntList(4))
+                    .add((doc << WEIGHT_BITS) | entry.getValue());
+        }
+    }
+
+    private void addField(Map<String, Integer> weights, String text, int weight) {
+        for (String token : tokenize(text)) {
+            weights.merge(token, weight, Math::max);
+        }
+    }
+
+    // Postings of removed documents are skipped at query time and dropped on compaction
+    private void removeInternal(int songId) {
+        Integer doc = docBySongId.remove(songId);
+        if (doc == null) {
+            return;
+        }
+        docs[doc] = null;
+        titleKeys[doc] = null;
+        removedCount++;
+
+        if (removedCount > 1024 && removedCount > docCount / 2) {
+            compact();
+        }
+    }
+
+    private void compact() {
+        List<Song> live = new ArrayList<>(docBySongId.size());
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docs[doc] != null) {
+                live.add(docs[doc]);
+            }
+        }
+        clear(live.size());
+        for (Song song : live) {
+            addInternal(song);
+        }
+    }
+
+    // Lower-case words made of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Growable int array, avoids boxing in posting lists
+     */
+    private static final class IntList {
+        private int[] values;
+        private int size;
+
+        private IntList(int capacity) {
+            values = new int[capacity];
+        }
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
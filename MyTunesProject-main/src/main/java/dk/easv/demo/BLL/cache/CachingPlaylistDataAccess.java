@@ -0,0 +1,144 @@
+package dk.easv.demo.BLL.cache;
+
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.IPlaylistDataAccess;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Playlist data access that keeps playlist contents in a LibraryCache.
+ * Reads of a cached playlist never reach the database; every write goes
+ * to the wrapped data access first and then updates or drops the cached
+ * contents of the affected playlist.
+ */
+public class CachingPlaylistDataAccess implements IPlaylistDataAccess {
+    private final IPlaylistDataAccess delegate;
+    private final LibraryCache cache;
+
+    public CachingPlaylistDataAccess(IPlaylistDataAccess delegate, LibraryCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public LibraryCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public List<Playlist> getAllPlaylists() throws SQLException {
+        return delegate.getAllPlaylists();
+    }
+
+    @Override
+    public List<Playlist> getAllPlaylistsWithSongs(Collection<Song> allSongs) throws SQLException {
+        List<Playlist> playlists = delegate.getAllPlaylistsWithSongs(allSongs);
+        for (Playlist playlist : playlists) {
+            cache.putPlaylistSongs(playlist.getId(), playlist.getSongs());
+        }
+        return playlists;
+    }
+
+    @Override
+    public List<Playlist> getAllPlaylistsWithTotals() throws SQLException {
+        return delegate.getAllPlaylistsWithTotals();
+    }
+
+    @Override
+    public Playlist createPlaylist(String name) throws SQLException {
+        Playlist playlist = delegate.createPlaylist(name);
+        if (playlist != null) {
+            cache.putPlaylistSongs(playlist.getId(), playlist.getSongs());
+        }
+        return playlist;
+    }
+
+    @Override
+    public void updatePlaylist(Playlist playlist) throws SQLException {
+        delegate.updatePlaylist(playlist);
+    }
+
+    @Override
+    public void deletePlaylist(Playlist playlist) throws SQLException {
+        delegate.deletePlaylist(playlist);
+        cache.invalidatePlaylist(playlist.getId());
+    }
+
+    @Override
+    public void addSongToPlaylist(int playlistId, int songId, int position) throws SQLException {
+        delegate.addSongToPlaylist(playlistId, songId, position);
+        cache.playlistSongAdded(playlistId, songId, position);
+    }
+
+    @Override
+    public void addSongsToPlaylist(int playlistId, List<Integer> songIds, int atPosition) throws SQLException {
+        delegate.addSongsToPlaylist(playlistId, songIds, atPosition);
+        cache.playlistSongsAdded(playlistId, songIds, atPosition);
+    }
+
+    @Override
+    public void replacePlaylistSongs(int playlistId, List<Integer> songIds, Set<Integer> keptSongIds) throws SQLException {
+        delegate.replacePlaylistSongs(playlistId, songIds, keptSongIds);
+        cache.playlistReplaced(playlistId, songIds);
+    }
+
+    @Override
+    public void removeSongFromPlaylist(int playlistId, int songId) throws SQLException {
+        delegate.removeSongFromPlaylist(playlistId, songId);
+        cache.playlistSongRemoved(playlistId, songId);
+    }
+
+    @Override
+    public List<Song> getSongsInPlaylist(int playlistId) throws SQLException {
+        List<Song> cached = cache.getPlaylistSongs(playlistId);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Song> songs = delegate.getSongsInPlaylist(playlistId);
+        cache.putPlaylistSongs(playlistId, songs);
+        return songs;
+    }
+
+    @Override
+    public void moveSongUp(int playlistId, int songId) throws SQLException {
+        delegate.moveSongUp(playlistId, songId);
+        cache.playlistSongMoved(playlistId, songId, -1);
+    }
+
+    @Override
+    public void moveSongDown(int playlistId, int songId) throws SQLException {
+        delegate.moveSongDown(playlistId, songId);
+        cache.playlistSongMoved(playlistId, songId, 1);
+    }
+
+    @Override
+    public void moveSongByOffset(int playlistId, int songId, int offset) throws SQLException {
+        delegate.moveSongByOffset(playlistId, songId, offset);
+        cache.playlistSongMoved(playlistId, songId, offset);
+    }
+
+    @Override
+    public void moveSongToIndex(int playlistId, int songId, int targetIndex) throws SQLException {
+        delegate.moveSongToIndex(playlistId, songId, targetIndex);
+        cache.playlistSongMovedTo(playlistId, songId, targetIndex);
+    }
+
+    @Override
+    public void reorderPlaylist(int playlistId, List<Integer> orderedSongIds) throws SQLException {
+        delegate.reorderPlaylist(playlistId, orderedSongIds);
+        cache.playlistReplaced(playlistId, orderedSongIds);
+    }
+
+    // Number of songs in a playlist, loading its contents only on a cache miss
+    public int getPlaylistSize(int playlistId) throws SQLException {
+        int size = cache.getPlaylistSize(playlistId);
+        if (size < 0) {
+            size = getSongsInPlaylist(playlistId).size();
+        }
+        return size;
+    }
+}
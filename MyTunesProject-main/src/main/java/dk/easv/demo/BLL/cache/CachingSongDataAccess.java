@@ -0,0 +1,170 @@
+package dk.easv.demo.BLL.cache;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.ISongDataAccess;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Song data access that serves reads from a LibraryCache and writes
+ * through to the wrapped data access, updating the cache after every
+ * successful write.
+ */
+public class CachingSongDataAccess implements ISongDataAccess {
+    private final ISongDataAccess delegate;
+    private final LibraryCache cache;
+
+    public CachingSongDataAccess(ISongDataAccess delegate, LibraryCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public LibraryCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public List<Song> getAllSongs() throws SQLException {
+        List<Song> cached = cache.getAllSongs();
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Song> songs = delegate.getAllSongs();
+        cache.putAllSongs(songs);
+        return songs;
+    }
+
+    @Override
+    public void getAllSongsInChunks(int chunkSize, Consumer<List<Song>> chunkConsumer) throws SQLException {
+        List<Song> cached = cache.getAllSongs();
+        if (cached != null) {
+            for (int from = 0; from < cached.size(); from += chunkSize) {
+                chunkConsumer.accept(new ArrayList<>(cached.subList(from, Math.min(from + chunkSize, cached.size()))));
+            }
+            return;
+        }
+
+        // Not kept: a chunked read is how callers avoid holding the whole library
+        delegate.getAllSongsInChunks(chunkSize, chunkConsumer);
+    }
+
+    // Streams from the cache when the library is loaded; otherwise straight from the database without filling the cache
+    @Override
+    public Stream<Song> streamAllSongs(int fetchSize) throws SQLException {
+        List<Song> cached = cache.getAllSongs();
+        if (cached != null) {
+            return cached.stream();
+        }
+        return delegate.streamAllSongs(fetchSize);
+    }
+
+    @Override
+    public int countSongs() throws SQLException {
+        int count = cache.getSongCount();
+        return count >= 0 ? count : delegate.countSongs();
+    }
+
+    // Pages always come from the database so their order matches the keyset condition
+    @Override
+    public List<Song> getSongsPage(String afterTitle, int afterId, int pageSize) throws SQLException {
+        return withCachedInstances(delegate.getSongsPage(afterTitle, afterId, pageSize));
+    }
+
+    @Override
+    public List<Song> getSongsPageAt(int offset, int pageSize) throws SQLException {
+        return withCachedInstances(delegate.getSongsPageAt(offset, pageSize));
+    }
+
+    // Filtered in the database, since the cache may hold only part of the library
+    @Override
+    public List<Song> getSongsByCategory(String category) throws SQLException {
+        return withCachedInstances(delegate.getSongsByCategory(category));
+    }
+
+    // From the cache when the whole library is loaded, otherwise a DISTINCT query
+    @Override
+    public List<String> getAllCategories() throws SQLException {
+        List<String> categories = cache.getCategories();
+        return categories != null ? categories : delegate.getAllCategories();
+    }
+
+    // Hand out the cached Song objects where there are any, so the UI sees one instance per song
+    private List<Song> withCachedInstances(List<Song> page) {
+        for (int i = 0; i < page.size(); i++) {
+            Song cached = cache.getSong(page.get(i).getId());
+            if (cached != null) {
+                page.set(i, cached);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Song createSong(String title, String artist, String category, int duration, String filePath) throws SQLException {
+        Song song = delegate.createSong(title, artist, category, duration, filePath);
+        if (song != null) {
+            cache.putSong(song);
+        }
+        return song;
+    }
+
+    @Override
+    public List<Song> createSongs(List<Song> songs) throws SQLException {
+        List<Song> created = delegate.createSongs(songs);
+        cache.putSongs(created);
+        return created;
+    }
+
+    @Override
+    public Set<String> getAllFilePaths() throws SQLException {
+        return delegate.getAllFilePaths();
+    }
+
+    @Override
+    public void updateSong(Song song) throws SQLException {
+        delegate.updateSong(song);
+        cache.songUpdated(song);
+    }
+
+    @Override
+    public void updateSongs(List<Song> songs) throws SQLException {
+        delegate.updateSongs(songs);
+        for (Song song : songs) {
+            cache.songUpdated(song);
+        }
+    }
+
+    @Override
+    public void deleteSong(Song song) throws SQLException {
+        delegate.deleteSong(song);
+        cache.songDeleted(song.getId());
+    }
+
+    @Override
+    public void deleteSongs(List<Song> songs) throws SQLException {
+        delegate.deleteSongs(songs);
+        for (Song song : songs) {
+            cache.songDeleted(song.getId());
+        }
+    }
+
+    @Override
+    public Song getSongById(int id) throws SQLException {
+        Song song = cache.getSong(id);
+        if (song != null) {
+            return song;
+        }
+
+        song = delegate.getSongById(id);
+        if (song != null) {
+            cache.putSong(song);
+        }
+        return song;
+    }
+}
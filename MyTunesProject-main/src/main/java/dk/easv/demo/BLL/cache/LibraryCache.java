@@ -0,0 +1,350 @@
+package dk.easv.demo.BLL.cache;
+
+import dk.easv.demo.BE.CategoryDictionary;
+import dk.easv.demo.BE.Song;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared in-memory cache of songs, playlist contents and derived values.
+ * Songs are kept by id; once the whole library has been loaded the cache
+ * can also answer "all songs", the song count and the category list.
+ * Playlist contents are stored as song id lists and evicted least recently
+ * used first when the total number of cached entries exceeds the limit.
+ * Callers must report every mutation so cached data never goes stale.
+ */
+public class LibraryCache {
+
+    // Default limit on cached playlist entries, override with -Dmytunes.cache.maxPlaylistEntries
+    private static final int DEFAULT_MAX_PLAYLIST_ENTRIES = 200_000;
+
+    private static final LibraryCache DEFAULT = new LibraryCache(
+            Integer.getInteger("mytunes.cache.maxPlaylistEntries", DEFAULT_MAX_PLAYLIST_ENTRIES));
+
+    private final int maxPlaylistEntries;
+
+    private final Map<Integer, Song> songsById = new HashMap<>();
+    private boolean libraryComplete = false;
+
+    // Derived values, rebuilt on demand after a mutation
+    private List<Song> sortedSongs;
+    private List<String> categories;
+
+    // playlist id -> ordered song ids, in access order for LRU eviction
+    private final LinkedHashMap<Integer, List<Integer>> playlistSongIds = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedPlaylistEntries = 0;
+
+    private final AtomicLong songHits = new AtomicLong();
+    private final AtomicLong songMisses = new AtomicLong();
+    private final AtomicLong playlistHits = new AtomicLong();
+    private final AtomicLong playlistMisses = new AtomicLong();
+    private final AtomicLong aggregateHits = new AtomicLong();
+    private final AtomicLong aggregateMisses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LibraryCache(int maxPlaylistEntries) {
+        this.maxPlaylistEntries = maxPlaylistEntries;
+    }
+
+    // Cache shared by all managers in the application
+    public static LibraryCache getDefault() {
+        return DEFAULT;
+    }
+
+    // ===== Songs =====
+
+    // Replace cached songs with the complete library
+    public synchronized void putAllSongs(Collection<Song> songs) {
+        songsById.clear();
+        for (Song song : songs) {
+            songsById.put(song.getId(), song);
+        }
+        libraryComplete = true;
+        invalidateDerived();
+    }
+
+    public synchronized boolean isLibraryComplete() {
+        return libraryComplete;
+    }
+
+    // All songs sorted by title, or null if the library has not been loaded
+    public synchronized List<Song> getAllSongs() {
+        if (!libraryComplete) {
+            songMisses.incrementAndGet();
+            return null;
+        }
+        songHits.incrementAndGet();
+        if (sortedSongs == null) {
+            sortedSongs = new ArrayList<>(songsById.values());
+            sortedSongs.sort(Song.TITLE_ORDER);
+        }
+        return new ArrayList<>(sortedSongs);
+    }
+
+    public synchronized Song getSong(int id) {
+        Song song = songsById.get(id);
+        if (song == null) {
+            songMisses.incrementAndGet();
+        } else {
+            songHits.incrementAndGet();
+        }
+        return song;
+    }
+
+    // Add a song that was created or loaded
+    public synchronized void putSong(Song song) {
+        songsById.put(song.getId(), song);
+        invalidateDerived();
+    }
+
+    // Add songs created in bulk
+    public synchronized void putSongs(Collection<Song> songs) {
+        for (Song song : songs) {
+            songsById.put(song.getId(), song);
+        }
+        invalidateDerived();
+    }
+
+    // Song changed: derived values and cached playlist durations may be wrong now
+    public synchronized void songUpdated(Song song) {
+        songsById.put(song.getId(), song);
+        invalidateDerived();
+    }
+
+    // Song deleted: also drop it from every cached playlist
+    public synchronized void songDeleted(int songId) {
+        songsById.remove(songId);
+        invalidateDerived();
+
+        for (List<Integer> songIds : playlistSongIds.values()) {
+            int before = songIds.size();
+            songIds.removeIf(id -> id == songId);
+            cachedPlaylistEntries -= before - songIds.size();
+        }
+    }
+
+    // ===== Derived values =====
+
+    // Number of songs, or -1 if the library has not been loaded
+    public synchronized int getSongCount() {
+        if (!libraryComplete) {
+            aggregateMisses.incrementAndGet();
+            return -1;
+        }
+        aggregateHits.incrementAndGet();
+        return songsById.size();
+    }
+
+    // Distinct non-empty categories sorted, or null if the library has not been loaded
+    public synchronized List<String> getCategories() {
+        if (!libraryComplete) {
+            aggregateMisses.incrementAndGet();
+            return null;
+        }
+        if (categories == null) {
+            aggregateMisses.incrementAndGet();
+            BitSet categoryIds = new BitSet();
+            for (Song song : songsById.values()) {
+                categoryIds.set(song.getCategoryId());
+            }
+            TreeSet<String> distinct = new TreeSet<>();
+            for (int id = categoryIds.nextSetBit(1); id >= 0; id = categoryIds.nextSetBit(id + 1)) {
+                String category = CategoryDictionary.nameOf(id);
+                if (!category.trim().isEmpty()) {
+                    distinct.add(category);
+                }
+            }
+            categories = new ArrayList<>(distinct);
+        } else {
+            aggregateHits.incrementAndGet();
+        }
+        return new ArrayList<>(categories);
+    }
+
+    private void invalidateDerived() {
+        sortedSongs = null;
+        categories = null;
+    }
+
+    // ===== Playlist contents =====
+
+    /**
+     * Cached songs of a playlist in order
+     * @param playlistId Playlist id
+     * @return Songs, or null if the playlist or one of its songs is not cached
+     */
+    public synchronized List<Song> getPlaylistSongs(int playlistId) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds == null) {
+            playlistMisses.incrementAndGet();
+            return null;
+        }
+
+        List<Song> songs = new ArrayList<>(songIds.size());
+        for (int songId : songIds) {
+            Song song = songsById.get(songId);
+            if (song == null) {
+                playlistMisses.incrementAndGet();
+                return null;
+            }
+            songs.add(song);
+        }
+        playlistHits.incrementAndGet();
+        return songs;
+    }
+
+    // Number of songs in a playlist, or -1 if not cached
+    public synchronized int getPlaylistSize(int playlistId) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds == null) {
+            aggregateMisses.incrementAndGet();
+            return -1;
+        }
+        aggregateHits.incrementAndGet();
+        return songIds.size();
+    }
+
+    // Store playlist contents as loaded from the database
+    public synchronized void putPlaylistSongs(int playlistId, List<Song> songs) {
+        List<Integer> songIds = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            songIds.add(song.getId());
+            songsById.putIfAbsent(song.getId(), song);
+        }
+
+        List<Integer> previous = playlistSongIds.put(playlistId, songIds);
+        if (previous != null) {
+            cachedPlaylistEntries -= previous.size();
+        }
+        cachedPlaylistEntries += songIds.size();
+        evictPlaylists(playlistId);
+    }
+
+    // Song inserted at position (0-based), only if the playlist is cached
+    public synchronized void playlistSongAdded(int playlistId, int songId, int position) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds != null) {
+            songIds.add(Math.max(0, Math.min(position, songIds.size())), songId);
+            cachedPlaylistEntries++;
+            evictPlaylists(playlistId);
+        }
+    }
+
+    // Songs inserted in order starting at position, only if the playlist is cached
+    public synchronized void playlistSongsAdded(int playlistId, List<Integer> addedSongIds, int position) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds != null) {
+            songIds.addAll(Math.max(0, Math.min(position, songIds.size())), addedSongIds);
+            cachedPlaylistEntries += addedSongIds.size();
+            evictPlaylists(playlistId);
+        }
+    }
+
+    public synchronized void playlistSongRemoved(int playlistId, int songId) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds != null) {
+            int before = songIds.size();
+            songIds.removeIf(id -> id == songId);
+            cachedPlaylistEntries -= before - songIds.size();
+        }
+    }
+
+    // Song moved by offset places (negative = up), only if the playlist is cached
+    public synchronized void playlistSongMoved(int playlistId, int songId, int offset) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds != null) {
+            int index = songIds.indexOf(songId);
+            if (index >= 0) {
+                moveEntry(songIds, index, index + offset);
+            }
+        }
+    }
+
+    // Song moved to an index, only if the playlist is cached
+    public synchronized void playlistSongMovedTo(int playlistId, int songId, int targetIndex) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds != null) {
+            int index = songIds.indexOf(songId);
+            if (index >= 0) {
+                moveEntry(songIds, index, targetIndex);
+            }
+        }
+    }
+
+    // Playlist contents replaced by the given order, only if the playlist is cached
+    public synchronized void playlistReplaced(int playlistId, List<Integer> newSongIds) {
+        List<Integer> songIds = playlistSongIds.get(playlistId);
+        if (songIds != null) {
+            cachedPlaylistEntries += newSongIds.size() - songIds.size();
+            songIds.clear();
+            songIds.addAll(newSongIds);
+            evictPlaylists(playlistId);
+        }
+    }
+
+    private static void moveEntry(List<Integer> songIds, int from, int to) {
+        Integer songId = songIds.remove(from);
+        songIds.add(Math.max(0, Math.min(to, songIds.size())), songId);
+    }
+
+    // Playlist contents changed in a way that is not tracked, or playlist deleted
+    public synchronized void invalidatePlaylist(int playlistId) {
+        List<Integer> removed = playlistSongIds.remove(playlistId);
+        if (removed != null) {
+            cachedPlaylistEntries -= removed.size();
+        }
+    }
+
+    // Least recently used playlists go first; the one just written is kept
+    private void evictPlaylists(int keepPlaylistId) {
+        Iterator<Map.Entry<Integer, List<Integer>>> iterator = playlistSongIds.entrySet().iterator();
+        while (cachedPlaylistEntries > maxPlaylistEntries && iterator.hasNext()) {
+            Map.Entry<Integer, List<Integer>> eldest = iterator.next();
+            if (eldest.getKey() == keepPlaylistId) {
+                continue;
+            }
+            cachedPlaylistEntries -= eldest.getValue().size();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Forget everything, e.g. after an external change to the database
+    public synchronized void clear() {
+        songsById.clear();
+        libraryComplete = false;
+        invalidateDerived();
+        playlistSongIds.clear();
+        cachedPlaylistEntries = 0;
+    }
+
+    // ===== Statistics =====
+
+    public long getSongHits() { return songHits.get(); }
+    public long getSongMisses() { return songMisses.get(); }
+    public long getPlaylistHits() { return playlistHits.get(); }
+    public long getPlaylistMisses() { return playlistMisses.get(); }
+    public long getAggregateHits() { return aggregateHits.get(); }
+    public long getAggregateMisses() { return aggregateMisses.get(); }
+    public long getEvictions() { return evictions.get(); }
+
+    public synchronized int getCachedPlaylistEntries() {
+        return cachedPlaylistEntries;
+    }
+
+    public String getStatsSummary() {
+        return String.format("songs %d/%d, playlists %d/%d, aggregates %d/%d (hits/misses), "
+                        + "%d playlist entries cached, %d evictions",
+                getSongHits(), getSongMisses(), getPlaylistHits(), getPlaylistMisses(),
+                getAggregateHits(), getAggregateMisses(), getCachedPlaylistEntries(), getEvictions());
+    }
+}
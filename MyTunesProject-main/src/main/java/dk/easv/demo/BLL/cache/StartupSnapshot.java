@@ -0,0 +1,611 @@
+package dk.easv.demo.BLL.cache;
+
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Copy of the library saved after a full load, so the next start can show
+ * songs and playlists before the database has answered.
+ *
+ * The file is column oriented and read through a memory-mapped buffer
+ * without copying: opening only walks the section headers, and a song is
+ * decoded from its columns the first time its row is asked for.
+ *
+ * Layout, big-endian, every section starting on a 4 byte boundary:
+ *   int magic, int version, long generation, string source, long library version
+ *   int song count n, int playlist count p, int playlist entry count e
+ *   int[n] ids, int[n] durations
+ *   title, artist, category and file path columns, each int[n] refs into
+ *     a string table: int count c, int byte length b, int[c + 1] offsets, b bytes
+ *   int[p] playlist ids, playlist name column
+ *   int[p + 1] entry offsets, int[e] song rows     playlist contents in order
+ *   int end marker
+ * A ref of -1 is a null string. The source names the database the library
+ * came from; a snapshot of another database is ignored. The library version
+ * is the database change version the contents match, -1 if the database
+ * does not track changes; see LibraryReconciler.
+ *
+ * Snapshots are written to two files in turn and the newest one is read,
+ * so the file mapped by this run is never replaced; Windows does not allow
+ * that while the mapping lives.
+ */
+public final class StartupSnapshot {
+
+    // Folder of the snapshot files, override with -Dmytunes.snapshot.dir
+    private static final String DEFAULT_DIRECTORY = System.getProperty("user.home") + "/.mytunes/startup";
+
+    private static final String[] SLOT_FILES = {"library-a.snapshot", "library-b.snapshot"};
+
+    private static final int MAGIC = 0x4D544353; // "MTCS"
+    private static final int VERSION = 2;
+    private static final int END_MARKER = 0x454E4421; // "END!"
+
+    // Slot mapped by this run, -1 before open() found one
+    private static int mappedSlot = -1;
+
+    private final long libraryVersion;
+    private final int songCount;
+    private final IntBuffer ids;
+    private final IntBuffer durations;
+    private final StringColumn titles;
+    private final StringColumn artists;
+    private final StringColumn categories;
+    private final StringColumn filePaths;
+
+    private final IntBuffer playlistIds;
+    private final StringColumn playlistNames;
+    private final IntBuffer entryOffsets;
+    private final IntBuffer entryRows;
+
+    // Songs decoded so far, by row
+    private final AtomicReferenceArray<Song> decoded;
+
+    private StartupSnapshot(ByteBuffer buffer) {
+        libraryVersion = buffer.getLong();
+        songCount = buffer.getInt();
+        int playlistCount = buffer.getInt();
+        int entryCount = buffer.getInt();
+
+        ids = ints(buffer, songCount);
+        durations = ints(buffer, songCount);
+        titles = new StringColumn(buffer, songCount);
+        artists = new StringColumn(buffer, songCount);
+        categories = new StringColumn(buffer, songCount);
+        filePaths = new StringColumn(buffer, songCount);
+
+        playlistIds = ints(buffer, playlistCount);
+        playlistNames = new StringColumn(buffer, playlistCount);
+        entryOffsets = ints(buffer, playlistCount + 1);
+        entryRows = ints(buffer, entryCount);
+
+        decoded = new AtomicReferenceArray<>(songCount);
+    }
+
+    /**
+     * Maps the newest snapshot of the given source
+     * @param source Name of the database, see DatabaseSettings.libraryName()
+     * @return The snapshot, or null if there is none to show
+     */
+    public static synchronized StartupSnapshot open(String source) {
+        Path directory = directory();
+        int newest = -1;
+        long newestGeneration = -1;
+        for (int slot = 0; slot < SLOT_FILES.length; slot++) {
+            long generation = generationOf(directory.resolve(SLOT_FILES[slot]), source);
+            if (generation > newestGeneration) {
+                newest = slot;
+                newestGeneration = generation;
+            }
+        }
+        if (newest < 0) {
+            return null;
+        }
+
+        Path file = directory.resolve(SLOT_FILES[newest]);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(buffer.limit() - Integer.BYTES) != END_MARKER) {
+                throw new IOException("incomplete file");
+            }
+            buffer.position(2 * Integer.BYTES + Long.BYTES);
+            skipString(buffer);
+            align(buffer);
+            StartupSnapshot snapshot = new StartupSnapshot(buffer);
+            mappedSlot = newest;
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring startup snapshot " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves the library for the next start
+     * @param source Name of the database the library was loaded from
+     * @param libraryVersion Change version read before the library was loaded, -1 if unknown
+     * @param songs Every song, in the order the songs table shows them
+     * @param playlists Every playlist with its songs in order
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(String source, long libraryVersion, List<Song> songs,
+                             List<Playlist> playlists) throws IOException {
+        Map<Integer, List<Integer>> songIdsByPlaylist = new HashMap<>();
+        for (Playlist playlist : playlists) {
+            List<Integer> songIds = new ArrayList<>(playlist.getSongs().size());
+            for (Song song : playlist.getSongs()) {
+                songIds.add(song.getId());
+            }
+            songIdsByPlaylist.put(playlist.getId(), songIds);
+        }
+
+        try (Writer writer = writer(source, libraryVersion)) {
+            writer.addSongs(songs);
+            writer.finish(playlists, songIdsByPlaylist);
+        }
+    }
+
+    /**
+     * Starts a snapshot that songs are added to while the library streams in,
+     * so it never has to be held in one list
+     * @param source Name of the database the library is loaded from
+     * @param libraryVersion Change version read before the library is loaded, -1 if unknown
+     * @return Writer to add the songs to, then finish; close it to drop an unfinished snapshot
+     * @throws IOException if the snapshot folder cannot be used
+     */
+    public static Writer writer(String source, long libraryVersion) throws IOException {
+        Path directory = directory();
+        Files.createDirectories(directory);
+        return new Writer(directory, source, libraryVersion);
+    }
+
+    // Writes a finished snapshot to the slot not mapped by this run and makes it the newest
+    private static synchronized void commit(Writer writer, List<Playlist> playlists,
+                                            Map<Integer, List<Integer>> songIdsByPlaylist) throws IOException {
+        Path directory = writer.directory;
+        String source = writer.source;
+        long generation = 0;
+        for (String slotFile : SLOT_FILES) {
+            generation = Math.max(generation, generationOf(directory.resolve(slotFile), source) + 1);
+        }
+        // Never the slot this run has mapped; otherwise the older one
+        int slot = mappedSlot >= 0 ? 1 - mappedSlot
+                : generationOf(directory.resolve(SLOT_FILES[0]), source) <= generationOf(directory.resolve(SLOT_FILES[1]), source) ? 0 : 1;
+        Path file = directory.resolve(SLOT_FILES[slot]);
+        Path tempFile = directory.resolve(SLOT_FILES[slot] + ".tmp");
+
+        // Row of each song id: (id << 32 | row) sorted, searched by id
+        int songCount = writer.ids.size();
+        long[] rowsById = new long[songCount];
+        for (int row = 0; row < songCount; row++) {
+            rowsById[row] = ((long) writer.ids.get(row) << 32) | row;
+        }
+        Arrays.sort(rowsById);
+
+        IntList entryOffsets = new IntList();
+        IntList entryRows = new IntList();
+        entryOffsets.add(0);
+        for (Playlist playlist : playlists) {
+            for (Integer songId : songIdsByPlaylist.getOrDefault(playlist.getId(), List.of())) {
+                int row = rowOf(rowsById, songId);
+                if (row >= 0) {
+                    entryRows.add(row);
+                }
+            }
+            entryOffsets.add(entryRows.size());
+        }
+
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+             ColumnWriter playlistNames = new ColumnWriter(directory, false)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            byte[] sourceBytes = source.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(sourceBytes.length);
+            out.write(sourceBytes);
+            pad(out);
+            out.writeLong(writer.libraryVersion);
+
+            out.writeInt(songCount);
+            out.writeInt(playlists.size());
+            out.writeInt(entryRows.size());
+
+            writer.ids.writeTo(out);
+            writer.durations.writeTo(out);
+            writer.titles.writeTo(out);
+            writer.artists.writeTo(out);
+            writer.categories.writeTo(out);
+            writer.filePaths.writeTo(out);
+
+            for (Playlist playlist : playlists) {
+                out.writeInt(playlist.getId());
+                playlistNames.add(playlist.getName());
+            }
+            playlistNames.writeTo(out);
+            entryOffsets.writeTo(out);
+            entryRows.writeTo(out);
+
+            out.writeInt(END_MARKER);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Row of a song id in the sorted (id << 32 | row) keys, or -1
+    private static int rowOf(long[] rowsById, int songId) {
+        int low = 0;
+        int high = rowsById.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = (int) (rowsById[middle] >> 32);
+            if (id < songId) {
+                low = middle + 1;
+            } else if (id > songId) {
+                high = middle - 1;
+            } else {
+                return (int) rowsById[middle];
+            }
+        }
+        return -1;
+    }
+
+    public long getLibraryVersion() {
+        return libraryVersion;
+    }
+
+    public int getSongCount() {
+        return songCount;
+    }
+
+    // Song at a row, decoded on first use and then kept
+    public Song getSong(int row) {
+        Song song = decoded.get(row);
+        if (song == null) {
+            song = new Song(ids.get(row), titles.get(row), artists.get(row), categories.get(row),
+                    durations.get(row), filePaths.get(row));
+            if (!decoded.compareAndSet(row, null, song)) {
+                song = decoded.get(row);
+            }
+        }
+        return song;
+    }
+
+    // All songs as a list that decodes rows as they are read
+    public List<Song> getSongs() {
+        return new AbstractList<>() {
+            @Override
+            public Song get(int index) {
+                return getSong(index);
+            }
+
+            @Override
+            public int size() {
+                return songCount;
+            }
+        };
+    }
+
+    // Playlists with their song count, total time and song ids, like PlaylistManager.getAllPlaylistsWithTotals()
+    public List<Playlist> getPlaylists() {
+        List<Playlist> playlists = new ArrayList<>(playlistIds.limit());
+        for (int i = 0; i < playlistIds.limit(); i++) {
+            int from = entryOffsets.get(i);
+            int to = entryOffsets.get(i + 1);
+            int totalSeconds = 0;
+            List<Integer> songIds = new ArrayList<>(to - from);
+            for (int entry = from; entry < to; entry++) {
+                int row = entryRows.get(entry);
+                totalSeconds += durations.get(row);
+                songIds.add(ids.get(row));
+            }
+
+            Playlist playlist = new Playlist(playlistIds.get(i), playlistNames.get(i));
+            playlist.setSongCount(songIds.size());
+            playlist.setTotalTime(totalSeconds);
+            playlist.setSongIds(songIds);
+            playlists.add(playlist);
+        }
+        return playlists;
+    }
+
+    // Songs of a playlist in order; empty if the snapshot does not have the playlist
+    public List<Song> getSongsInPlaylist(int playlistId) {
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < playlistIds.limit(); i++) {
+            if (playlistIds.get(i) == playlistId) {
+                for (int entry = entryOffsets.get(i); entry < entryOffsets.get(i + 1); entry++) {
+                    songs.add(getSong(entryRows.get(entry)));
+                }
+                break;
+            }
+        }
+        return songs;
+    }
+
+    private static Path directory() {
+        return Paths.get(System.getProperty("mytunes.snapshot.dir", DEFAULT_DIRECTORY));
+    }
+
+    // Generation of a snapshot file of the source, -1 if it is missing or of another source
+    private static long generationOf(Path file, String source) {
+        if (!Files.isRegularFile(file)) {
+            return -1;
+        }
+        try (InputStream in = Files.newInputStream(file);
+             DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                return -1;
+            }
+            long generation = data.readLong();
+            byte[] sourceBytes = new byte[data.readInt()];
+            data.readFully(sourceBytes);
+            return new String(sourceBytes, StandardCharsets.UTF_8).equals(source) ? generation : -1;
+        } catch (IOException | NegativeArraySizeException e) {
+            return -1;
+        }
+    }
+
+    private static void pad(DataOutputStream out) throws IOException {
+        while (out.size() % Integer.BYTES != 0) {
+            out.writeByte(0);
+        }
+    }
+
+    private static void align(ByteBuffer buffer) {
+        buffer.position((buffer.position() + Integer.BYTES - 1) & -Integer.BYTES);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    // View of the next count ints, moving the buffer past them
+    private static IntBuffer ints(ByteBuffer buffer, int count) {
+        if (count < 0 || (long) count * Integer.BYTES > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer section = buffer.slice();
+        section.limit(count * Integer.BYTES);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return section.asIntBuffer();
+    }
+
+    /**
+     * Snapshot being written. The song columns are collected as ints, with
+     * the string bytes spilled to temporary files next to the snapshot, and
+     * put together by finish().
+     */
+    public static final class Writer implements Closeable {
+        private final Path directory;
+        private final String source;
+        private final long libraryVersion;
+
+        private final IntList ids = new IntList();
+        private final IntList durations = new IntList();
+        private final List<ColumnWriter> columns = new ArrayList<>();
+        private final ColumnWriter titles;
+        private final ColumnWriter artists;
+        private final ColumnWriter categories;
+        private final ColumnWriter filePaths;
+
+        // First failure of addSongs(), reported by finish()
+        private IOException failure;
+
+        private Writer(Path directory, String source, long libraryVersion) throws IOException {
+            this.directory = directory;
+            this.source = source;
+            this.libraryVersion = libraryVersion;
+            try {
+                // Artists and categories repeat, titles and file paths mostly do not
+                titles = column(false);
+                artists = column(true);
+                categories = column(true);
+                filePaths = column(false);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private ColumnWriter column(boolean shared) throws IOException {
+            ColumnWriter column = new ColumnWriter(directory, shared);
+            columns.add(column);
+            return column;
+        }
+
+        /**
+         * Adds the next songs, in the order the songs table shows them; a
+         * write failure is kept and reported by finish()
+         * @param songs Next songs
+         */
+        public void addSongs(List<Song> songs) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                for (Song song : songs) {
+                    ids.add(song.getId());
+                    durations.add(song.getDuration());
+                    titles.add(song.getTitle());
+                    artists.add(song.getArtist());
+                    categories.add(song.getCategory());
+                    filePaths.add(song.getFilePath());
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Writes the snapshot; the temporary files are removed either way
+         * @param playlists Every playlist; only the ids and names are used
+         * @param songIdsByPlaylist Song ids of each playlist in order
+         * @throws IOException if the snapshot cannot be written
+         */
+        public void finish(List<Playlist> playlists, Map<Integer, List<Integer>> songIdsByPlaylist) throws IOException {
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+                commit(this, playlists, songIdsByPlaylist);
+            } finally {
+                close();
+            }
+        }
+
+        @Override
+        public void close() {
+            for (ColumnWriter column : columns) {
+                column.close();
+            }
+            columns.clear();
+        }
+    }
+
+    // String column being written: refs in memory, the bytes of the strings in a temporary file
+    private static final class ColumnWriter implements Closeable {
+        private final boolean shared;
+        private final Map<String, Integer> sharedRefs = new HashMap<>();
+        private final IntList refs = new IntList();
+        private final IntList offsets = new IntList();
+        private final Path bytesFile;
+        private final DataOutputStream bytesOut;
+
+        // Only repeated values, e.g. artists, are looked up; the rest are stored once per row
+        private ColumnWriter(Path directory, boolean shared) throws IOException {
+            this.shared = shared;
+            bytesFile = Files.createTempFile(directory, "column-", ".tmp");
+            bytesOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bytesFile), 1 << 16));
+            offsets.add(0);
+        }
+
+        void add(String value) throws IOException {
+            if (value == null) {
+                refs.add(-1);
+                return;
+            }
+            if (shared) {
+                Integer ref = sharedRefs.get(value);
+                if (ref != null) {
+                    refs.add(ref);
+                    return;
+                }
+                sharedRefs.put(value, offsets.size() - 1);
+            }
+            refs.add(offsets.size() - 1);
+            bytesOut.write(value.getBytes(StandardCharsets.UTF_8));
+            offsets.add(bytesOut.size());
+        }
+
+        // Refs, then the string table: count, byte length, offsets, bytes
+        void writeTo(DataOutputStream out) throws IOException {
+            bytesOut.flush();
+            refs.writeTo(out);
+            out.writeInt(offsets.size() - 1);
+            out.writeInt(bytesOut.size());
+            offsets.writeTo(out);
+            Files.copy(bytesFile, out);
+            pad(out);
+        }
+
+        @Override
+        public void close() {
+            try {
+                bytesOut.close();
+                Files.deleteIfExists(bytesFile);
+            } catch (IOException e) {
+                System.err.println("Failed to remove " + bytesFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Growable int array, written as a block of ints
+    private static final class IntList {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    // A column of string refs and the table of distinct strings they point into
+    private static final class StringColumn {
+        private final IntBuffer refs;
+        private final IntBuffer offsets;
+        private final ByteBuffer bytes;
+
+        private StringColumn(ByteBuffer buffer, int rows) {
+            refs = ints(buffer, rows);
+            int count = buffer.getInt();
+            int byteLength = buffer.getInt();
+            offsets = ints(buffer, count + 1);
+            if (byteLength < 0 || byteLength > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            bytes = buffer.slice();
+            bytes.limit(byteLength);
+            buffer.position(buffer.position() + byteLength);
+            align(buffer);
+        }
+
+        String get(int row) {
+            int ref = refs.get(row);
+            if (ref < 0) {
+                return null;
+            }
+            int start = offsets.get(ref);
+            byte[] value = new byte[offsets.get(ref + 1) - start];
+            ByteBuffer view = bytes.duplicate();
+            view.position(start);
+            view.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+}
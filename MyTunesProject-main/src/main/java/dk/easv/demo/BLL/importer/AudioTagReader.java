@@ -0,0 +1,569 @@
+package dk.easv.demo.BLL.importer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads title, artist, genre and duration from audio files without decoding
+ * any audio. Supports MP3 (ID3v2.2-2.4, ID3v1, Xing/VBRI or CBR timing),
+ * FLAC and Ogg Vorbis/Opus (Vorbis comments), MP4/M4A (ilst atoms) and
+ * WAV (LIST INFO). Only the header areas of a file are read, so one call
+ * costs a few small positioned reads. Malformed metadata is skipped and
+ * whatever was read before it is kept. Instances are stateless and can be
+ * shared between threads.
+ */
+public class AudioTagReader {
+
+    // Bigger tag blocks are almost always embedded artwork, which we never need
+    private static final int MAX_TAG_BYTES = 1024 * 1024;
+    private static final int MAX_TEXT_FRAME_BYTES = 64 * 1024;
+    private static final int MPEG_SYNC_SEARCH_BYTES = 64 * 1024;
+    private static final int OGG_TAIL_BYTES = 64 * 1024;
+
+    private static final int[] MPEG_SAMPLE_RATES = {44100, 48000, 32000};
+    private static final int[][] MPEG_BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448}, // MPEG-1 layer I
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},    // MPEG-1 layer II
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},     // MPEG-1 layer III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},    // MPEG-2/2.5 layer I
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}          // MPEG-2/2.5 layer II and III
+    };
+
+    // Genre numbers used by ID3v1, ID3v2 "(n)" references and the MP4 gnre atom
+    private static final String[] ID3_GENRES = {
+            "Blues", "Classic Rock", "Country", "Dance", "Disco", "Funk", "Grunge", "Hip-Hop", "Jazz", "Metal",
+            "New Age", "Oldies", "Other", "Pop", "R&B", "Rap", "Reggae", "Rock", "Techno", "Industrial",
+            "Alternative", "Ska", "Death Metal", "Pranks", "Soundtrack", "Euro-Techno", "Ambient", "Trip-Hop",
+            "Vocal", "Jazz+Funk", "Fusion", "Trance", "Classical", "Instrumental", "Acid", "House", "Game",
+            "Sound Clip", "Gospel", "Noise", "Alternative Rock", "Bass", "Soul", "Punk", "Space", "Meditative",
+            "Instrumental Pop", "Instrumental Rock", "Ethnic", "Gothic", "Darkwave", "Techno-Industrial",
+            "Electronic", "Pop-Folk", "Eurodance", "Dream", "Southern Rock", "Comedy", "Cult", "Gangsta",
+            "Top 40", "Christian Rap", "Pop/Funk", "Jungle", "Native American", "Cabaret", "New Wave",
+            "Psychedelic", "Rave", "Showtunes", "Trailer", "Lo-Fi", "Tribal", "Acid Punk", "Acid Jazz", "Polka",
+            "Retro", "Musical", "Rock & Roll", "Hard Rock"
+    };
+
+    /**
+     * Reads the metadata of one file
+     * @param file Audio file
+     * @return Tags found, empty if the format is not recognised
+     * @throws IOException if the file cannot be read
+     */
+    public AudioTags read(Path file) throws IOException {
+        AudioTags tags = new AudioTags();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = readAt(channel, 0, 12);
+            try {
+                if (startsWith(head, 0, "fLaC")) {
+                    readFlac(channel, tags);
+                } else if (startsWith(head, 0, "OggS")) {
+                    readOgg(channel, size, tags);
+                } else if (startsWith(head, 0, "RIFF") && startsWith(head, 8, "WAVE")) {
+                    readWav(channel, size, tags);
+                } else if (startsWith(head, 4, "ftyp")) {
+                    readMp4(channel, size, tags);
+                } else {
+                    readMp3(channel, size, tags);
+                }
+            } catch (RuntimeException e) {
+                // Truncated or corrupt metadata, keep what was read so far
+            }
+        }
+        return tags;
+    }
+
+    // ===== MP3 =====
+
+    private void readMp3(FileChannel channel, long size, AudioTags tags) throws IOException {
+        long audioStart = 0;
+        ByteBuffer header = readAt(channel, 0, 10);
+        if (header.limit() == 10 && startsWith(header, 0, "ID3")) {
+            int major = header.get(3) & 0xFF;
+            int flags = header.get(5) & 0xFF;
+            int tagSize = syncsafe(header, 6);
+            audioStart = 10L + tagSize + ((flags & 0x10) != 0 ? 10 : 0);
+            readId3v2Frames(channel, major, flags, 10L + tagSize, tags);
+        }
+
+        boolean hasId3v1 = false;
+        if (size >= 128) {
+            ByteBuffer v1 = readAt(channel, size - 128, 128);
+            if (startsWith(v1, 0, "TAG")) {
+                hasId3v1 = true;
+                tags.setTitle(text(v1, 3, 30, StandardCharsets.ISO_8859_1));
+                tags.setArtist(text(v1, 33, 30, StandardCharsets.ISO_8859_1));
+                tags.setGenre(genreName(v1.get(127) & 0xFF));
+            }
+        }
+
+        long audioEnd = size - (hasId3v1 ? 128 : 0);
+        tags.setDurationSeconds(mpegDuration(channel, audioStart, audioEnd));
+    }
+
+    private void readId3v2Frames(FileChannel channel, int major, int flags, long tagEnd, AudioTags tags) throws IOException {
+        boolean v22 = major == 2;
+        int frameHeaderSize = v22 ? 6 : 10;
+        long position = 10;
+
+        if ((flags & 0x40) != 0 && !v22) {
+            ByteBuffer extended = readAt(channel, position, 4);
+            position += major == 4 ? syncsafe(extended, 0) : 4 + extended.getInt(0);
+        }
+
+        int found = 0;
+        while (position + frameHeaderSize <= tagEnd && found < 3) {
+            ByteBuffer frame = readAt(channel, position, frameHeaderSize);
+            if (frame.limit() < frameHeaderSize || frame.get(0) == 0) {
+                break; // padding
+            }
+
+            String id = text(frame, 0, v22 ? 3 : 4, StandardCharsets.ISO_8859_1);
+            int frameSize;
+            if (v22) {
+                frameSize = ((frame.get(3) & 0xFF) << 16) | ((frame.get(4) & 0xFF) << 8) | (frame.get(5) & 0xFF);
+            } else {
+                frameSize = major == 4 ? syncsafe(frame, 4) : frame.getInt(4);
+            }
+            if (frameSize <= 0 || position + frameHeaderSize + frameSize > tagEnd) {
+                break;
+            }
+
+            boolean title = id.equals("TIT2") || id.equals("TT2");
+            boolean artist = id.equals("TPE1") || id.equals("TP1");
+            boolean genre = id.equals("TCON") || id.equals("TCO");
+            if ((title || artist || genre) && frameSize <= MAX_TEXT_FRAME_BYTES) {
+                String value = id3Text(readAt(channel, position + frameHeaderSize, frameSize));
+                if (title) {
+                    tags.setTitle(value);
+                } else if (artist) {
+                    tags.setArtist(value);
+                } else {
+                    tags.setGenre(id3Genre(value));
+                }
+                found++;
+            }
+            position += frameHeaderSize + frameSize;
+        }
+    }
+
+    private static String id3Text(ByteBuffer body) {
+        if (body.limit() < 1) {
+            return null;
+        }
+        Charset charset;
+        switch (body.get(0)) {
+            case 1: charset = StandardCharsets.UTF_16; break;
+            case 2: charset = StandardCharsets.UTF_16BE; break;
+            case 3: charset = StandardCharsets.UTF_8; break;
+            default: charset = StandardCharsets.ISO_8859_1;
+        }
+        return text(body, 1, body.limit() - 1, charset);
+    }
+
+    // "(17)", "17", "(17)Rock" or plain text
+    private static String id3Genre(String value) {
+        if (value == null) {
+            return null;
+        }
+        String number = value;
+        if (value.startsWith("(")) {
+            int close = value.indexOf(')');
+            if (close > 0) {
+                String rest = value.substring(close + 1).trim();
+                if (!rest.isEmpty()) {
+                    return rest;
+                }
+                number = value.substring(1, close);
+            }
+        }
+        try {
+            return genreName(Integer.parseInt(number.trim()));
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static String genreName(int index) {
+        return index >= 0 && index < ID3_GENRES.length ? ID3_GENRES[index] : null;
+    }
+
+    /**
+     * Finds the first valid MPEG frame and derives the duration from its
+     * Xing/Info or VBRI header, or from the bitrate for constant bitrate files
+     */
+    private static double mpegDuration(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = readAt(channel, start, (int) Math.max(0, Math.min(MPEG_SYNC_SEARCH_BYTES, end - start)));
+        int limit = buffer.limit();
+
+        for (int i = 0; i + 4 <= limit; i++) {
+            int b1 = buffer.get(i + 1) & 0xFF;
+            if ((buffer.get(i) & 0xFF) != 0xFF || (b1 & 0xE0) != 0xE0) {
+                continue;
+            }
+            int versionBits = (b1 >> 3) & 3;  // 0 = 2.5, 2 = 2, 3 = 1
+            int layerBits = (b1 >> 1) & 3;    // 1 = III, 2 = II, 3 = I
+            int b2 = buffer.get(i + 2) & 0xFF;
+            int bitrateIndex = b2 >> 4;
+            int rateIndex = (b2 >> 2) & 3;
+            if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15 || rateIndex == 3) {
+                continue;
+            }
+
+            boolean mpeg1 = versionBits == 3;
+            int layer = 4 - layerBits;
+            int sampleRate = MPEG_SAMPLE_RATES[rateIndex] >> (mpeg1 ? 0 : versionBits == 2 ? 1 : 2);
+            int bitrate = 1000 * MPEG_BITRATES[mpeg1 ? layer - 1 : layer == 1 ? 3 : 4][bitrateIndex];
+            int samplesPerFrame = layer == 1 ? 384 : (layer == 3 && !mpeg1) ? 576 : 1152;
+            int padding = (b2 >> 1) & 1;
+            int frameLength = layer == 1
+                    ? (12 * bitrate / sampleRate + padding) * 4
+                    : (layer == 3 && !mpeg1 ? 72 : 144) * bitrate / sampleRate + padding;
+
+            // A real frame is followed by another frame header
+            int next = i + frameLength;
+            if (next + 2 <= limit && ((buffer.get(next) & 0xFF) != 0xFF || (buffer.get(next + 1) & 0xE0) != 0xE0)) {
+                continue;
+            }
+
+            boolean mono = ((buffer.get(i + 3) & 0xFF) >> 6) == 3;
+            int xing = i + 4 + (mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17));
+            if (xing + 12 <= limit && (startsWith(buffer, xing, "Xing") || startsWith(buffer, xing, "Info"))
+                    && (buffer.getInt(xing + 4) & 1) != 0) {
+                return (buffer.getInt(xing + 8) & 0xFFFFFFFFL) * (double) samplesPerFrame / sampleRate;
+            }
+            int vbri = i + 4 + 32;
+            if (vbri + 18 <= limit && startsWith(buffer, vbri, "VBRI")) {
+                return (buffer.getInt(vbri + 14) & 0xFFFFFFFFL) * (double) samplesPerFrame / sampleRate;
+            }
+            return (end - (start + i)) * 8.0 / bitrate;
+        }
+        return 0;
+    }
+
+    // ===== FLAC =====
+
+    private void readFlac(FileChannel channel, AudioTags tags) throws IOException {
+        long position = 4;
+        boolean last = false;
+        while (!last) {
+            ByteBuffer header = readAt(channel, position, 4);
+            if (header.limit() < 4) {
+                break;
+            }
+            int type = header.get(0) & 0x7F;
+            last = (header.get(0) & 0x80) != 0;
+            int length = ((header.get(1) & 0xFF) << 16) | ((header.get(2) & 0xFF) << 8) | (header.get(3) & 0xFF);
+
+            if (type == 0) {
+                // STREAMINFO: 20 bits sample rate, 3 channels, 5 bits per sample, 36 total samples
+                long packed = readAt(channel, position + 4, 18).getLong(10);
+                int sampleRate = (int) (packed >>> 44);
+                long totalSamples = packed & 0xFFFFFFFFFL;
+                if (sampleRate > 0) {
+                    tags.setDurationSeconds((double) totalSamples / sampleRate);
+                }
+            } else if (type == 4 && length <= MAX_TAG_BYTES) {
+                readVorbisComments(readAt(channel, position + 4, length), tags);
+            }
+            position += 4 + length;
+        }
+    }
+
+    // Little-endian vendor string followed by "KEY=value" entries
+    private static void readVorbisComments(ByteBuffer buffer, AudioTags tags) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int vendorLength = buffer.getInt();
+        buffer.position(buffer.position() + vendorLength);
+        int count = buffer.getInt();
+
+        for (int i = 0; i < count && buffer.remaining() >= 4; i++) {
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            String entry = text(buffer, buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            if (entry == null) {
+                continue;
+            }
+
+            int separator = entry.indexOf('=');
+            if (separator > 0) {
+                String key = entry.substring(0, separator).toUpperCase();
+                String value = entry.substring(separator + 1);
+                if (key.equals("TITLE")) {
+                    tags.setTitle(value);
+                } else if (key.equals("ARTIST")) {
+                    tags.setArtist(value);
+                } else if (key.equals("GENRE")) {
+                    tags.setGenre(value);
+                }
+            }
+        }
+    }
+
+    // ===== Ogg =====
+
+    private void readOgg(FileChannel channel, long size, AudioTags tags) throws IOException {
+        int sampleRate = 0;
+        for (byte[] packet : readOggPackets(channel, 2)) {
+            ByteBuffer buffer = ByteBuffer.wrap(packet);
+            if (startsWith(buffer, 1, "vorbis") && packet[0] == 1 && packet.length >= 16) {
+                sampleRate = buffer.order(ByteOrder.LITTLE_ENDIAN).getInt(12);
+            } else if (startsWith(buffer, 0, "OpusHead")) {
+                sampleRate = 48000; // Opus granule positions always count 48 kHz samples
+            } else if (startsWith(buffer, 1, "vorbis") && packet[0] == 3) {
+                readVorbisComments(ByteBuffer.wrap(packet, 7, packet.length - 7).slice(), tags);
+            } else if (startsWith(buffer, 0, "OpusTags")) {
+                readVorbisComments(ByteBuffer.wrap(packet, 8, packet.length - 8).slice(), tags);
+            }
+        }
+
+        long granule = lastGranulePosition(channel, size);
+        if (sampleRate > 0 && granule > 0) {
+            tags.setDurationSeconds((double) granule / sampleRate);
+        }
+    }
+
+    // First packets of the stream, reassembled across pages
+    private static List<byte[]> readOggPackets(FileChannel channel, int maxPackets) throws IOException {
+        List<byte[]> packets = new ArrayList<>();
+        ByteArrayOutputStream current = new ByteArrayOutputStream();
+        long position = 0;
+
+        while (packets.size() < maxPackets && current.size() <= MAX_TAG_BYTES) {
+            ByteBuffer header = readAt(channel, position, 27);
+            if (header.limit() < 27 || !startsWith(header, 0, "OggS")) {
+                break;
+            }
+            int segmentCount = header.get(26) & 0xFF;
+            ByteBuffer segments = readAt(channel, position + 27, segmentCount);
+            int bodyLength = 0;
+            for (int i = 0; i < segments.limit(); i++) {
+                bodyLength += segments.get(i) & 0xFF;
+            }
+            ByteBuffer body = readAt(channel, position + 27 + segmentCount, bodyLength);
+
+            int offset = 0;
+            for (int i = 0; i < segments.limit() && packets.size() < maxPackets; i++) {
+                int length = segments.get(i) & 0xFF;
+                current.write(body.array(), offset, Math.min(length, body.limit() - offset));
+                offset += length;
+                if (length < 255) {
+                    packets.add(current.toByteArray());
+                    current.reset();
+                }
+            }
+            position += 27 + segmentCount + bodyLength;
+        }
+        return packets;
+    }
+
+    private static long lastGranulePosition(FileChannel channel, long size) throws IOException {
+        long start = Math.max(0, size - OGG_TAIL_BYTES);
+        ByteBuffer tail = readAt(channel, start, (int) (size - start));
+        for (int i = tail.limit() - 27; i >= 0; i--) {
+            if (startsWith(tail, i, "OggS")) {
+                long granule = tail.duplicate().order(ByteOrder.LITTLE_ENDIAN).getLong(i + 6);
+                if (granule > 0) {
+                    return granule;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // ===== MP4 =====
+
+    private void readMp4(FileChannel channel, long size, AudioTags tags) throws IOException {
+        long[] moov = findAtom(channel, 0, size, "moov");
+        if (moov == null) {
+            return;
+        }
+
+        long[] mvhd = findAtom(channel, moov[0], moov[1], "mvhd");
+        if (mvhd != null) {
+            ByteBuffer header = readAt(channel, mvhd[0], 32);
+            boolean version1 = header.get(0) == 1;
+            long timescale = header.getInt(version1 ? 20 : 12) & 0xFFFFFFFFL;
+            long duration = version1 ? header.getLong(24) : header.getInt(16) & 0xFFFFFFFFL;
+            if (timescale > 0) {
+                tags.setDurationSeconds((double) duration / timescale);
+            }
+        }
+
+        long[] udta = findAtom(channel, moov[0], moov[1], "udta");
+        long[] meta = udta == null ? null : findAtom(channel, udta[0], udta[1], "meta");
+        if (meta == null) {
+            return;
+        }
+        // meta is a full box in MP4 but not in some QuickTime files
+        long childrenStart = startsWith(readAt(channel, meta[0] + 4, 4), 0, "hdlr") ? meta[0] : meta[0] + 4;
+        long[] ilst = findAtom(channel, childrenStart, meta[1], "ilst");
+        if (ilst == null) {
+            return;
+        }
+
+        ByteBuffer items = readAt(channel, ilst[0], (int) Math.min(MAX_TAG_BYTES, ilst[1] - ilst[0]));
+        int position = 0;
+        while (position + 8 <= items.limit()) {
+            int itemSize = items.getInt(position);
+            if (itemSize < 8) {
+                break;
+            }
+            String type = text(items, position + 4, 4, StandardCharsets.ISO_8859_1);
+            int dataStart = position + 8;
+            // data atom: size, "data", type, locale, value
+            if (dataStart + 16 <= items.limit() && startsWith(items, dataStart + 4, "data")) {
+                int valueStart = dataStart + 16;
+                int valueLength = Math.min(items.getInt(dataStart), itemSize - 8) - 16;
+                if (valueLength > 0 && valueStart + valueLength <= items.limit()) {
+                    if ("\u00A9nam".equals(type)) {
+                        tags.setTitle(text(items, valueStart, valueLength, StandardCharsets.UTF_8));
+                    } else if ("\u00A9ART".equals(type)) {
+                        tags.setArtist(text(items, valueStart, valueLength, StandardCharsets.UTF_8));
+                    } else if ("\u00A9gen".equals(type)) {
+                        tags.setGenre(text(items, valueStart, valueLength, StandardCharsets.UTF_8));
+                    } else if ("gnre".equals(type) && valueLength >= 2) {
+                        tags.setGenre(genreName((items.getShort(valueStart) & 0xFFFF) - 1));
+                    }
+                }
+            }
+            position += itemSize;
+        }
+    }
+
+    // Body range {start, end} of the first child atom of the given type, or null
+    private static long[] findAtom(FileChannel channel, long start, long end, String type) throws IOException {
+        long position = start;
+        while (position + 8 <= end) {
+            ByteBuffer header = readAt(channel, position, 16);
+            if (header.limit() < 8) {
+                return null;
+            }
+            long atomSize = header.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (atomSize == 1 && header.limit() >= 16) {
+                atomSize = header.getLong(8);
+                headerSize = 16;
+            } else if (atomSize == 0) {
+                atomSize = end - position;
+            }
+            if (atomSize < headerSize) {
+                return null;
+            }
+            if (startsWith(header, 4, type)) {
+                return new long[]{position + headerSize, Math.min(end, position + atomSize)};
+            }
+            position += atomSize;
+        }
+        return null;
+    }
+
+    // ===== WAV =====
+
+    private void readWav(FileChannel channel, long size, AudioTags tags) throws IOException {
+        long position = 12;
+        int byteRate = 0;
+        long dataSize = 0;
+
+        while (position + 8 <= size) {
+            ByteBuffer header = readAt(channel, position, 8).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.limit() < 8) {
+                break;
+            }
+            String id = text(header, 0, 4, StandardCharsets.ISO_8859_1);
+            long length = header.getInt(4) & 0xFFFFFFFFL;
+
+            if ("fmt ".equals(id)) {
+                byteRate = readAt(channel, position + 8, 16).order(ByteOrder.LITTLE_ENDIAN).getInt(8);
+            } else if ("data".equals(id)) {
+                dataSize = Math.min(length, size - position - 8);
+            } else if ("LIST".equals(id) && length <= MAX_TAG_BYTES) {
+                readWavInfo(readAt(channel, position + 8, (int) length), tags);
+            }
+            position += 8 + length + (length & 1);
+        }
+
+        if (byteRate > 0 && dataSize > 0) {
+            tags.setDurationSeconds((double) dataSize / byteRate);
+        }
+    }
+
+    private static void readWavInfo(ByteBuffer list, AudioTags tags) {
+        if (!startsWith(list, 0, "INFO")) {
+            return;
+        }
+        list.order(ByteOrder.LITTLE_ENDIAN);
+        int position = 4;
+        while (position + 8 <= list.limit()) {
+            String id = text(list, position, 4, StandardCharsets.ISO_8859_1);
+            int length = list.getInt(position + 4);
+            if (length < 0 || position + 8 + length > list.limit()) {
+                break;
+            }
+            String value = text(list, position + 8, length, StandardCharsets.UTF_8);
+            if ("INAM".equals(id)) {
+                tags.setTitle(value);
+            } else if ("IART".equals(id)) {
+                tags.setArtist(value);
+            } else if ("IGNR".equals(id)) {
+                tags.setGenre(value);
+            }
+            position += 8 + length + (length & 1);
+        }
+    }
+
+    // ===== Helpers =====
+
+    // Up to length bytes from position; shorter at the end of the file
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int offset, String ascii) {
+        if (offset < 0 || offset + ascii.length() > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buffer.get(offset + i) != (byte) ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int syncsafe(ByteBuffer buffer, int offset) {
+        return ((buffer.get(offset) & 0x7F) << 21) | ((buffer.get(offset + 1) & 0x7F) << 14)
+                | ((buffer.get(offset + 2) & 0x7F) << 7) | (buffer.get(offset + 3) & 0x7F);
+    }
+
+    private static String text(ByteBuffer buffer, int offset, int length, Charset charset) {
+        if (length <= 0 || offset + length > buffer.limit()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.duplicate().position(offset).get(bytes);
+        return new String(bytes, charset);
+    }
+}
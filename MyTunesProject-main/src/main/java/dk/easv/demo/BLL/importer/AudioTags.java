@@ -0,0 +1,51 @@
+package dk.easv.demo.BLL.importer;
+
+/**
+ * Metadata read from an audio file. Fields the file does not carry are null,
+ * an unknown duration is 0.
+ */
+public final class AudioTags {
+    private String title;
+    private String artist;
+    private String genre;
+    private int durationSeconds;
+
+    public String getTitle() { return title; }
+    public String getArtist() { return artist; }
+    public String getGenre() { return genre; }
+    public int getDurationSeconds() { return durationSeconds; }
+
+    // Setters only fill fields that are still empty, so the first source read wins
+    void setTitle(String title) {
+        if (this.title == null) {
+            this.title = clean(title);
+        }
+    }
+
+    void setArtist(String artist) {
+        if (this.artist == null) {
+            this.artist = clean(artist);
+        }
+    }
+
+    void setGenre(String genre) {
+        if (this.genre == null) {
+            this.genre = clean(genre);
+        }
+    }
+
+    void setDurationSeconds(double seconds) {
+        if (durationSeconds == 0 && seconds > 0 && seconds < Integer.MAX_VALUE) {
+            durationSeconds = (int) Math.round(seconds);
+        }
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        int end = value.indexOf('\0');
+        String trimmed = (end >= 0 ? value.substring(0, end) : value).trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
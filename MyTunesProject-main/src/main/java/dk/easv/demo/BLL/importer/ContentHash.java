@@ -0,0 +1,58 @@
+package dk.easv.demo.BLL.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cheap 64-bit fingerprint of a file's content: FNV-1a over the file size,
+ * the first 64 KB and the last 64 KB. Tag edits rewrite the start (ID3v2,
+ * FLAC, Vorbis) or the end (ID3v1, most MP4 writers) of a file, so a
+ * changed fingerprint catches them without reading whole files. It is not
+ * a cryptographic hash; it only tells "touched" apart from "rewritten" and
+ * recognises moved files.
+ */
+final class ContentHash {
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ContentHash() {
+    }
+
+    static long of(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long hash = FNV_OFFSET;
+            for (int shift = 0; shift < 64; shift += 8) {
+                hash = (hash ^ ((size >>> shift) & 0xff)) * FNV_PRIME;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+            hash = sample(channel, 0, buffer, hash);
+            if (size > SAMPLE_SIZE) {
+                hash = sample(channel, Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE), buffer, hash);
+            }
+            return hash;
+        }
+    }
+
+    private static long sample(FileChannel channel, long position, ByteBuffer buffer, long hash) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            hash = (hash ^ (buffer.get() & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
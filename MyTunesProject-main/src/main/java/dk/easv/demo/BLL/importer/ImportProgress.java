@@ -0,0 +1,56 @@
+package dk.easv.demo.BLL.importer;
+
+/**
+ * Snapshot of a running or finished import
+ */
+public final class ImportProgress {
+    private final int filesFound;
+    private final int filesRead;
+    private final int songsImported;
+    private final int duplicatesSkipped;
+    private final int filesFailed;
+    private final long elapsedMillis;
+    private final boolean scanFinished;
+    private final boolean cancelled;
+
+    ImportProgress(int filesFound, int filesRead, int songsImported, int duplicatesSkipped, int filesFailed,
+                   long elapsedMillis, boolean scanFinished, boolean cancelled) {
+        this.filesFound = filesFound;
+        this.filesRead = filesRead;
+        this.songsImported = songsImported;
+        this.duplicatesSkipped = duplicatesSkipped;
+        this.filesFailed = filesFailed;
+        this.elapsedMillis = elapsedMillis;
+        this.scanFinished = scanFinished;
+        this.cancelled = cancelled;
+    }
+
+    // Audio files found so far, including duplicates
+    public int getFilesFound() { return filesFound; }
+    public int getFilesRead() { return filesRead; }
+    public int getSongsImported() { return songsImported; }
+    public int getDuplicatesSkipped() { return duplicatesSkipped; }
+    public int getFilesFailed() { return filesFailed; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isScanFinished() { return scanFinished; }
+    public boolean isCancelled() { return cancelled; }
+
+    // Files handled per second since the import started
+    public double getFilesPerSecond() {
+        return elapsedMillis == 0 ? 0 : (filesRead + duplicatesSkipped) * 1000.0 / elapsedMillis;
+    }
+
+    // 0..1 once the folder walk has finished, -1 (unknown) before that
+    public double getFraction() {
+        if (!scanFinished) {
+            return -1;
+        }
+        return filesFound == 0 ? 1 : (double) (filesRead + duplicatesSkipped + filesFailed) / filesFound;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d imported, %d duplicates, %d failed of %d files found (%.0f files/s)",
+                songsImported, duplicatesSkipped, filesFailed, filesFound, getFilesPerSecond());
+    }
+}
@@ -0,0 +1,439 @@
+package dk.easv.demo.BLL.importer;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.BE.SongFile;
+import dk.easv.demo.BLL.MusicManager;
+import dk.easv.demo.DAL.DataAccessFactory;
+import dk.easv.demo.DAL.ISongFileDataAccess;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Brings the library in line with the music folders after the initial import.
+ * The file manifest (song_files) records size, modification time and a
+ * content hash per song. A rescan walks the folders and compares size and
+ * modification time only; just the files that differ are opened. Of those,
+ * files with an unchanged content hash only get their manifest row updated,
+ * the others have their tags read again. New files whose hash matches a
+ * vanished file are treated as moved, so the song keeps its id and playlist
+ * entries. All writes go to the database in batches.
+ *
+ * Folders that are missing or cannot be read are left alone, so an unplugged
+ * drive does not empty the library.
+ */
+public class IncrementalScanner {
+
+    private static final int WRITE_BATCH_SIZE = 2000;
+
+    private final MusicManager musicManager;
+    private final ISongFileDataAccess songFileDAO;
+    private final AudioTagReader tagReader = new AudioTagReader();
+    private final int readerThreads;
+
+    private volatile boolean cancelled = false;
+
+    // Counters of the scan in progress
+    private int filesChecked;
+    private int unchanged;
+    private int added;
+    private int modified;
+    private int moved;
+    private int removed;
+    private int fingerprinted;
+    private int failed;
+
+    // Library songs by id, loaded when the first song has to be changed
+    private Map<Integer, Song> songsById;
+
+    public IncrementalScanner(MusicManager musicManager) {
+        this(musicManager, DataAccessFactory.createSongFileDataAccess(), Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public IncrementalScanner(MusicManager musicManager, ISongFileDataAccess songFileDAO, int readerThreads) {
+        this.musicManager = musicManager;
+        this.songFileDAO = songFileDAO;
+        this.readerThreads = readerThreads;
+    }
+
+    // Stop the running scan as soon as possible; the scanner does nothing after that
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Rescans library folders. Songs whose file is no longer below one of
+     * the folders are removed.
+     * Blocks until the scan is finished, so call it from a background thread.
+     * @param roots Library folders
+     * @return What changed
+     */
+    public RescanResult rescan(Collection<Path> roots) {
+        return scan(roots, false);
+    }
+
+    /**
+     * Rescans single files or folders, e.g. the ones reported by a
+     * LibraryWatcher. A path that no longer exists removes the song at that
+     * path, or all songs below it for a folder.
+     * @param paths Changed files or folders
+     * @return What changed
+     */
+    public RescanResult rescanPaths(Collection<Path> paths) {
+        return scan(paths, true);
+    }
+
+    private synchronized RescanResult scan(Collection<Path> paths, boolean missingMeansDeleted) {
+        long startedAt = System.currentTimeMillis();
+        filesChecked = unchanged = added = modified = moved = removed = fingerprinted = failed = 0;
+        songsById = null;
+
+        Map<String, SongFile> known = new HashMap<>();
+        for (SongFile songFile : loadSongFiles()) {
+            known.put(LibraryImporter.normalize(songFile.getFilePath()), songFile);
+        }
+
+        // Walk: compare metadata, collect the files that need a closer look
+        Set<String> seen = new HashSet<>();
+        List<String> scopes = new ArrayList<>();
+        List<String> unreadable = new ArrayList<>();
+        List<Candidate> candidates = new ArrayList<>();
+        for (Path path : paths) {
+            if (cancelled) {
+                break;
+            }
+            walk(path.toAbsolutePath().normalize(), missingMeansDeleted, known, seen, scopes, unreadable, candidates);
+        }
+
+        // Songs below a scanned folder whose file was not found
+        Map<Long, Deque<SongFile>> missingByHash = new HashMap<>();
+        List<SongFile> missing = new ArrayList<>();
+        if (!cancelled) {
+            for (Map.Entry<String, SongFile> entry : known.entrySet()) {
+                String key = entry.getKey();
+                if (!seen.contains(key) && isBelow(key, scopes) && !isBelow(key, unreadable)) {
+                    SongFile songFile = entry.getValue();
+                    missing.add(songFile);
+                    if (songFile.hasState()) {
+                        missingByHash.computeIfAbsent(songFile.getContentHash(), hash -> new ArrayDeque<>()).add(songFile);
+                    }
+                }
+            }
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(readerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "library-rescan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int from = 0; from < candidates.size() && !cancelled; from += WRITE_BATCH_SIZE) {
+                List<Candidate> block = candidates.subList(from, Math.min(from + WRITE_BATCH_SIZE, candidates.size()));
+                inspectAll(workers, block);
+                apply(block, missingByHash);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } finally {
+            workers.shutdownNow();
+        }
+
+        if (!cancelled) {
+            // Missing songs that were not matched to a new file are gone
+            Set<Integer> unmatchedSongIds = new HashSet<>();
+            for (Deque<SongFile> unmatched : missingByHash.values()) {
+                for (SongFile songFile : unmatched) {
+                    unmatchedSongIds.add(songFile.getSongId());
+                }
+            }
+            List<SongFile> gone = new ArrayList<>();
+            for (SongFile songFile : missing) {
+                if (!songFile.hasState() || unmatchedSongIds.contains(songFile.getSongId())) {
+                    gone.add(songFile);
+                }
+            }
+            removeSongs(gone);
+        }
+
+        songsById = null;
+        return new RescanResult(filesChecked, unchanged, added, modified, moved, removed, fingerprinted, failed,
+                System.currentTimeMillis() - startedAt, cancelled);
+    }
+
+    // Walk one folder, or look at one file, and record what needs a closer look
+    private void walk(Path path, boolean missingMeansDeleted, Map<String, SongFile> known, Set<String> seen,
+                      List<String> scopes, List<String> unreadable, List<Candidate> candidates) {
+        String pathKey = LibraryImporter.normalize(path.toString());
+        try {
+            if (Files.isDirectory(path)) {
+                Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        if (cancelled) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        check(file, attributes, known, seen, candidates);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // Whatever is below an unreadable entry is unknown, not deleted
+                        unreadable.add(LibraryImporter.normalize(file.toString()));
+                        if (LibraryImporter.isAudioFile(file)) {
+                            filesChecked++;
+                            failed++;
+                        }
+                        return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+                });
+                scopes.add(pathKey);
+            } else if (Files.isRegularFile(path)) {
+                check(path, Files.readAttributes(path, BasicFileAttributes.class), known, seen, candidates);
+                scopes.add(pathKey);
+            } else if (missingMeansDeleted && Files.notExists(path)) {
+                scopes.add(pathKey);
+            } else {
+                System.err.println("Rescan skipped missing folder: " + path);
+            }
+        } catch (IOException e) {
+            System.err.println("Rescan skipped " + path + ": " + e.getMessage());
+        }
+    }
+
+    // Skip the file if size and modification time match the manifest
+    private void check(Path file, BasicFileAttributes attributes, Map<String, SongFile> known, Set<String> seen,
+                       List<Candidate> candidates) {
+        if (!attributes.isRegularFile() || !LibraryImporter.isAudioFile(file)) {
+            return;
+        }
+        String key = LibraryImporter.normalize(file.toString());
+        if (!seen.add(key)) {
+            return;
+        }
+        filesChecked++;
+
+        SongFile songFile = known.get(key);
+        long size = attributes.size();
+        long modifiedMillis = attributes.lastModifiedTime().toMillis();
+        if (songFile != null && songFile.hasState() && songFile.matches(size, modifiedMillis)) {
+            unchanged++;
+        } else {
+            candidates.add(new Candidate(file, songFile, size, modifiedMillis));
+        }
+    }
+
+    private static boolean isBelow(String key, List<String> folderKeys) {
+        for (String folderKey : folderKeys) {
+            if (key.equals(folderKey)) {
+                return true;
+            }
+            if (key.startsWith(folderKey)
+                    && (folderKey.endsWith(File.separator) || key.startsWith(File.separator, folderKey.length()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Hash the candidates in parallel, reading tags only where the content changed
+    private void inspectAll(ExecutorService workers, List<Candidate> block) throws InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>(block.size());
+        for (Candidate candidate : block) {
+            tasks.add(() -> {
+                inspect(candidate);
+                return null;
+            });
+        }
+        for (Future<Void> future : workers.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // inspect() records its own failures
+            }
+        }
+    }
+
+    private void inspect(Candidate candidate) {
+        try {
+            candidate.contentHash = ContentHash.of(candidate.file);
+            SongFile songFile = candidate.songFile;
+            boolean sameContent = songFile != null
+                    && (!songFile.hasState() || songFile.getContentHash() == candidate.contentHash);
+            if (!sameContent) {
+                candidate.tags = tagReader.read(candidate.file);
+            }
+        } catch (IOException | RuntimeException e) {
+            candidate.failed = true;
+        }
+    }
+
+    // Turn one inspected block into batched song and manifest writes
+    private void apply(List<Candidate> block, Map<Long, Deque<SongFile>> missingByHash) {
+        List<SongFile> states = new ArrayList<>(block.size());
+        List<Song> updates = new ArrayList<>();
+        List<Song> creates = new ArrayList<>();
+        Map<String, Candidate> createdFrom = new HashMap<>();
+
+        for (Candidate candidate : block) {
+            if (candidate.failed) {
+                failed++;
+                continue;
+            }
+            fingerprinted++;
+
+            if (candidate.songFile != null) {
+                if (candidate.tags != null) {
+                    Song song = getSong(candidate.songFile.getSongId());
+                    if (song == null) {
+                        continue;
+                    }
+                    updates.add(withTags(song, candidate.tags));
+                    modified++;
+                }
+                states.add(candidate.toSongFile(candidate.songFile.getSongId()));
+                continue;
+            }
+
+            Deque<SongFile> sameContent = missingByHash.get(candidate.contentHash);
+            SongFile movedFrom = sameContent != null ? sameContent.poll() : null;
+            Song song = movedFrom != null ? getSong(movedFrom.getSongId()) : null;
+            if (song != null) {
+                updates.add(new Song(song.getId(), song.getTitle(), song.getArtist(), song.getCategory(),
+                        song.getDuration(), candidate.file.toAbsolutePath().toString()));
+                states.add(candidate.toSongFile(song.getId()));
+                moved++;
+            } else {
+                Song newSong = LibraryImporter.toSong(candidate.file, candidate.tags);
+                creates.add(newSong);
+                createdFrom.put(newSong.getFilePath(), candidate);
+            }
+        }
+
+        if (!creates.isEmpty()) {
+            for (Song song : musicManager.createSongs(creates)) {
+                Candidate candidate = createdFrom.get(song.getFilePath());
+                if (candidate != null) {
+                    states.add(candidate.toSongFile(song.getId()));
+                }
+                added++;
+            }
+        }
+        if (!updates.isEmpty()) {
+            musicManager.updateSongs(updates);
+        }
+        saveSongFiles(states);
+    }
+
+    // Re-read tags replace the stored values; values the file does not carry are kept
+    private static Song withTags(Song song, AudioTags tags) {
+        return new Song(song.getId(),
+                tags.getTitle() != null ? tags.getTitle() : song.getTitle(),
+                tags.getArtist() != null ? tags.getArtist() : song.getArtist(),
+                tags.getGenre() != null ? tags.getGenre() : song.getCategory(),
+                tags.getDurationSeconds() > 0 ? tags.getDurationSeconds() : song.getDuration(),
+                song.getFilePath());
+    }
+
+    private void removeSongs(List<SongFile> gone) {
+        if (gone.isEmpty()) {
+            return;
+        }
+        List<Integer> songIds = new ArrayList<>(gone.size());
+        List<Song> songs = new ArrayList<>(gone.size());
+        for (SongFile songFile : gone) {
+            Song song = getSong(songFile.getSongId());
+            songIds.add(songFile.getSongId());
+            songs.add(song != null ? song : new Song(songFile.getSongId(), "", "", "", 0, songFile.getFilePath()));
+        }
+
+        // Manifest rows first, in case the foreign key does not cascade
+        try {
+            songFileDAO.deleteSongFiles(songIds);
+        } catch (SQLException e) {
+            System.err.println("Failed to delete " + songIds.size() + " manifest rows: " + e.getMessage());
+            throw new RuntimeException("Database error while updating the file manifest", e);
+        }
+        for (int from = 0; from < songs.size(); from += WRITE_BATCH_SIZE) {
+            musicManager.deleteSongs(songs.subList(from, Math.min(from + WRITE_BATCH_SIZE, songs.size())));
+        }
+        removed = songs.size();
+    }
+
+    private Song getSong(int songId) {
+        if (songsById == null) {
+            songsById = new HashMap<>();
+            for (Song song : musicManager.getAllSongs()) {
+                songsById.put(song.getId(), song);
+            }
+        }
+        return songsById.get(songId);
+    }
+
+    private List<SongFile> loadSongFiles() {
+        try {
+            return songFileDAO.getAllSongFiles();
+        } catch (SQLException e) {
+            System.err.println("Failed to load the file manifest: " + e.getMessage());
+            throw new RuntimeException("Database error while loading the file manifest", e);
+        }
+    }
+
+    private void saveSongFiles(List<SongFile> states) {
+        try {
+            songFileDAO.saveSongFiles(states);
+        } catch (SQLException e) {
+            System.err.println("Failed to save " + states.size() + " manifest rows: " + e.getMessage());
+            throw new RuntimeException("Database error while updating the file manifest", e);
+        }
+    }
+
+    // A file whose size or modification time differs from the manifest
+    private static final class Candidate {
+        final Path file;
+        final SongFile songFile; // null for files not in the library
+        final long size;
+        final long modifiedMillis;
+
+        // Filled in by a worker
+        long contentHash;
+        AudioTags tags;          // null unless the content changed
+        boolean failed;
+
+        Candidate(Path file, SongFile songFile, long size, long modifiedMillis) {
+            this.file = file;
+            this.songFile = songFile;
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        SongFile toSongFile(int songId) {
+            return new SongFile(songId, file.toAbsolutePath().toString(), size, modifiedMillis, contentHash);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package dk.easv.demo.BLL.importer;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.BLL.MusicManager;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports audio files from folders into the library.
+ * One thread walks the folders and queues new files, a pool of reader
+ * threads extracts tags and durations, and the calling thread inserts the
+ * resulting songs in large batches. Files whose path is already in the
+ * library are skipped. The queues are bounded, so memory stays flat no
+ * matter how many files are found, and cancel() stops all stages; songs
+ * inserted before that stay in the library. Each instance runs one import.
+ */
+public class LibraryImporter {
+
+    public static final Set<String> EXTENSIONS = Set.of("mp3", "wav", "flac", "ogg", "oga", "opus", "m4a", "mp4");
+
+    private static final int INSERT_BATCH_SIZE = 2000;
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    private static final Path END_OF_FILES = Paths.get("");
+    private static final Song END_OF_SONGS = new Song(0, "", "", "", 0, "");
+
+    private final MusicManager musicManager;
+    private final AudioTagReader tagReader = new AudioTagReader();
+    private final int readerThreads;
+
+    private volatile boolean cancelled = false;
+
+    private final AtomicInteger filesFound = new AtomicInteger();
+    private final AtomicInteger filesRead = new AtomicInteger();
+    private final AtomicInteger duplicatesSkipped = new AtomicInteger();
+    private final AtomicInteger filesFailed = new AtomicInteger();
+    private volatile boolean scanFinished = false;
+    private int songsImported = 0;
+    private long startedAt;
+
+    public LibraryImporter(MusicManager musicManager) {
+        this(musicManager, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public LibraryImporter(MusicManager musicManager, int readerThreads) {
+        this.musicManager = musicManager;
+        this.readerThreads = readerThreads;
+    }
+
+    // Stop the running import as soon as possible
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Imports every supported audio file below the given folders.
+     * Blocks until the import is finished or cancelled, so call it from a background thread.
+     * @param roots Folders to scan
+     * @param progressListener Receives progress a few times per second and once at the end
+     * @param importedListener Receives each batch of songs after it was saved
+     * @return Final progress
+     */
+    public ImportProgress importFrom(Collection<Path> roots, Consumer<ImportProgress> progressListener,
+                                     Consumer<List<Song>> importedListener) {
+        startedAt = System.currentTimeMillis();
+        Set<String> knownPaths = ConcurrentHashMap.newKeySet();
+        for (String filePath : musicManager.getAllFilePaths()) {
+            knownPaths.add(normalize(filePath));
+        }
+
+        BlockingQueue<Path> files = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Song> songs = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService workers = Executors.newFixedThreadPool(readerThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "library-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            workers.submit(() -> walk(roots, knownPaths, files));
+            for (int i = 0; i < readerThreads; i++) {
+                workers.submit(() -> readTags(files, songs));
+            }
+            insertBatches(songs, progressListener, importedListener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } finally {
+            workers.shutdownNow();
+        }
+
+        ImportProgress result = snapshot();
+        progressListener.accept(result);
+        return result;
+    }
+
+    // Walker: queue every new audio file, then one end marker per reader
+    private void walk(Collection<Path> roots, Set<String> knownPaths, BlockingQueue<Path> files) {
+        try {
+            for (Path root : roots) {
+                if (cancelled) {
+                    break;
+                }
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                        if (cancelled) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attributes.isRegularFile() && isAudioFile(file)) {
+                            filesFound.incrementAndGet();
+                            if (knownPaths.add(normalize(file.toString()))) {
+                                put(files, file);
+                            } else {
+                                duplicatesSkipped.incrementAndGet();
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        if (isAudioFile(file)) {
+                            filesFound.incrementAndGet();
+                            filesFailed.incrementAndGet();
+                        }
+                        return cancelled ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } catch (ScanCancelledException e) {
+            return;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Import folder scan failed: " + e.getMessage());
+        }
+
+        scanFinished = true;
+        for (int i = 0; i < readerThreads; i++) {
+            try {
+                files.put(END_OF_FILES);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Reader: turn queued files into unsaved songs
+    private void readTags(BlockingQueue<Path> files, BlockingQueue<Song> songs) {
+        try {
+            while (true) {
+                Path file = files.take();
+                if (file == END_OF_FILES) {
+                    songs.put(END_OF_SONGS);
+                    return;
+                }
+                if (cancelled) {
+                    continue; // drain until the end marker
+                }
+
+                try {
+                    AudioTags tags = tagReader.read(file);
+                    songs.put(toSong(file, tags));
+                    filesRead.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    filesFailed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writer (calling thread): insert songs in batches and report progress
+    private void insertBatches(BlockingQueue<Song> songs, Consumer<ImportProgress> progressListener,
+                               Consumer<List<Song>> importedListener) throws InterruptedException {
+        List<Song> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        int finishedReaders = 0;
+        long lastReport = 0;
+
+        while (finishedReaders < readerThreads && !cancelled) {
+            Song song = songs.poll(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if (song == END_OF_SONGS) {
+                finishedReaders++;
+            } else if (song != null) {
+                batch.add(song);
+            }
+
+            if (batch.size() >= INSERT_BATCH_SIZE) {
+                flush(batch, importedListener);
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL_MILLIS) {
+                progressListener.accept(snapshot());
+                lastReport = now;
+            }
+        }
+
+        if (!cancelled) {
+            flush(batch, importedListener);
+        }
+    }
+
+    private void flush(List<Song> batch, Consumer<List<Song>> importedListener) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Song> created = musicManager.createSongs(new ArrayList<>(batch));
+        songsImported += created.size();
+        batch.clear();
+        importedListener.accept(created);
+    }
+
+    private ImportProgress snapshot() {
+        return new ImportProgress(filesFound.get(), filesRead.get(), songsImported, duplicatesSkipped.get(),
+                filesFailed.get(), System.currentTimeMillis() - startedAt, scanFinished, cancelled);
+    }
+
+    // Unsaved song from a file's tags, falling back to the file name for the title
+    static Song toSong(Path file, AudioTags tags) {
+        String title = tags.getTitle();
+        if (title == null) {
+            String fileName = file.getFileName().toString();
+            int dot = fileName.lastIndexOf('.');
+            title = dot > 0 ? fileName.substring(0, dot) : fileName;
+        }
+        String artist = tags.getArtist() != null ? tags.getArtist() : "Unknown Artist";
+        String category = tags.getGenre() != null ? tags.getGenre() : "Unknown";
+        return new Song(0, title, artist, category, tags.getDurationSeconds(), file.toAbsolutePath().toString());
+    }
+
+    static boolean isAudioFile(Path file) {
+        Path fileName = file.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Same file, same key: absolute, normalized and case-insensitive (the library mostly lives on Windows)
+    static String normalize(String filePath) {
+        try {
+            return Paths.get(filePath).toAbsolutePath().normalize().toString().toLowerCase(Locale.ROOT);
+        } catch (InvalidPathException e) {
+            return filePath.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Blocking put that lets walkFileTree unwind when the import is cancelled
+    private static void put(BlockingQueue<Path> files, Path file) throws ScanCancelledException {
+        try {
+            files.put(file);
+        } catch (InterruptedException e) {
+            throw new ScanCancelledException();
+        }
+    }
+
+    private static final class ScanCancelledException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ScanCancelledException() {
+            super("Import cancelled");
+        }
+    }
+}
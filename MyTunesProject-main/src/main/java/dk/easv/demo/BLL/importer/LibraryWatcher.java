@@ -0,0 +1,159 @@
+package dk.easv.demo.BLL.importer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Live mode for the incremental scanner. Watches the library folders and
+ * every folder below them, collects the paths that change, and once the
+ * folders have been quiet for a moment hands them to
+ * IncrementalScanner.rescanPaths on its own daemon thread. Copying an album
+ * therefore turns into one rescan shortly after the copy finishes.
+ * If the operating system drops events, the affected folder is rescanned.
+ */
+public class LibraryWatcher implements AutoCloseable {
+
+    // Quiet time before pending changes are applied
+    private static final long SETTLE_MILLIS = 1500;
+
+    // Longest wait while changes keep coming, e.g. during a long copy
+    private static final long MAX_DELAY_MILLIS = 10_000;
+
+    private final IncrementalScanner scanner;
+    private final Consumer<RescanResult> resultListener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>(); // only touched by start() and then the watcher thread
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a watcher; call start() to begin watching
+     * @param scanner Scanner that applies the changes
+     * @param resultListener Receives the result of every rescan, on the watcher thread
+     * @throws IOException if the file system cannot be watched
+     */
+    public LibraryWatcher(IncrementalScanner scanner, Consumer<RescanResult> resultListener) throws IOException {
+        this.scanner = scanner;
+        this.resultListener = resultListener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "library-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Registers the folders and everything below them, then starts watching
+     * @param roots Library folders
+     * @throws IOException if a folder cannot be registered
+     */
+    public void start(Collection<Path> roots) throws IOException {
+        for (Path root : roots) {
+            registerTree(root.toAbsolutePath().normalize());
+        }
+        thread.start();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close library watcher: " + e.getMessage());
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        Set<Path> pending = new LinkedHashSet<>();
+        long pendingSince = 0;
+        try {
+            while (!closed) {
+                WatchKey key = pending.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    if (pending.isEmpty()) {
+                        pendingSince = System.currentTimeMillis();
+                    }
+                    collect(key, pending);
+                }
+
+                // Apply what has piled up once things are quiet, or when it has waited too long
+                if (!pending.isEmpty()
+                        && (key == null || System.currentTimeMillis() - pendingSince >= MAX_DELAY_MILLIS)) {
+                    try {
+                        resultListener.accept(scanner.rescanPaths(pending));
+                    } catch (RuntimeException e) {
+                        System.err.println("Live rescan failed: " + e.getMessage());
+                    }
+                    pending.clear();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> pending) {
+        Path folder = watchedFolders.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (folder == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                pending.add(folder);
+                continue;
+            }
+
+            Path path = folder.resolve((Path) event.context());
+            pending.add(path);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    registerTree(path);
+                } catch (IOException e) {
+                    System.err.println("Cannot watch " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        if (!key.reset()) {
+            // Folder deleted or no longer accessible; its parent reports the deletion
+            watchedFolders.remove(key);
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path folder, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedFolders.put(key, folder);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package dk.easv.demo.BLL.importer;
+
+/**
+ * Outcome of an incremental library rescan
+ */
+public final class RescanResult {
+    private final int filesChecked;
+    private final int unchanged;
+    private final int added;
+    private final int modified;
+    private final int moved;
+    private final int removed;
+    private final int fingerprinted;
+    private final int failed;
+    private final long elapsedMillis;
+    private final boolean cancelled;
+
+    RescanResult(int filesChecked, int unchanged, int added, int modified, int moved, int removed,
+                 int fingerprinted, int failed, long elapsedMillis, boolean cancelled) {
+        this.filesChecked = filesChecked;
+        this.unchanged = unchanged;
+        this.added = added;
+        this.modified = modified;
+        this.moved = moved;
+        this.removed = removed;
+        this.fingerprinted = fingerprinted;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.cancelled = cancelled;
+    }
+
+    // Audio files found on disk
+    public int getFilesChecked() { return filesChecked; }
+
+    // Files skipped because size and modification time matched the manifest
+    public int getUnchanged() { return unchanged; }
+
+    public int getAdded() { return added; }
+
+    // Songs whose file content changed and whose tags were read again
+    public int getModified() { return modified; }
+
+    // Songs whose file was found under a new path
+    public int getMoved() { return moved; }
+
+    public int getRemoved() { return removed; }
+
+    // Files whose content hash was computed: touched, modified or not in the manifest yet
+    public int getFingerprinted() { return fingerprinted; }
+
+    public int getFailed() { return failed; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isCancelled() { return cancelled; }
+
+    // True if the library was changed
+    public boolean hasChanges() {
+        return added + modified + moved + removed > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d added, %d modified, %d moved, %d removed, %d unchanged, %d failed "
+                        + "(%d files checked, %d fingerprinted, %d ms)",
+                added, modified, moved, removed, unchanged, failed, filesChecked, fingerprinted, elapsedMillis);
+    }
+}
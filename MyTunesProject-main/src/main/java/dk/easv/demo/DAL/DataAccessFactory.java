@@ -0,0 +1,105 @@
+package dk.easv.demo.DAL;
+
+import dk.easv.demo.DAL.db.ChangeDAO_DB;
+import dk.easv.demo.DAL.db.DBConnector;
+import dk.easv.demo.DAL.db.DatabaseSettings;
+import dk.easv.demo.DAL.db.PlaylistDAO_DB;
+import dk.easv.demo.DAL.db.SongDAO_DB;
+import dk.easv.demo.DAL.db.SongFileDAO_DB;
+import dk.easv.demo.DAL.memory.MemoryPlaylistDataAccess;
+import dk.easv.demo.DAL.memory.MemorySongDataAccess;
+import dk.easv.demo.DAL.memory.MemorySongFileDataAccess;
+import dk.easv.demo.DAL.memory.MemoryStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates the data access objects for the backend chosen in the database
+ * settings: the database DAOs, or DAOs on a shared in-memory library when
+ * Backend=memory.
+ */
+public final class DataAccessFactory {
+    private static final String DEFAULT_MEMORY_PATH = System.getProperty("user.home") + "/.mytunes/memory";
+
+    private static MemoryStore memoryStore;
+
+    private DataAccessFactory() {
+    }
+
+    public static boolean isInMemory() {
+        return DatabaseSettings.backend().equals(DatabaseSettings.MEMORY_BACKEND);
+    }
+
+    public static ISongDataAccess createSongDataAccess() {
+        return isInMemory() ? new MemorySongDataAccess(memoryStore()) : new SongDAO_DB();
+    }
+
+    public static IPlaylistDataAccess createPlaylistDataAccess() {
+        return isInMemory() ? new MemoryPlaylistDataAccess(memoryStore()) : new PlaylistDAO_DB();
+    }
+
+    public static ISongFileDataAccess createSongFileDataAccess() {
+        return isInMemory() ? new MemorySongFileDataAccess(memoryStore()) : new SongFileDAO_DB();
+    }
+
+    // Change tracking of the database; null for the in-memory library, which has no other writers
+    public static IChangeDataAccess createChangeDataAccess() {
+        return isInMemory() ? null : new ChangeDAO_DB();
+    }
+
+    /**
+     * Creates the service that polls the database for changes made by other clients
+     * @param executor Executor the polls run on, normally the one for the caller's database work
+     * @return The service, or null for the in-memory library or when SyncIntervalSeconds turns it off
+     */
+    public static DeltaSyncService createDeltaSyncService(Executor executor) {
+        int intervalSeconds = DeltaSyncService.configuredIntervalSeconds();
+        if (isInMemory() || intervalSeconds <= 0) {
+            return null;
+        }
+        return new DeltaSyncService(new ChangeDAO_DB(), intervalSeconds, executor);
+    }
+
+    // Saves a snapshot of the in-memory library, or closes the connection pool
+    public static synchronized void shutdown() {
+        if (memoryStore != null) {
+            try {
+                memoryStore.close();
+            } catch (IOException e) {
+                System.err.println("Failed to save in-memory library: " + e.getMessage());
+            }
+            memoryStore = null;
+        } else if (!isInMemory()) {
+            DBConnector.shutdown();
+        }
+    }
+
+    // Opens the library folder named by MemoryPath on first use
+    private static synchronized MemoryStore memoryStore() {
+        if (memoryStore == null) {
+            Path directory = memoryPath();
+            try {
+                long start = System.nanoTime();
+                memoryStore = MemoryStore.open(directory);
+                System.out.println("Opened in-memory library at " + directory + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open in-memory library at " + directory, e);
+            }
+        }
+        return memoryStore;
+    }
+
+    private static Path memoryPath() {
+        String path = "";
+        try {
+            path = DatabaseSettings.get().getProperty("MemoryPath", "").trim();
+        } catch (IOException e) {
+            // backend() already read the settings, so this does not happen
+        }
+        return Paths.get(path.isEmpty() ? DEFAULT_MEMORY_PATH : path);
+    }
+}
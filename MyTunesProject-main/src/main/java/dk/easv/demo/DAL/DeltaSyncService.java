@@ -0,0 +1,248 @@
+package dk.easv.demo.DAL;
+
+import dk.easv.demo.BE.LibraryChanges;
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.db.DatabaseSettings;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a client in step with the changes other clients make to a shared
+ * database. Every SyncIntervalSeconds (5 by default, 0 turns it off) it
+ * reads the library version and the row counts. While nothing changed that
+ * is all it reads; otherwise it reads only the changed songs, playlists and
+ * playlist entries and hands them to the listener as one batch per poll.
+ *
+ * Polls run on an executor given by the caller, so they queue behind the
+ * caller's own database work instead of racing it. The song ids and
+ * playlist sizes the client is known to have are only touched there.
+ */
+public class DeltaSyncService {
+    private static final int DEFAULT_INTERVAL_SECONDS = 5;
+
+    // Receives the changes of one poll, on the poll executor
+    public interface Listener {
+        void onChanges(LibraryChanges changes);
+    }
+
+    private final IChangeDataAccess changeDAO;
+    private final int intervalSeconds;
+    private final Executor executor;
+
+    // Bumped by start() and stop(), so polls of an earlier run do nothing
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicBoolean pollQueued = new AtomicBoolean();
+    private ScheduledExecutorService timer;
+
+    // What the client has; only used on the executor
+    private long version;
+    private Set<Integer> songIds;
+    private Map<Integer, Integer> playlistSizes;
+    private int[] rowCounts;
+
+    public DeltaSyncService(IChangeDataAccess changeDAO, int intervalSeconds, Executor executor) {
+        this.changeDAO = changeDAO;
+        this.intervalSeconds = intervalSeconds;
+        this.executor = executor;
+    }
+
+    // Poll interval from the SyncIntervalSeconds setting; 0 or less turns syncing off
+    public static int configuredIntervalSeconds() {
+        return DatabaseSettings.intSetting("SyncIntervalSeconds", DEFAULT_INTERVAL_SECONDS);
+    }
+
+    /**
+     * Starts polling from the library the client has loaded, replacing an earlier run
+     * @param version Version the library was read at, read before the library
+     * @param songIds IDs of the songs the client has; copied on the executor, so must not change afterwards
+     * @param playlistSizes Playlist ID to the number of songs the client has in it
+     * @param listener Receives the changes of each poll that found any
+     */
+    public synchronized void start(long version, Collection<Integer> songIds, Map<Integer, Integer> playlistSizes,
+                                   Listener listener) {
+        stop();
+        int run = generation.get();
+        Map<Integer, Integer> sizes = new HashMap<>(playlistSizes);
+
+        // Copying the song ids of a large library is left to the executor
+        submit(() -> {
+            try {
+                if (!changeDAO.isChangeTrackingAvailable()) {
+                    System.out.println("Delta sync is off: the database has no change tracking (migration 05)");
+                    stop(run);
+                    return;
+                }
+            } catch (SQLException e) {
+                System.err.println("Delta sync is off: " + e.getMessage());
+                stop(run);
+                return;
+            }
+            this.version = version;
+            this.songIds = new HashSet<>(songIds);
+            this.playlistSizes = sizes;
+            rowCounts = null;
+        });
+
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delta-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            // A slow poll is not queued twice
+            if (pollQueued.compareAndSet(false, true)) {
+                submit(() -> poll(run, listener));
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        generation.incrementAndGet();
+        pollQueued.set(false);
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    // Stops the given run only, e.g. from a task of that run
+    private synchronized void stop(int run) {
+        if (generation.get() == run) {
+            stop();
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down with the application
+            stop();
+        }
+    }
+
+    private void poll(int run, Listener listener) {
+        pollQueued.set(false);
+        if (generation.get() != run) {
+            return;
+        }
+        try {
+            // Versions show inserts and updates, counts show deletes
+            long current = changeDAO.getCurrentVersion();
+            int[] counts = changeDAO.getRowCounts();
+            if (current == version && Arrays.equals(counts, rowCounts)) {
+                return;
+            }
+
+            LibraryChanges changes = readChanges(changeDAO, version, songIds, playlistSizes);
+            remember(changes);
+            rowCounts = counts;
+            if (!changes.isEmpty() && generation.get() == run) {
+                listener.onChanges(changes);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // Try again next time; the version only moves once changes were read
+            System.err.println("Delta sync failed: " + e.getMessage());
+        }
+    }
+
+    // Record the changes as applied, so the next poll starts from them
+    private void remember(LibraryChanges changes) {
+        version = changes.getVersion();
+        songIds.removeAll(changes.getDeletedSongIds());
+        for (Song song : changes.getChangedSongs()) {
+            songIds.add(song.getId());
+        }
+        playlistSizes.keySet().removeAll(changes.getDeletedPlaylistIds());
+        for (Map.Entry<Integer, List<Integer>> contents : changes.getPlaylistContents().entrySet()) {
+            playlistSizes.put(contents.getKey(), contents.getValue().size());
+        }
+    }
+
+    /**
+     * Reads what changed since a version of the library.
+     * Inserted and updated rows are found through their versions. Deleted
+     * rows leave nothing behind, so they are found by counting: if the
+     * database has fewer songs than the client plus the new ones, the song
+     * ids are read to see which are gone, and a playlist whose size differs
+     * is read again.
+     * @param changeDAO Change tracking of the database
+     * @param version Version of the client's library, read before the library was
+     * @param songIds IDs of the songs the client has
+     * @param playlistSizes Playlist ID to the number of songs the client has in it
+     * @return Changes that bring the client up to the returned version
+     * @throws SQLException if database error occurs
+     */
+    public static LibraryChanges readChanges(IChangeDataAccess changeDAO, long version, Set<Integer> songIds,
+                                             Map<Integer, Integer> playlistSizes) throws SQLException {
+        // Read first: anything changed while the rest is read is read again next time
+        long newVersion = changeDAO.getCurrentVersion();
+
+        List<Song> changedSongs = changeDAO.getSongsChangedSince(version);
+        Set<Integer> updatedSongIds = new HashSet<>();
+        for (Song song : changedSongs) {
+            if (songIds.contains(song.getId())) {
+                updatedSongIds.add(song.getId());
+            }
+        }
+        int newSongs = changedSongs.size() - updatedSongIds.size();
+        Set<Integer> deletedSongIds = new HashSet<>();
+        if (songIds.size() + newSongs != changeDAO.countSongs()) {
+            Set<Integer> existing = changeDAO.getAllSongIds();
+            for (Integer songId : songIds) {
+                if (!existing.contains(songId)) {
+                    deletedSongIds.add(songId);
+                }
+            }
+        }
+
+        Set<Integer> existingPlaylists = changeDAO.getAllPlaylistIds();
+        Set<Integer> deletedPlaylistIds = new HashSet<>(playlistSizes.keySet());
+        deletedPlaylistIds.removeAll(existingPlaylists);
+
+        // Added and moved songs have new versions; removed ones only show in the count
+        Set<Integer> reload = changeDAO.getPlaylistsWithEntriesChangedSince(version);
+        Map<Integer, Integer> counts = changeDAO.getPlaylistEntryCounts();
+        for (Integer playlistId : existingPlaylists) {
+            if (!counts.getOrDefault(playlistId, 0).equals(playlistSizes.getOrDefault(playlistId, 0))) {
+                reload.add(playlistId);
+            }
+        }
+        reload.retainAll(existingPlaylists);
+        Map<Integer, List<Integer>> contents = reload.isEmpty()
+                ? new HashMap<>()
+                : changeDAO.getPlaylistSongIds(reload);
+
+        // Totals change with the contents, with the name, and with the duration of a song in the playlist
+        Set<Integer> changedPlaylistIds = new HashSet<>(reload);
+        for (Playlist playlist : changeDAO.getPlaylistsChangedSince(version)) {
+            changedPlaylistIds.add(playlist.getId());
+        }
+        if (!updatedSongIds.isEmpty()) {
+            changedPlaylistIds.addAll(changeDAO.getPlaylistsContaining(updatedSongIds));
+        }
+        changedPlaylistIds.retainAll(existingPlaylists);
+        List<Playlist> changedPlaylists = changedPlaylistIds.isEmpty()
+                ? new ArrayList<>()
+                : changeDAO.getPlaylistsWithTotals(changedPlaylistIds);
+
+        return new LibraryChanges(newVersion, changedSongs, deletedSongIds,
+                changedPlaylists, deletedPlaylistIds, contents);
+    }
+}
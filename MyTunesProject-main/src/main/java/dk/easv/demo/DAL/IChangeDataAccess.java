@@ -0,0 +1,55 @@
+package dk.easv.demo.DAL;
+
+// Business entities
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+
+// Java standard
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interface for reading what changed in the library since a version.
+ * Inserts and updates give a row a version higher than any before it;
+ * deletes are found by comparing row counts and ids.
+ */
+public interface IChangeDataAccess {
+    // False until the database has the version columns (migration 05)
+    boolean isChangeTrackingAvailable() throws SQLException;
+
+    // Version every change made from now on will exceed
+    long getCurrentVersion() throws SQLException;
+
+    // Songs inserted or updated after the version
+    List<Song> getSongsChangedSince(long version) throws SQLException;
+
+    int countSongs() throws SQLException;
+
+    Set<Integer> getAllSongIds() throws SQLException;
+
+    // Playlists created or renamed after the version, without their songs
+    List<Playlist> getPlaylistsChangedSince(long version) throws SQLException;
+
+    Set<Integer> getAllPlaylistIds() throws SQLException;
+
+    // Playlists with a song added or moved after the version
+    Set<Integer> getPlaylistsWithEntriesChangedSince(long version) throws SQLException;
+
+    // Number of existing songs in each playlist that has any
+    Map<Integer, Integer> getPlaylistEntryCounts() throws SQLException;
+
+    // Song IDs of each playlist in playlist order
+    Map<Integer, List<Integer>> getPlaylistSongIds(Collection<Integer> playlistIds) throws SQLException;
+
+    // Playlists that contain any of the songs
+    Set<Integer> getPlaylistsContaining(Collection<Integer> songIds) throws SQLException;
+
+    // Playlists with their song count and total time, without their songs
+    List<Playlist> getPlaylistsWithTotals(Collection<Integer> playlistIds) throws SQLException;
+
+    // Number of songs, playlists and playlist entries in one query; deletes only show up here
+    int[] getRowCounts() throws SQLException;
+}
@@ -6,7 +6,9 @@ import dk.easv.demo.BE.Song;
 
 // Java standard
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 /**
  * Interface for playlist data access operations
  */
@@ -14,6 +16,12 @@ public interface IPlaylistDataAccess {
     // Get all playlists
     List<Playlist> getAllPlaylists() throws SQLException;
 
+    // Get all playlists with their ordered songs, reusing the given song instances
+    List<Playlist> getAllPlaylistsWithSongs(Collection<Song> allSongs) throws SQLException;
+
+    // Get all playlists with song count and total time computed by the database, without their songs
+    List<Playlist> getAllPlaylistsWithTotals() throws SQLException;
+
     // Create new playlist
     Playlist createPlaylist(String name) throws SQLException;
 
@@ -26,6 +34,12 @@ public interface IPlaylistDataAccess {
     // Add song to playlist at position
     void addSongToPlaylist(int playlistId, int songId, int position) throws SQLException;
 
+    // Add several songs in order starting at position, in one transaction
+    void addSongsToPlaylist(int playlistId, List<Integer> songIds, int atPosition) throws SQLException;
+
+    // Set the playlist contents to songIds in order; songs in keptSongIds keep their stored position
+    void replacePlaylistSongs(int playlistId, List<Integer> songIds, Set<Integer> keptSongIds) throws SQLException;
+
     // Remove song from playlist
     void removeSongFromPlaylist(int playlistId, int songId) throws SQLException;
 
@@ -37,4 +51,13 @@ public interface IPlaylistDataAccess {
 
     // Move song down in playlist
     void moveSongDown(int playlistId, int songId) throws SQLException;
+
+    // Move song a number of places up (negative) or down (positive)
+    void moveSongByOffset(int playlistId, int songId, int offset) throws SQLException;
+
+    // Move song to an index, shifting the songs in between
+    void moveSongToIndex(int playlistId, int songId, int targetIndex) throws SQLException;
+
+    // Put all songs of the playlist into the given order
+    void reorderPlaylist(int playlistId, List<Integer> orderedSongIds) throws SQLException;
 }
\ No newline at end of file
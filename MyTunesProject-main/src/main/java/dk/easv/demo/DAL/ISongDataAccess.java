@@ -6,6 +6,9 @@ import dk.easv.demo.BE.Song;
 // Java standard
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 /**
  * Interface for song data access operations
  */
@@ -13,15 +16,48 @@ public interface ISongDataAccess {
     // Get all songs
     List<Song> getAllSongs() throws SQLException;
 
+    // Get all songs in chunks, handing each chunk over as soon as its rows arrive
+    void getAllSongsInChunks(int chunkSize, Consumer<List<Song>> chunkConsumer) throws SQLException;
+
+    // Stream all songs sorted by title from a forward-only cursor; close the stream to release the connection
+    Stream<Song> streamAllSongs(int fetchSize) throws SQLException;
+
+    // Number of songs
+    int countSongs() throws SQLException;
+
+    // Page of songs in (title, id) order that come after the given song; afterTitle null starts at the beginning
+    List<Song> getSongsPage(String afterTitle, int afterId, int pageSize) throws SQLException;
+
+    // Page of songs in (title, id) order starting at a row offset, for jumping to a page whose start is unknown
+    List<Song> getSongsPageAt(int offset, int pageSize) throws SQLException;
+
+    // Songs of one category in title order
+    List<Song> getSongsByCategory(String category) throws SQLException;
+
+    // Distinct non-empty categories, sorted
+    List<String> getAllCategories() throws SQLException;
+
     // Create new song
     Song createSong(String title, String artist, String category, int duration, String filePath) throws SQLException;
 
+    // Create many songs in one transaction with batched inserts; songs need distinct file paths
+    List<Song> createSongs(List<Song> songs) throws SQLException;
+
+    // File paths of all songs, for duplicate checks during import
+    Set<String> getAllFilePaths() throws SQLException;
+
     // Update existing song
     void updateSong(Song song) throws SQLException;
 
+    // Update many songs in one transaction with batched statements
+    void updateSongs(List<Song> songs) throws SQLException;
+
     // Delete song
     void deleteSong(Song song) throws SQLException;
 
+    // Delete many songs in one transaction with batched statements
+    void deleteSongs(List<Song> songs) throws SQLException;
+
     // Find song by ID
     Song getSongById(int id) throws SQLException;
 }
\ No newline at end of file
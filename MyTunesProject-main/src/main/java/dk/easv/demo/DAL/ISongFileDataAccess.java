@@ -0,0 +1,23 @@
+package dk.easv.demo.DAL;
+
+// Business entities
+import dk.easv.demo.BE.SongFile;
+
+// Java standard
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface for the file manifest used by incremental library scans
+ */
+public interface ISongFileDataAccess {
+    // Every song with a file path, with its recorded file state if there is one
+    List<SongFile> getAllSongFiles() throws SQLException;
+
+    // Insert or replace the file state of many songs in one transaction
+    void saveSongFiles(List<SongFile> songFiles) throws SQLException;
+
+    // Forget the file state of songs
+    void deleteSongFiles(Collection<Integer> songIds) throws SQLException;
+}
@@ -0,0 +1,340 @@
+package dk.easv.demo.DAL.db;
+
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.IChangeDataAccess;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads library changes from the row_version columns of migration 05.
+ * Every query is a narrow scan of a version index or of the id columns, so
+ * checking an unchanged library costs a handful of round trips.
+ */
+public class ChangeDAO_DB implements IChangeDataAccess {
+
+    // IDs per IN list, well below SQL Server's 2100 parameters
+    private static final int ID_CHUNK_SIZE = 500;
+
+    private DBConnector dbConnector;
+
+    /**
+     * Constructor - initializes database connection
+     */
+    public ChangeDAO_DB() {
+        dbConnector = new DBConnector();
+    }
+
+    /**
+     * Checks that songs, playlists and playlist_songs have version columns
+     * @return True if changes can be read
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public boolean isChangeTrackingAvailable() throws SQLException {
+        try (Connection conn = dbConnector.getConnection()) {
+            return ChangeTracking.get(conn).isAvailable();
+        }
+    }
+
+    /**
+     * Reads the version every later change will exceed. Read it before the
+     * data it describes, so a change made in between is read again next time
+     * rather than missed.
+     * @return Current version
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public long getCurrentVersion() throws SQLException {
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(ChangeTracking.get(conn).currentVersionQuery())) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Retrieves the songs inserted or updated after a version
+     * @param version Version of the data the caller has
+     * @return Changed songs
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Song> getSongsChangedSince(long version) throws SQLException {
+        List<Song> songs = new ArrayList<>();
+
+        try (Connection conn = dbConnector.getConnection()) {
+            String sql = "SELECT * FROM songs WHERE " + ChangeTracking.get(conn).changedAfter(ChangeTracking.ROW_VERSION);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, version);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    SongSchema schema = SongSchema.get(conn);
+                    StringPool artists = new StringPool();
+                    while (rs.next()) {
+                        songs.add(SongDAO_DB.mapResultSetToSong(rs, schema, artists));
+                    }
+                }
+            }
+        }
+        return songs;
+    }
+
+    @Override
+    public int countSongs() throws SQLException {
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM songs")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public Set<Integer> getAllSongIds() throws SQLException {
+        return readIds("SELECT id FROM songs");
+    }
+
+    /**
+     * Retrieves the playlists created or renamed after a version
+     * @param version Version of the data the caller has
+     * @return Changed playlists without songs
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Playlist> getPlaylistsChangedSince(long version) throws SQLException {
+        List<Playlist> playlists = new ArrayList<>();
+
+        try (Connection conn = dbConnector.getConnection()) {
+            String sql = "SELECT id, name FROM playlists WHERE " + ChangeTracking.get(conn).changedAfter(ChangeTracking.ROW_VERSION);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, version);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        playlists.add(new Playlist(rs.getInt("id"), rs.getString("name")));
+                    }
+                }
+            }
+        }
+        return playlists;
+    }
+
+    @Override
+    public Set<Integer> getAllPlaylistIds() throws SQLException {
+        return readIds("SELECT id FROM playlists");
+    }
+
+    /**
+     * Finds the playlists that had a song added or moved after a version
+     * @param version Version of the data the caller has
+     * @return IDs of the changed playlists
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public Set<Integer> getPlaylistsWithEntriesChangedSince(long version) throws SQLException {
+        Set<Integer> playlistIds = new HashSet<>();
+
+        try (Connection conn = dbConnector.getConnection()) {
+            String sql = "SELECT DISTINCT playlist_id FROM playlist_songs WHERE "
+                    + ChangeTracking.get(conn).changedAfter(ChangeTracking.ROW_VERSION);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, version);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        playlistIds.add(rs.getInt(1));
+                    }
+                }
+            }
+        }
+        return playlistIds;
+    }
+
+    /**
+     * Counts the songs of every playlist, skipping entries whose song no
+     * longer exists like getSongsInPlaylist does
+     * @return Playlist ID to song count, for playlists with songs
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public Map<Integer, Integer> getPlaylistEntryCounts() throws SQLException {
+        Map<Integer, Integer> counts = new HashMap<>();
+        String sql = "SELECT ps.playlist_id, COUNT(*) FROM playlist_songs ps "
+                + "JOIN songs s ON s.id = ps.song_id GROUP BY ps.playlist_id";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                counts.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Retrieves the song IDs of playlists, a few hundred playlists per query
+     * @param playlistIds Playlists to read
+     * @return Playlist ID to song IDs in playlist order; every requested playlist is present
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public Map<Integer, List<Integer>> getPlaylistSongIds(Collection<Integer> playlistIds) throws SQLException {
+        Map<Integer, List<Integer>> songIds = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(playlistIds);
+        for (Integer playlistId : ids) {
+            songIds.put(playlistId, new ArrayList<>());
+        }
+
+        try (Connection conn = dbConnector.getConnection()) {
+            for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + ID_CHUNK_SIZE));
+                String sql = "SELECT ps.playlist_id, ps.song_id FROM playlist_songs ps "
+                        + "JOIN songs s ON s.id = ps.song_id WHERE ps.playlist_id IN (" + placeholders(chunk.size())
+                        + ") ORDER BY ps.playlist_id, ps.position, ps.song_id";
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    bindIds(stmt, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            songIds.get(rs.getInt(1)).add(rs.getInt(2));
+                        }
+                    }
+                }
+            }
+        }
+        return songIds;
+    }
+
+    /**
+     * Finds the playlists that contain any of the given songs, a few hundred songs per query
+     * @param songIds Songs to look for
+     * @return IDs of the playlists containing them
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public Set<Integer> getPlaylistsContaining(Collection<Integer> songIds) throws SQLException {
+        Set<Integer> playlistIds = new HashSet<>();
+        List<Integer> ids = new ArrayList<>(songIds);
+
+        try (Connection conn = dbConnector.getConnection()) {
+            for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + ID_CHUNK_SIZE));
+                String sql = "SELECT DISTINCT playlist_id FROM playlist_songs WHERE song_id IN ("
+                        + placeholders(chunk.size()) + ")";
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    bindIds(stmt, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            playlistIds.add(rs.getInt(1));
+                        }
+                    }
+                }
+            }
+        }
+        return playlistIds;
+    }
+
+    /**
+     * Retrieves playlists with their song count and total time. Durations are
+     * summed here rather than in SQL so the legacy duration column works too.
+     * @param playlistIds Playlists to read; ones that no longer exist are left out
+     * @return Playlists without songs
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Playlist> getPlaylistsWithTotals(Collection<Integer> playlistIds) throws SQLException {
+        Map<Integer, Playlist> playlists = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(playlistIds);
+
+        try (Connection conn = dbConnector.getConnection()) {
+            SongSchema schema = SongSchema.get(conn);
+            for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + ID_CHUNK_SIZE));
+                String playlistSql = "SELECT id, name FROM playlists WHERE id IN (" + placeholders(chunk.size()) + ")";
+                String entriesSql = "SELECT ps.playlist_id, s." + schema.durationColumns().replace(", ", ", s.")
+                        + " FROM playlist_songs ps JOIN songs s ON s.id = ps.song_id WHERE ps.playlist_id IN ("
+                        + placeholders(chunk.size()) + ")";
+
+                try (PreparedStatement stmt = conn.prepareStatement(playlistSql)) {
+                    bindIds(stmt, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            playlists.put(rs.getInt("id"), new Playlist(rs.getInt("id"), rs.getString("name")));
+                        }
+                    }
+                }
+
+                // [song count, total seconds]
+                Map<Integer, int[]> totals = new HashMap<>();
+                try (PreparedStatement stmt = conn.prepareStatement(entriesSql)) {
+                    bindIds(stmt, chunk);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            int[] total = totals.computeIfAbsent(rs.getInt(1), id -> new int[2]);
+                            total[0]++;
+                            total[1] += schema.readDuration(rs);
+                        }
+                    }
+                }
+                for (Map.Entry<Integer, int[]> total : totals.entrySet()) {
+                    Playlist playlist = playlists.get(total.getKey());
+                    if (playlist != null) {
+                        playlist.setSongCount(total.getValue()[0]);
+                        playlist.setTotalTime(total.getValue()[1]);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(playlists.values());
+    }
+
+    /**
+     * Counts songs, playlists and playlist entries in one round trip, to
+     * notice deletes, which leave no version behind
+     * @return Song, playlist and playlist entry counts
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public int[] getRowCounts() throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM songs), (SELECT COUNT(*) FROM playlists), "
+                + "(SELECT COUNT(*) FROM playlist_songs)";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)} : new int[3];
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
+
+    private static void bindIds(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            stmt.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    private Set<Integer> readIds(String sql) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,76 @@
+package dk.easv.demo.DAL.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Describes the row_version columns added by migration 05. On SQL Server
+ * they are rowversion columns, compared as BINARY(8); the embedded database
+ * fills BIGINT columns from the row_versions sequence instead. Versions
+ * are handed over as longs either way.
+ */
+final class ChangeTracking {
+    static final String ROW_VERSION = "row_version";
+
+    private static volatile ChangeTracking current;
+
+    private final boolean available;
+    private final boolean sqlServer;
+
+    private ChangeTracking(boolean available, boolean sqlServer) {
+        this.available = available;
+        this.sqlServer = sqlServer;
+    }
+
+    /**
+     * Looks up the tracked tables once and caches the result
+     * @param conn Open connection used for the metadata lookup
+     * @return Change tracking description
+     * @throws SQLException if database error occurs
+     */
+    static ChangeTracking get(Connection conn) throws SQLException {
+        ChangeTracking tracking = current;
+        if (tracking == null) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            tracking = new ChangeTracking(
+                    hasVersionColumn(metaData, "songs")
+                            && hasVersionColumn(metaData, "playlists")
+                            && hasVersionColumn(metaData, "playlist_songs"),
+                    metaData.getDatabaseProductName().contains("SQL Server"));
+            current = tracking;
+        }
+        return tracking;
+    }
+
+    private static boolean hasVersionColumn(DatabaseMetaData metaData, String table) throws SQLException {
+        // Identifier case differs between databases, so try both
+        for (String tableName : new String[]{table, table.toUpperCase()}) {
+            for (String name : new String[]{ROW_VERSION, ROW_VERSION.toUpperCase()}) {
+                try (ResultSet rs = metaData.getColumns(null, null, tableName, name)) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isAvailable() { return available; }
+
+    // Query for the highest version every later change will exceed. On SQL Server that is just
+    // below the oldest version an open transaction holds, so rows it commits later are not skipped.
+    String currentVersionQuery() {
+        return sqlServer
+                ? "SELECT CAST(MIN_ACTIVE_ROWVERSION() AS BIGINT) - 1"
+                : "SELECT BASE_VALUE - 1 FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'ROW_VERSIONS'";
+    }
+
+    // Condition on a version column with one placeholder for the version, e.g. "s.row_version > ?"
+    String changedAfter(String column) {
+        // Casting the parameter instead of the column keeps the index usable
+        return sqlServer ? column + " > CAST(? AS BINARY(8))" : column + " > ?";
+    }
+}
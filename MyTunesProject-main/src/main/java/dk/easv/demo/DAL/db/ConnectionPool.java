@@ -0,0 +1,605 @@
+package dk.easv.demo.DAL.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of reusable database connections.
+ * Connections are opened up front (min size), validated when borrowed,
+ * evicted when idle for too long and reported when held past the leak threshold.
+ * Closing a borrowed connection returns it to the pool instead of closing the socket.
+ * Each pooled connection also keeps its most recently used prepared statements,
+ * keyed by SQL text: closing a statement returns it to that cache, and preparing
+ * the same SQL again on the connection reuses it together with the prepared
+ * handle on the server, skipping another prepare round trip.
+ */
+public class ConnectionPool {
+
+    // Connections used this recently are trusted without a validation round trip
+    private static final long VALIDATION_GRACE_MILLIS = 5_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+    private final Set<PooledConnection> activeConnections = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong statementHitCount = new AtomicLong();
+    private final AtomicLong statementMissCount = new AtomicLong();
+    private final AtomicLong statementEvictedCount = new AtomicLong();
+
+    /**
+     * Creates the pool; prewarm() opens the minimum number of connections
+     * @param url JDBC URL including credentials
+     * @param minSize Connections kept open even when idle
+     * @param maxSize Upper bound on open connections
+     * @param idleTimeoutMillis Idle time after which surplus connections are closed
+     * @param borrowTimeoutMillis Maximum time to wait for a free connection
+     * @param leakThresholdMillis Borrow time after which a connection is reported as leaked
+     * @param statementCacheSize Prepared statements kept per connection, 0 to disable the cache
+     */
+    public ConnectionPool(String url, int minSize, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis, long leakThresholdMillis, int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+        }
+
+        this.url = url;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long period = Math.max(1_000, Math.min(idleTimeoutMillis, leakThresholdMillis) / 2);
+        housekeeper.scheduleAtFixedRate(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens connections until the pool holds its minimum size
+     * @throws SQLException if a connection cannot be opened
+     */
+    public void prewarm() throws SQLException {
+        while (getTotalCount() < minSize) {
+            PooledConnection pooled = createConnection();
+            synchronized (idleConnections) {
+                idleConnections.addLast(pooled);
+            }
+        }
+    }
+
+    /**
+     * Borrows a connection; close() on the returned connection gives it back
+     * @return A validated connection
+     * @throws SQLException if no connection became available in time
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (" + getActiveCount() + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = createConnection();
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowStack = new Throwable("Connection borrowed by thread " + Thread.currentThread().getName());
+            pooled.leakReported = false;
+            activeConnections.add(pooled);
+            borrowCount.incrementAndGet();
+
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops housekeeping.
+     * Borrowed connections are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        List<PooledConnection> toClose;
+        synchronized (idleConnections) {
+            toClose = new ArrayList<>(idleConnections);
+            idleConnections.clear();
+        }
+        for (PooledConnection pooled : toClose) {
+            closeQuietly(pooled);
+        }
+    }
+
+    public boolean isClosed() { return closed; }
+
+    // ===== Metrics =====
+
+    public int getActiveCount() { return activeConnections.size(); }
+
+    public int getIdleCount() {
+        synchronized (idleConnections) {
+            return idleConnections.size();
+        }
+    }
+
+    public int getTotalCount() { return getActiveCount() + getIdleCount(); }
+    public int getMinSize() { return minSize; }
+    public int getMaxSize() { return maxSize; }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+    public long getValidationFailureCount() { return validationFailureCount.get(); }
+    public long getLeakCount() { return leakCount.get(); }
+    public int getWaitingThreadCount() { return permits.getQueueLength(); }
+    public int getStatementCacheSize() { return statementCacheSize; }
+    public long getStatementHitCount() { return statementHitCount.get(); }
+    public long getStatementMissCount() { return statementMissCount.get(); }
+    public long getStatementEvictedCount() { return statementEvictedCount.get(); }
+
+    public double getStatementHitRatio() {
+        long lookups = statementHitCount.get() + statementMissCount.get();
+        return lookups == 0 ? 0 : (double) statementHitCount.get() / lookups;
+    }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary of the pool state, for logs and diagnostics
+     * @return Readable metrics summary
+     */
+    public String getStatsSummary() {
+        return String.format("active=%d idle=%d waiting=%d borrows=%d created=%d evicted=%d "
+                        + "invalid=%d leaks=%d avgWait=%.2fms maxWait=%.2fms "
+                        + "stmtHits=%d stmtMisses=%d stmtEvicted=%d stmtHitRatio=%.1f%%",
+                getActiveCount(), getIdleCount(), getWaitingThreadCount(), getBorrowCount(),
+                getCreatedCount(), getEvictedCount(), getValidationFailureCount(), getLeakCount(),
+                getAverageWaitMillis(), getMaxWaitMillis(),
+                getStatementHitCount(), getStatementMissCount(), getStatementEvictedCount(),
+                getStatementHitRatio() * 100);
+    }
+
+    // ===== Internals =====
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Most recently returned connection first, so cold ones age out
+    private PooledConnection takeValidIdleConnection() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idleConnections) {
+                pooled = idleConnections.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            validationFailureCount.incrementAndGet();
+            closeQuietly(pooled);
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastReturnedAt < VALIDATION_GRACE_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url);
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    // Called when a borrowed handle is closed
+    private void release(PooledConnection pooled) {
+        activeConnections.remove(pooled);
+        pooled.borrowStack = null;
+
+        boolean reusable = !closed && !pooled.broken && resetState(pooled);
+        if (reusable) {
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            synchronized (idleConnections) {
+                idleConnections.addFirst(pooled);
+            }
+        } else {
+            closeQuietly(pooled);
+        }
+        permits.release();
+    }
+
+    // Undo anything the borrower left behind so the next borrower starts clean
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            Connection physical = pooled.physical;
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdleConnections();
+            reportLeaks();
+            if (!closed) {
+                prewarm();
+            }
+        } catch (Exception e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> toClose = new ArrayList<>();
+
+        synchronized (idleConnections) {
+            // Oldest connections sit at the tail
+            while (!idleConnections.isEmpty()
+                    && getActiveCount() + idleConnections.size() > minSize
+                    && now - idleConnections.peekLast().lastReturnedAt > idleTimeoutMillis) {
+                toClose.add(idleConnections.pollLast());
+            }
+        }
+
+        for (PooledConnection pooled : toClose) {
+            evictedCount.incrementAndGet();
+            closeQuietly(pooled);
+        }
+    }
+
+    private void reportLeaks() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : activeConnections) {
+            Throwable borrowStack = pooled.borrowStack;
+            if (!pooled.leakReported && borrowStack != null && now - pooled.borrowedAt > leakThresholdMillis) {
+                pooled.leakReported = true;
+                leakCount.incrementAndGet();
+                System.err.println("Possible connection leak: connection held for "
+                        + (now - pooled.borrowedAt) + " ms. Borrowed at:");
+                borrowStack.printStackTrace();
+            }
+        }
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Connection is being discarded anyway
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Statement is being discarded anyway
+        }
+    }
+
+    // Calls through to the driver, marking the connection broken when the driver reports it is gone
+    private static Object invokePhysical(PooledConnection pooled, Object target, Method method, Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            // SQLState class 08 means the connection itself is gone
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    pooled.broken = true;
+                }
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private final class PooledConnection {
+        private final Connection physical;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile Throwable borrowStack;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+
+        // Idle prepared statements by cache key, least recently used first; guarded by itself
+        private final LinkedHashMap<String, PreparedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= statementCacheSize) {
+                            return false;
+                        }
+                        statementEvictedCount.incrementAndGet();
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        // An idle cached statement for the key, or null; a statement is never handed out twice at once
+        private PreparedStatement takeStatement(String key) throws SQLException {
+            PreparedStatement statement;
+            synchronized (statements) {
+                statement = statements.remove(key);
+            }
+            if (statement != null && statement.isClosed()) {
+                statement = null;
+            }
+            (statement != null ? statementHitCount : statementMissCount).incrementAndGet();
+            return statement;
+        }
+
+        // Puts a statement back after its borrower closed it; closes it when it cannot be reused
+        private void returnStatement(String key, PreparedStatement statement, boolean reusable) {
+            if (reusable && !broken) {
+                try {
+                    statement.clearParameters();
+                    statement.clearBatch();
+                    statement.clearWarnings();
+                    synchronized (statements) {
+                        if (!statements.containsKey(key)) {
+                            statements.put(key, statement);
+                            return;
+                        }
+                    }
+                } catch (SQLException e) {
+                    // Fall through and discard it
+                }
+            }
+            closeQuietly(statement);
+        }
+
+        // Each borrow gets its own handle, so a stale reference cannot return the connection twice
+        private Connection newHandle() {
+            Handle handle = new Handle(this);
+            handle.proxy = (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    handle);
+            return handle.proxy;
+        }
+    }
+
+    /**
+     * Connection handle given to callers; close() returns the connection to the pool
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final List<CachedStatement> openStatements = new ArrayList<>();
+        private Connection proxy;
+        private boolean handleClosed = false;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!handleClosed) {
+                        // Like a real close, this closes the statements still open, returning them to the cache
+                        for (CachedStatement statement : new ArrayList<>(openStatements)) {
+                            statement.close();
+                        }
+                        handleClosed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return handleClosed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+
+            if (handleClosed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            String key = statementKey(method, args);
+            if (key != null) {
+                PreparedStatement statement = pooled.takeStatement(key);
+                if (statement == null) {
+                    statement = (PreparedStatement) invokePhysical(pooled, pooled.physical, method, args);
+                }
+                CachedStatement cached = new CachedStatement(this, key, statement);
+                openStatements.add(cached);
+                return cached.newProxy();
+            }
+
+            return invokePhysical(pooled, pooled.physical, method, args);
+        }
+
+        // Cache key for prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys), null for anything else
+        private String statementKey(Method method, Object[] args) {
+            if (statementCacheSize == 0 || !method.getName().equals("prepareStatement")) {
+                return null;
+            }
+            if (args.length == 1) {
+                return (String) args[0];
+            }
+            if (args.length == 2 && args[1] instanceof Integer) {
+                return args[1] + ":" + args[0];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Prepared statement handed to callers while the statement cache is on;
+     * close() returns the driver statement to the connection's cache
+     */
+    private final class CachedStatement implements InvocationHandler {
+        private final Handle handle;
+        private final String key;
+        private final PreparedStatement physical;
+        private boolean statementClosed = false;
+
+        // Settings a later borrower would not expect; a statement with changed settings is not reused
+        private boolean settingsChanged = false;
+
+        private CachedStatement(Handle handle, String key, PreparedStatement physical) {
+            this.handle = handle;
+            this.key = key;
+            this.physical = physical;
+        }
+
+        private PreparedStatement newProxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+        }
+
+        private void close() {
+            if (!statementClosed) {
+                statementClosed = true;
+                handle.openStatements.remove(this);
+                handle.pooled.returnStatement(key, physical, !settingsChanged);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    close();
+                    return null;
+                case "isClosed":
+                    return statementClosed || physical.isClosed();
+                case "getConnection":
+                    return handle.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + physical + "]";
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setMaxFieldSize":
+                case "setQueryTimeout":
+                case "setEscapeProcessing":
+                case "setCursorName":
+                case "setPoolable":
+                case "closeOnCompletion":
+                    settingsChanged = true;
+                    break;
+                default:
+                    break;
+            }
+
+            if (statementClosed) {
+                throw new SQLException("Statement is closed");
+            }
+            return invokePhysical(handle.pooled, physical, method, args);
+        }
+    }
+}
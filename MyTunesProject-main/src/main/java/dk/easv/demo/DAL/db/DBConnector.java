@@ -1,11 +1,7 @@
     package dk.easv.demo.DAL.db;
 
-    import java.io.File;
     import java.io.IOException;
-    import java.io.InputStream;
-    import java.nio.file.Files;
     import java.sql.Connection;
-    import java.sql.DriverManager;
     import java.sql.SQLException;
     import java.util.Properties;
 
@@ -13,9 +9,13 @@
      * Manages database connections and configuration
      */
     public class DBConnector {
+        private static final String DEFAULT_EMBEDDED_PATH = System.getProperty("user.home") + "/.mytunes/library";
+
         private static String url;
+        private static boolean embedded;
         private static String user;
         private static String password;
+        private static ConnectionPool pool;
 
         // Load config when class first used
         static {
@@ -29,55 +29,55 @@
 
         // Read database config from properties file
         private static void initializeConnection() throws IOException, ClassNotFoundException {
-            System.out.println("=== DBConnector Debug ===");
-            System.out.println("Current directory: " + new File(".").getAbsolutePath());
-
-            Properties databaseProperties = new Properties();
-
-            // Try multiple locations
-            String[] possiblePaths = {
-                    "src/main/resources/database.properties",
-                    "database.properties",
-                    "target/classes/database.properties",
-                    System.getProperty("user.dir") + "/src/main/resources/database.properties",
-                    System.getProperty("user.dir") + "/database.properties"
-            };
-
-            File propFile = null;
-
-            for (String path : possiblePaths) {
-                File testFile = new File(path);
-                System.out.println("Checking: " + path);
-                System.out.println("  Full path: " + testFile.getAbsolutePath());
-                System.out.println("  Exists: " + testFile.exists());
-
-                if (testFile.exists()) {
-                    propFile = testFile;
-                    System.out.println("✓ Found at: " + propFile.getAbsolutePath());
-                    break;
-                }
+            Properties databaseProperties = DatabaseSettings.get();
+
+            String backend = DatabaseSettings.backend();
+            if (backend.equals(DatabaseSettings.MEMORY_BACKEND)) {
+                // The in-memory store needs no database; DataAccessFactory opens it instead
+                System.out.println("Using in-memory backend, no database connection");
+                return;
             }
 
-            if (propFile == null) {
-                // Try classpath
-                System.out.println("Trying classpath...");
-                InputStream input = DBConnector.class.getClassLoader().getResourceAsStream("database.properties");
-                if (input != null) {
-                    System.out.println("✓ Found in classpath!");
-                    databaseProperties.load(input);
-                    input.close();
-                } else {
-                    System.err.println("✗ database.properties not found anywhere!");
-                    throw new IOException("database.properties not found. Tried:\n" +
-                            "- src/main/resources/database.properties\n" +
-                            "- database.properties\n" +
-                            "- target/classes/database.properties\n" +
-                            "- classpath:/database.properties");
+            String customUrl = databaseProperties.getProperty("Url");
+            if (backend.equals(DatabaseSettings.EMBEDDED_BACKEND)) {
+                buildEmbeddedUrl(databaseProperties);
+            } else if (customUrl != null && !customUrl.trim().isEmpty()) {
+                // Complete JDBC URL, e.g. an embedded database used for benchmarks
+                url = customUrl.trim();
+                System.out.println("Using JDBC URL from configuration");
+            } else {
+                buildSqlServerUrl(databaseProperties);
+            }
+
+            // Connections are reused from a pool instead of logging in on every call
+            pool = new ConnectionPool(url,
+                    DatabaseSettings.intSetting("PoolMinSize", 2),
+                    DatabaseSettings.intSetting("PoolMaxSize", 10),
+                    DatabaseSettings.intSetting("PoolIdleTimeoutSeconds", 300) * 1000L,
+                    DatabaseSettings.intSetting("PoolBorrowTimeoutSeconds", 10) * 1000L,
+                    DatabaseSettings.intSetting("PoolLeakThresholdSeconds", 60) * 1000L,
+                    DatabaseSettings.intSetting("PoolStatementCacheSize", 50));
+
+            System.out.println("Connection pool: min=" + pool.getMinSize() + ", max=" + pool.getMaxSize());
+
+            // Test connection on startup and open the minimum number of pooled connections
+            if (testConnection()) {
+                System.out.println("Database connection test: SUCCESS");
+                try {
+                    if (embedded) {
+                        createEmbeddedSchema();
+                    }
+                    pool.prewarm();
+                } catch (SQLException e) {
+                    System.err.println("Failed to pre-warm connection pool: " + e.getMessage());
                 }
             } else {
-                databaseProperties.load(Files.newInputStream(propFile.toPath()));
+                System.out.println("Database connection test: FAILED");
             }
+        }
 
+        // Build SQL Server connection URL from Server/Database/User/Password
+        private static void buildSqlServerUrl(Properties databaseProperties) throws IOException, ClassNotFoundException {
             String server = databaseProperties.getProperty("Server");
             String database = databaseProperties.getProperty("Database");
             user = databaseProperties.getProperty("User");
@@ -99,26 +99,49 @@
             System.out.println("Database: " + database);
             System.out.println("User: " + user);
             System.out.println("URL: " + url.replace(password, "******"));
+        }
 
-            // Test connection on startup
-            if (testConnection()) {
-                System.out.println("Database connection test: SUCCESS");
-            } else {
-                System.out.println("Database connection test: FAILED");
+        // Build the URL of a local H2 database file from EmbeddedPath; no server or login needed
+        private static void buildEmbeddedUrl(Properties databaseProperties) {
+            String path = databaseProperties.getProperty("EmbeddedPath", "").trim();
+            if (path.isEmpty()) {
+                path = DEFAULT_EMBEDDED_PATH;
+            }
+
+            // MSSQLServer mode accepts the SQL the DAOs write for SQL Server
+            url = "jdbc:h2:file:" + path + ";MODE=MSSQLServer";
+            embedded = true;
+
+            System.out.println("Using embedded database: " + path);
+        }
+
+        // Create the tables of a new embedded database
+        private static void createEmbeddedSchema() throws SQLException {
+            try (Connection conn = getConnection()) {
+                EmbeddedSchema.create(conn);
             }
         }
 
-        // Get database connection
+        // Get pooled database connection - closing it returns it to the pool
         public static Connection getConnection() throws SQLException {
-            if (url == null) {
+            if (pool == null) {
                 throw new SQLException("Database not initialized. Check database configuration.");
             }
 
-            System.out.println("Attempting to connect to database...");
-            // Use the URL that already contains user/password
-            Connection conn = DriverManager.getConnection(url);
-            System.out.println("Database connection established successfully");
-            return conn;
+            return pool.getConnection();
+        }
+
+        // Pool metrics (wait time, active/idle counts), null if not initialized
+        public static ConnectionPool getPool() {
+            return pool;
+        }
+
+        // Close all pooled connections
+        public static void shutdown() {
+            if (pool != null && !pool.isClosed()) {
+                System.out.println("Connection pool stats: " + pool.getStatsSummary());
+                pool.close();
+            }
         }
 
         // Test if database is accessible
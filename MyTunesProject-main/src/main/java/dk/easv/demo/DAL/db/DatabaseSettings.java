@@ -0,0 +1,147 @@
+package dk.easv.demo.DAL.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Contents of database.properties, read once. Kept apart from DBConnector
+ * so the backend can be chosen without opening a database connection.
+ */
+public final class DatabaseSettings {
+    // Values of the Backend setting; anything else means SQL Server
+    public static final String EMBEDDED_BACKEND = "embedded";
+    public static final String MEMORY_BACKEND = "memory";
+
+    private static Properties properties;
+
+    private DatabaseSettings() {
+    }
+
+    /**
+     * Reads database.properties on first use
+     * @return The settings
+     * @throws IOException if no settings file is found
+     */
+    public static synchronized Properties get() throws IOException {
+        if (properties == null) {
+            properties = load();
+        }
+        return properties;
+    }
+
+    /**
+     * Backend named by the Backend setting, lower case; empty for SQL Server
+     * or when the settings cannot be read
+     * @return Backend name
+     */
+    public static String backend() {
+        try {
+            return get().getProperty("Backend", "").trim().toLowerCase();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Reads an optional whole-number setting
+     * @param key Setting name
+     * @param defaultValue Value when the setting is missing, empty or invalid
+     * @return The value
+     */
+    public static int intSetting(String key, int defaultValue) {
+        String value;
+        try {
+            value = get().getProperty(key);
+        } catch (IOException e) {
+            return defaultValue;
+        }
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Names the library the settings point at, so data saved for one
+     * database is not shown for another
+     * @return Backend and location of the library
+     */
+    public static String libraryName() {
+        try {
+            Properties settings = get();
+            return backend() + "|" + settings.getProperty("Url", "").trim()
+                    + "|" + settings.getProperty("Server", "").trim()
+                    + "|" + settings.getProperty("Database", "").trim()
+                    + "|" + settings.getProperty("EmbeddedPath", "").trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static Properties load() throws IOException {
+        System.out.println("=== DBConnector Debug ===");
+        System.out.println("Current directory: " + new File(".").getAbsolutePath());
+
+        Properties databaseProperties = new Properties();
+
+        // Try multiple locations, starting with -Ddatabase.config=<file> if given
+        List<String> possiblePaths = new ArrayList<>();
+        if (System.getProperty("database.config") != null) {
+            possiblePaths.add(System.getProperty("database.config"));
+        }
+        possiblePaths.addAll(Arrays.asList(
+                "src/main/resources/database.properties",
+                "database.properties",
+                "target/classes/database.properties",
+                System.getProperty("user.dir") + "/src/main/resources/database.properties",
+                System.getProperty("user.dir") + "/database.properties"
+        ));
+
+        File propFile = null;
+
+        for (String path : possiblePaths) {
+            File testFile = new File(path);
+            System.out.println("Checking: " + path);
+            System.out.println("  Full path: " + testFile.getAbsolutePath());
+            System.out.println("  Exists: " + testFile.exists());
+
+            if (testFile.exists()) {
+                propFile = testFile;
+                System.out.println("✓ Found at: " + propFile.getAbsolutePath());
+                break;
+            }
+        }
+
+        if (propFile == null) {
+            // Try classpath
+            System.out.println("Trying classpath...");
+            InputStream input = DatabaseSettings.class.getClassLoader().getResourceAsStream("database.properties");
+            if (input != null) {
+                System.out.println("✓ Found in classpath!");
+                databaseProperties.load(input);
+                input.close();
+            } else {
+                System.err.println("✗ database.properties not found anywhere!");
+                throw new IOException("database.properties not found. Tried:\n" +
+                        "- src/main/resources/database.properties\n" +
+                        "- database.properties\n" +
+                        "- target/classes/database.properties\n" +
+                        "- classpath:/database.properties");
+            }
+        } else {
+            databaseProperties.load(Files.newInputStream(propFile.toPath()));
+        }
+        return databaseProperties;
+    }
+}
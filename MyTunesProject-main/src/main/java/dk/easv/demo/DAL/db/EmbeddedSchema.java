@@ -0,0 +1,58 @@
+package dk.easv.demo.DAL.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Creates the tables of the embedded backend from sql/embedded/schema.sql.
+ * Public so the benchmarks can build the same schema in their own database.
+ */
+public final class EmbeddedSchema {
+
+    private static final String SCHEMA_RESOURCE = "/sql/embedded/schema.sql";
+
+    private EmbeddedSchema() {
+    }
+
+    /**
+     * Creates any missing tables and indexes; existing ones are left alone
+     * @param conn Connection to the embedded database
+     * @throws SQLException if the script cannot be read or a statement fails
+     */
+    public static void create(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : readStatements()) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    // Statements of the script, split on ';' with comment lines removed
+    private static String[] readStatements() throws SQLException {
+        String script;
+        try (InputStream input = EmbeddedSchema.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+            if (input == null) {
+                throw new SQLException("Embedded schema not found: " + SCHEMA_RESOURCE);
+            }
+            script = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read embedded schema", e);
+        }
+
+        StringBuilder withoutComments = new StringBuilder();
+        for (String line : script.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                withoutComments.append(line).append('\n');
+            }
+        }
+        return Arrays.stream(withoutComments.toString().split(";"))
+                .map(String::trim)
+                .filter(sql -> !sql.isEmpty())
+                .toArray(String[]::new);
+    }
+}
@@ -1,12 +1,19 @@
 package dk.easv.demo.DAL.db;
 
+import dk.easv.demo.BE.DurationConverter;
 import dk.easv.demo.BE.Playlist;
 import dk.easv.demo.BE.Song;
 import dk.easv.demo.DAL.IPlaylistDataAccess;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 /**
  * Database operations for playlists and playlist-song relationships
@@ -48,6 +55,147 @@ public class PlaylistDAO_DB implements IPlaylistDataAccess {
         return allPlaylists;
     }
 
+    /**
+     * Retrieves all playlists with their songs using two set-based queries
+     * instead of one query per playlist. Songs are taken from the given
+     * collection, so playlists share the same Song instances as the library.
+     * @param allSongs All songs in the library
+     * @return List of playlists with songs, song count and total time filled in
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Playlist> getAllPlaylistsWithSongs(Collection<Song> allSongs) throws SQLException {
+        Map<Integer, Song> songsById = new HashMap<>(allSongs.size() * 2);
+        for (Song song : allSongs) {
+            songsById.put(song.getId(), song);
+        }
+
+        List<Playlist> playlists = new ArrayList<>();
+        Map<Integer, List<Song>> songsByPlaylist = new HashMap<>();
+
+        String playlistSql = "SELECT id, name FROM playlists ORDER BY name";
+        String entriesSql = "SELECT playlist_id, song_id FROM playlist_songs ORDER BY playlist_id, position, song_id";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            try (ResultSet rs = stmt.executeQuery(playlistSql)) {
+                while (rs.next()) {
+                    Playlist playlist = new Playlist(rs.getInt("id"), rs.getString("name"));
+                    playlists.add(playlist);
+                    songsByPlaylist.put(playlist.getId(), new ArrayList<>());
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery(entriesSql)) {
+                while (rs.next()) {
+                    List<Song> songs = songsByPlaylist.get(rs.getInt("playlist_id"));
+                    Song song = songsById.get(rs.getInt("song_id"));
+                    if (songs != null && song != null) {
+                        songs.add(song);
+                    }
+                }
+            }
+        }
+
+        // Sets song count and total time from the assembled lists
+        for (Playlist playlist : playlists) {
+            playlist.setSongs(songsByPlaylist.get(playlist.getId()));
+        }
+        return playlists;
+    }
+
+    /**
+     * Retrieves all playlists with song count and total time computed by the
+     * database in one grouped query, without loading any songs. The playlists'
+     * song lists stay empty; load them with getSongsInPlaylist when needed.
+     * Each playlist does get the ids of its songs, read from playlist_songs,
+     * so it can tell which songs it contains.
+     * Databases that only have the legacy "MM:SS" duration column cannot sum
+     * it in SQL, so there the durations are read per entry and summed here.
+     * @return List of playlists with song count and total time filled in
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Playlist> getAllPlaylistsWithTotals() throws SQLException {
+        List<Playlist> playlists = new ArrayList<>();
+
+        try (Connection conn = dbConnector.getConnection()) {
+            SongSchema schema = SongSchema.get(conn);
+            if (!schema.hasDurationSeconds()) {
+                return getAllPlaylistsWithLegacyTotals(conn);
+            }
+
+            // COUNT(s.id) skips entries whose song no longer exists, like getSongsInPlaylist
+            String sql = "SELECT p.id, p.name, COUNT(s.id) AS song_count, "
+                    + "COALESCE(SUM(s." + SongSchema.DURATION_SECONDS + "), 0) AS total_seconds "
+                    + "FROM playlists p "
+                    + "LEFT JOIN playlist_songs ps ON ps.playlist_id = p.id "
+                    + "LEFT JOIN songs s ON s.id = ps.song_id "
+                    + "GROUP BY p.id, p.name ORDER BY p.name";
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    Playlist playlist = new Playlist(rs.getInt("id"), rs.getString("name"));
+                    playlist.setSongCount(rs.getInt("song_count"));
+                    playlist.setTotalTime(rs.getInt("total_seconds"));
+                    playlists.add(playlist);
+                }
+            }
+
+            String idsSql = "SELECT ps.playlist_id, ps.song_id FROM playlist_songs ps JOIN songs s ON s.id = ps.song_id";
+            Map<Integer, List<Integer>> songIdsByPlaylist = new HashMap<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(idsSql)) {
+                while (rs.next()) {
+                    songIdsByPlaylist.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(rs.getInt(2));
+                }
+            }
+            for (Playlist playlist : playlists) {
+                playlist.setSongIds(songIdsByPlaylist.getOrDefault(playlist.getId(), List.of()));
+            }
+        }
+        return playlists;
+    }
+
+    // Totals for a songs table without duration_seconds: one narrow row per entry, summed in Java
+    private List<Playlist> getAllPlaylistsWithLegacyTotals(Connection conn) throws SQLException {
+        List<Playlist> playlists = new ArrayList<>();
+        Map<Integer, int[]> totals = new HashMap<>();
+        Map<Integer, List<Integer>> songIdsByPlaylist = new HashMap<>();
+
+        String playlistSql = "SELECT id, name FROM playlists ORDER BY name";
+        String entriesSql = "SELECT ps.playlist_id, ps.song_id, s." + SongSchema.LEGACY_DURATION + " FROM playlist_songs ps "
+                + "JOIN songs s ON s.id = ps.song_id";
+
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(playlistSql)) {
+                while (rs.next()) {
+                    playlists.add(new Playlist(rs.getInt("id"), rs.getString("name")));
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery(entriesSql)) {
+                while (rs.next()) {
+                    // [song count, total seconds]
+                    int[] total = totals.computeIfAbsent(rs.getInt(1), id -> new int[2]);
+                    total[0]++;
+                    total[1] += Math.max(DurationConverter.parseSeconds(rs.getString(3)), 0);
+                    songIdsByPlaylist.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(rs.getInt(2));
+                }
+            }
+        }
+
+        for (Playlist playlist : playlists) {
+            int[] total = totals.getOrDefault(playlist.getId(), new int[2]);
+            playlist.setSongCount(total[0]);
+            playlist.setTotalTime(total[1]);
+            playlist.setSongIds(songIdsByPlaylist.getOrDefault(playlist.getId(), List.of()));
+        }
+        return playlists;
+    }
+
     /**
      * Creates a new playlist in the database
      * @param name The name of the new playlist
@@ -118,24 +266,226 @@ public class PlaylistDAO_DB implements IPlaylistDataAccess {
     }
 
     /**
-     * Adds a song to a playlist at a specific position
+     * Adds a song to a playlist at a specific position.
+     * The new entry gets a key between its neighbours, so no other row changes.
      * @param playlistId ID of the playlist
      * @param songId ID of the song to add
-     * @param position Position in the playlist (0-based)
+     * @param position Position in the playlist (0-based), past the end appends
      * @throws SQLException if database error occurs
      */
     @Override
     public void addSongToPlaylist(int playlistId, int songId, int position) throws SQLException {
         String sql = "INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (?, ?, ?)";
 
-        try (Connection conn = dbConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        inTransaction(conn -> {
+            long key = keyForIndex(conn, playlistId, songId, position);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, playlistId);
+                stmt.setInt(2, songId);
+                stmt.setLong(3, key);
+                stmt.executeUpdate();
+            }
+        });
+    }
 
-            stmt.setInt(1, playlistId);
-            stmt.setInt(2, songId);
-            stmt.setInt(3, position);
-            stmt.executeUpdate();
+    /**
+     * Adds several songs to a playlist in one transaction with one batched INSERT.
+     * The songs keep their order and get keys spread over the room between
+     * their neighbours; if that room is too small the playlist is respaced
+     * in the same transaction.
+     * @param playlistId ID of the playlist
+     * @param songIds IDs of the songs to add, in order
+     * @param atPosition Position of the first added song (0-based), past the end appends
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void addSongsToPlaylist(int playlistId, List<Integer> songIds, int atPosition) throws SQLException {
+        if (songIds.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (?, ?, ?)";
+
+        inTransaction(conn -> {
+            PositionKeys keys = PositionKeys.get(conn);
+            Long[] neighbours = neighbourKeys(conn, playlistId, 0, atPosition);
+            int count = songIds.size();
+
+            long first;
+            long step = keys.gap();
+            if (neighbours[1] == null) {
+                first = neighbours[0] == null ? keys.keyAt(0) : neighbours[0] + step;
+            } else if (neighbours[0] == null) {
+                first = neighbours[1] - step * count;
+            } else {
+                step = (neighbours[1] - neighbours[0]) / (count + 1);
+                first = neighbours[0] + step;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < count; i++) {
+                    stmt.setInt(1, playlistId);
+                    stmt.setInt(2, songIds.get(i));
+                    // Without room the rows share a key until they are respaced below
+                    stmt.setLong(3, step > 0 ? first + step * i : first);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            if (step == 0) {
+                Set<Integer> added = new HashSet<>(songIds);
+                rewriteKeys(conn, playlistId, current -> {
+                    List<Integer> order = new ArrayList<>(current.size());
+                    for (int songId : current) {
+                        if (!added.contains(songId)) {
+                            order.add(songId);
+                        }
+                    }
+                    order.addAll(Math.max(0, Math.min(atPosition, order.size())), songIds);
+                    return order;
+                });
+            }
+        });
+    }
+
+    /**
+     * Replaces the contents of a playlist in one transaction. Stored rows are
+     * read and locked once, then one batched DELETE, INSERT and UPDATE write
+     * only what changed: kept songs keep their key and the songs between two
+     * kept songs get keys spread over the room between them. If some run has
+     * no room the whole playlist is respaced instead.
+     * @param playlistId ID of the playlist
+     * @param songIds New contents in order
+     * @param keptSongIds Songs already stored in this relative order, usually from a PlaylistDiff
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void replacePlaylistSongs(int playlistId, List<Integer> songIds, Set<Integer> keptSongIds) throws SQLException {
+        String selectSql = "SELECT song_id, position FROM playlist_songs WITH (UPDLOCK, HOLDLOCK) WHERE playlist_id = ?";
+        String deleteSql = "DELETE FROM playlist_songs WHERE playlist_id = ? AND song_id = ?";
+        String insertSql = "INSERT INTO playlist_songs (playlist_id, song_id, position) VALUES (?, ?, ?)";
+        String updateSql = "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?";
+
+        inTransaction(conn -> {
+            Map<Integer, Long> storedKeys = new HashMap<>();
+            try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                stmt.setInt(1, playlistId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        storedKeys.put(rs.getInt("song_id"), rs.getLong("position"));
+                    }
+                }
+            }
+
+            long[] keys = planKeys(PositionKeys.get(conn), songIds, keptSongIds, storedKeys);
+
+            Set<Integer> remaining = new HashSet<>(songIds);
+            try (PreparedStatement stmt = conn.prepareStatement(deleteSql)) {
+                boolean any = false;
+                for (int songId : storedKeys.keySet()) {
+                    if (!remaining.contains(songId)) {
+                        stmt.setInt(1, playlistId);
+                        stmt.setInt(2, songId);
+                        stmt.addBatch();
+                        any = true;
+                    }
+                }
+                if (any) {
+                    stmt.executeBatch();
+                }
+            }
+
+            try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                 PreparedStatement update = conn.prepareStatement(updateSql)) {
+                boolean anyInsert = false;
+                boolean anyUpdate = false;
+                for (int i = 0; i < songIds.size(); i++) {
+                    int songId = songIds.get(i);
+                    Long stored = storedKeys.get(songId);
+                    if (stored == null) {
+                        insert.setInt(1, playlistId);
+                        insert.setInt(2, songId);
+                        insert.setLong(3, keys[i]);
+                        insert.addBatch();
+                        anyInsert = true;
+                    } else if (stored != keys[i]) {
+                        update.setLong(1, keys[i]);
+                        update.setInt(2, playlistId);
+                        update.setInt(3, songId);
+                        update.addBatch();
+                        anyUpdate = true;
+                    }
+                }
+                if (anyInsert) {
+                    insert.executeBatch();
+                }
+                if (anyUpdate) {
+                    update.executeBatch();
+                }
+            }
+        });
+    }
+
+    // Keys for the new contents: kept songs are anchors, the runs between them are spread evenly
+    private static long[] planKeys(PositionKeys keys, List<Integer> songIds, Set<Integer> keptSongIds,
+                                   Map<Integer, Long> storedKeys) {
+        int n = songIds.size();
+        long[] planned = new long[n];
+        Long previous = null;
+        int i = 0;
+        while (i < n) {
+            Long anchor = keptSongIds.contains(songIds.get(i)) ? storedKeys.get(songIds.get(i)) : null;
+            if (anchor != null) {
+                if (previous != null && anchor <= previous) {
+                    return respaced(keys, n);
+                }
+                planned[i++] = anchor;
+                previous = anchor;
+                continue;
+            }
+
+            // Run of inserted or moved songs up to the next anchor
+            int end = i;
+            Long next = null;
+            while (end < n) {
+                next = keptSongIds.contains(songIds.get(end)) ? storedKeys.get(songIds.get(end)) : null;
+                if (next != null) {
+                    break;
+                }
+                end++;
+            }
+            int run = end - i;
+
+            long first;
+            long step = keys.gap();
+            if (previous == null && next == null) {
+                first = keys.keyAt(0);
+            } else if (previous == null) {
+                first = next - step * run;
+            } else if (next == null) {
+                first = previous + step;
+            } else {
+                step = (next - previous) / (run + 1);
+                if (step == 0) {
+                    return respaced(keys, n);
+                }
+                first = previous + step;
+            }
+            for (int j = 0; j < run; j++) {
+                planned[i + j] = first + step * j;
+            }
+            previous = planned[end - 1];
+            i = end;
         }
+        return planned;
+    }
+
+    private static long[] respaced(PositionKeys keys, int n) {
+        long[] planned = new long[n];
+        for (int i = 0; i < n; i++) {
+            planned[i] = keys.keyAt(i);
+        }
+        return planned;
     }
 
     /**
@@ -170,29 +520,18 @@ public class PlaylistDAO_DB implements IPlaylistDataAccess {
         String sql = "SELECT s.* FROM songs s " +
                 "JOIN playlist_songs ps ON s.id = ps.song_id " +
                 "WHERE ps.playlist_id = ? " +
-                "ORDER BY ps.position";
+                "ORDER BY ps.position, ps.song_id";
 
         try (Connection conn = dbConnector.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, playlistId);
 
+            SongSchema schema = SongSchema.get(conn);
+            StringPool artists = new StringPool();
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int id = rs.getInt("id");
-                    String title = rs.getString("title");
-                    String artist = rs.getString("artist");
-                    String category = rs.getString("category");
-
-                    // IMPORTANT: Duration is stored as string "MM:SS" in database
-                    // Convert to seconds for the Song object
-                    String durationStr = rs.getString("duration");
-                    int durationSeconds = convertDurationToSeconds(durationStr);
-
-                    String filePath = rs.getString("file_path");
-
-                    Song song = new Song(id, title, artist, category, durationSeconds, filePath);
-                    songs.add(song);
+                    songs.add(SongDAO_DB.mapResultSetToSong(rs, schema, artists));
                 }
             }
         }
@@ -200,82 +539,142 @@ public class PlaylistDAO_DB implements IPlaylistDataAccess {
     }
 
     /**
-     * Helper method to convert duration string (MM:SS) to seconds
-     * @param duration String in format "MM:SS" or "H:MM:SS"
-     * @return Duration in seconds
+     * Moves a song up one position in the playlist
+     * @param playlistId ID of the playlist
+     * @param songId ID of the song to move up
+     * @throws SQLException if database error occurs
      */
-    private int convertDurationToSeconds(String duration) {
-        if (duration == null || duration.trim().isEmpty()) {
-            return 0;
-        }
+    @Override
+    public void moveSongUp(int playlistId, int songId) throws SQLException {
+        moveSongByOffset(playlistId, songId, -1);
+    }
 
-        try {
-            duration = duration.trim();
-            String[] parts = duration.split(":");
-
-            if (parts.length == 2) {
-                // Format: "minutes:seconds" (e.g., "3:45")
-                int minutes = Integer.parseInt(parts[0]);
-                int seconds = Integer.parseInt(parts[1]);
-                return (minutes * 60) + seconds;
-            } else if (parts.length == 3) {
-                // Format: "hours:minutes:seconds" (e.g., "1:23:45")
-                int hours = Integer.parseInt(parts[0]);
-                int minutes = Integer.parseInt(parts[1]);
-                int seconds = Integer.parseInt(parts[2]);
-                return (hours * 3600) + (minutes * 60) + seconds;
-            } else {
-                // Try to parse as plain seconds
-                try {
-                    return Integer.parseInt(duration);
-                } catch (NumberFormatException e) {
-                    return 0;
-                }
+    /**
+     * Moves a song down one position in the playlist
+     * @param playlistId ID of the playlist
+     * @param songId ID of the song to move down
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void moveSongDown(int playlistId, int songId) throws SQLException {
+        moveSongByOffset(playlistId, songId, 1);
+    }
+
+    /**
+     * Moves a song a number of places up (negative) or down (positive),
+     * stopping at the start or end of the playlist
+     * @param playlistId ID of the playlist
+     * @param songId ID of the song to move
+     * @param offset Number of places to move
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void moveSongByOffset(int playlistId, int songId, int offset) throws SQLException {
+        inTransaction(conn -> {
+            Long currentKey = lockKey(conn, playlistId, songId);
+            if (currentKey != null) {
+                int index = indexOf(conn, playlistId, songId, currentKey);
+                moveTo(conn, playlistId, songId, currentKey, index + offset);
             }
-        } catch (Exception e) {
-            return 0;
-        }
+        });
     }
 
     /**
-     * Gets the position of a specific song in a playlist
+     * Moves a song to an index in the playlist. Only the moved row is updated,
+     * the songs in between keep their keys.
      * @param playlistId ID of the playlist
-     * @param songId ID of the song
-     * @return Position of the song, or -1 if not found
+     * @param songId ID of the song to move
+     * @param targetIndex New index (0-based), clamped to the playlist bounds
      * @throws SQLException if database error occurs
      */
-    public int getSongPosition(int playlistId, int songId) throws SQLException {
-        String sql = "SELECT position FROM playlist_songs WHERE playlist_id = ? AND song_id = ?";
+    @Override
+    public void moveSongToIndex(int playlistId, int songId, int targetIndex) throws SQLException {
+        inTransaction(conn -> {
+            Long currentKey = lockKey(conn, playlistId, songId);
+            if (currentKey != null) {
+                moveTo(conn, playlistId, songId, currentKey, targetIndex);
+            }
+        });
+    }
+
+    /**
+     * Puts all songs of a playlist into a new order, respacing every key
+     * @param playlistId ID of the playlist
+     * @param orderedSongIds Song IDs in their new order, must contain exactly the songs of the playlist
+     * @throws SQLException if database error occurs or the IDs do not match the playlist
+     */
+    @Override
+    public void reorderPlaylist(int playlistId, List<Integer> orderedSongIds) throws SQLException {
+        inTransaction(conn -> rewriteKeys(conn, playlistId, current -> {
+            if (!new HashSet<>(current).equals(new HashSet<>(orderedSongIds))
+                    || current.size() != orderedSongIds.size()) {
+                throw new IllegalArgumentException("Song order does not match the songs of playlist " + playlistId);
+            }
+            return new ArrayList<>(orderedSongIds);
+        }));
+    }
 
-        try (Connection conn = dbConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    // Work that runs inside one transaction on one connection
+    private interface TransactionWork {
+        void run(Connection conn) throws SQLException;
+    }
+
+    private void inTransaction(TransactionWork work) throws SQLException {
+        try (Connection conn = dbConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                work.run(conn);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Key of a playlist entry, locked until the transaction ends; null if the song is not in the playlist
+    private Long lockKey(Connection conn, int playlistId, int songId) throws SQLException {
+        String sql = "SELECT position FROM playlist_songs WITH (UPDLOCK, HOLDLOCK) " +
+                "WHERE playlist_id = ? AND song_id = ?";
 
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, playlistId);
             stmt.setInt(2, songId);
-
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt("position");
-                }
+                return rs.next() ? rs.getLong("position") : null;
             }
         }
-        return -1; // Song not found in playlist
     }
 
-    /**
-     * Updates the position of a song within a playlist
-     * @param playlistId ID of the playlist
-     * @param songId ID of the song to move
-     * @param newPosition New position for the song
-     * @throws SQLException if database error occurs
-     */
-    public void updateSongPosition(int playlistId, int songId, int newPosition) throws SQLException {
-        String sql = "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?";
+    // Current index of an entry, counted with the same ordering as the song list
+    private int indexOf(Connection conn, int playlistId, int songId, long key) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM playlist_songs " +
+                "WHERE playlist_id = ? AND (position < ? OR (position = ? AND song_id < ?))";
 
-        try (Connection conn = dbConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, playlistId);
+            stmt.setLong(2, key);
+            stmt.setLong(3, key);
+            stmt.setInt(4, songId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private void moveTo(Connection conn, int playlistId, int songId, long currentKey, int targetIndex) throws SQLException {
+        Long[] neighbours = neighbourKeys(conn, playlistId, songId, targetIndex);
+        boolean alreadyThere = (neighbours[0] == null || neighbours[0] < currentKey)
+                && (neighbours[1] == null || currentKey < neighbours[1]);
+        if (alreadyThere) {
+            return;
+        }
 
-            stmt.setInt(1, newPosition);
+        long key = keyForIndex(conn, playlistId, songId, targetIndex);
+        String sql = "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, key);
             stmt.setInt(2, playlistId);
             stmt.setInt(3, songId);
             stmt.executeUpdate();
@@ -283,69 +682,111 @@ public class PlaylistDAO_DB implements IPlaylistDataAccess {
     }
 
     /**
-     * Swaps the positions of two songs in a playlist
+     * Finds a free key for an entry at index, rebalancing the playlist first
+     * if its neighbours have no room left between them
+     * @param conn Connection of the running transaction
      * @param playlistId ID of the playlist
-     * @param songId1 First song ID
-     * @param songId2 Second song ID
+     * @param songId Song being placed, ignored when looking at neighbours
+     * @param index Target index (0-based), clamped to the playlist bounds
+     * @return Key for the entry
      * @throws SQLException if database error occurs
      */
-    public void swapSongPositions(int playlistId, int songId1, int songId2) throws SQLException {
-        int position1 = getSongPosition(playlistId, songId1);
-        int position2 = getSongPosition(playlistId, songId2);
-
-        if (position1 != -1 && position2 != -1) {
-            updateSongPosition(playlistId, songId1, position2);
-            updateSongPosition(playlistId, songId2, position1);
+    private long keyForIndex(Connection conn, int playlistId, int songId, int index) throws SQLException {
+        PositionKeys keys = PositionKeys.get(conn);
+        Long[] neighbours = neighbourKeys(conn, playlistId, songId, index);
+        Long key = keys.between(neighbours[0], neighbours[1]);
+        if (key == null) {
+            rewriteKeys(conn, playlistId, UnaryOperator.identity());
+            neighbours = neighbourKeys(conn, playlistId, songId, index);
+            key = keys.between(neighbours[0], neighbours[1]);
         }
+        return key;
     }
 
-    /**
-     * Moves a song up one position in the playlist
-     * @param playlistId ID of the playlist
-     * @param songId ID of the song to move up
-     * @throws SQLException if database error occurs
-     */
-    public void moveSongUp(int playlistId, int songId) throws SQLException {
-        List<Song> songs = getSongsInPlaylist(playlistId);
+    // Keys of the entries that end up directly before and after index, null where there is none
+    private Long[] neighbourKeys(Connection conn, int playlistId, int songId, int index) throws SQLException {
+        String sql = "SELECT position FROM playlist_songs WITH (UPDLOCK, HOLDLOCK) " +
+                "WHERE playlist_id = ? AND song_id <> ? ORDER BY position, song_id " +
+                "OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
 
-        // Find current song position
-        int currentIndex = -1;
-        for (int i = 0; i < songs.size(); i++) {
-            if (songs.get(i).getId() == songId) {
-                currentIndex = i;
-                break;
+        int from = Math.max(index - 1, 0);
+        List<Long> found = new ArrayList<>(2);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, playlistId);
+            stmt.setInt(2, songId);
+            stmt.setInt(3, from);
+            stmt.setInt(4, index > 0 ? 2 : 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getLong("position"));
+                }
             }
         }
 
-        // Swap with song above if not at top
-        if (currentIndex > 0) {
-            int songIdAbove = songs.get(currentIndex - 1).getId();
-            swapSongPositions(playlistId, songId, songIdAbove);
+        if (index <= 0) {
+            return new Long[]{null, found.isEmpty() ? null : found.get(0)};
+        }
+        if (!found.isEmpty()) {
+            return new Long[]{found.get(0), found.size() > 1 ? found.get(1) : null};
+        }
+
+        // Index is past the end: append after the last entry
+        String lastSql = "SELECT MAX(position) FROM playlist_songs WHERE playlist_id = ? AND song_id <> ?";
+        try (PreparedStatement stmt = conn.prepareStatement(lastSql)) {
+            stmt.setInt(1, playlistId);
+            stmt.setInt(2, songId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                long last = rs.getLong(1);
+                return new Long[]{rs.wasNull() ? null : last, null};
+            }
         }
     }
 
     /**
-     * Moves a song down one position in the playlist
+     * Respaces every key of a playlist, optionally putting the songs into a
+     * new order. The rows are read and locked with a single SELECT and only
+     * rows whose key changes are written, with one batched UPDATE.
+     * @param conn Connection of the running transaction
      * @param playlistId ID of the playlist
-     * @param songId ID of the song to move down
+     * @param reordering Maps the current song order to the new one
      * @throws SQLException if database error occurs
      */
-    public void moveSongDown(int playlistId, int songId) throws SQLException {
-        List<Song> songs = getSongsInPlaylist(playlistId);
-
-        // Find current song position
-        int currentIndex = -1;
-        for (int i = 0; i < songs.size(); i++) {
-            if (songs.get(i).getId() == songId) {
-                currentIndex = i;
-                break;
+    private void rewriteKeys(Connection conn, int playlistId, UnaryOperator<List<Integer>> reordering) throws SQLException {
+        String selectSql = "SELECT song_id, position FROM playlist_songs WITH (UPDLOCK, HOLDLOCK) " +
+                "WHERE playlist_id = ? ORDER BY position, song_id";
+        String updateSql = "UPDATE playlist_songs SET position = ? WHERE playlist_id = ? AND song_id = ?";
+
+        List<Integer> songIds = new ArrayList<>();
+        Map<Integer, Long> storedKeys = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+            stmt.setInt(1, playlistId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    songIds.add(rs.getInt("song_id"));
+                    storedKeys.put(rs.getInt("song_id"), rs.getLong("position"));
+                }
             }
         }
 
-        // Swap with song below if not at bottom
-        if (currentIndex >= 0 && currentIndex < songs.size() - 1) {
-            int songIdBelow = songs.get(currentIndex + 1).getId();
-            swapSongPositions(playlistId, songId, songIdBelow);
+        PositionKeys keys = PositionKeys.get(conn);
+        List<Integer> newOrder = reordering.apply(songIds);
+        try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+            boolean changed = false;
+            for (int index = 0; index < newOrder.size(); index++) {
+                int songId = newOrder.get(index);
+                long key = keys.keyAt(index);
+                if (storedKeys.get(songId) != key) {
+                    stmt.setLong(1, key);
+                    stmt.setInt(2, playlistId);
+                    stmt.setInt(3, songId);
+                    stmt.addBatch();
+                    changed = true;
+                }
+            }
+            if (changed) {
+                stmt.executeBatch();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,97 @@
+package dk.easv.demo.DAL.db;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Sparse ordering keys for playlist_songs.position.
+ * Entries are spaced a fixed gap apart, so inserting or moving a song only
+ * needs a key between its two new neighbours and touches a single row.
+ * When two neighbours have no room left between them the playlist is
+ * rebalanced back to evenly spaced keys in one batch.
+ * The gap depends on the column type: BIGINT (after migration 02) allows a
+ * wide gap, the legacy INT column a narrower one that still fits large playlists.
+ */
+final class PositionKeys {
+    static final long BIGINT_GAP = 1L << 20;
+    static final long INT_GAP = 1L << 10;
+
+    private static volatile PositionKeys current;
+
+    private final long gap;
+
+    // Range of the position column; keys outside it would overflow in the database
+    private final long minKey;
+    private final long maxKey;
+
+    private PositionKeys(long gap, long minKey, long maxKey) {
+        this.gap = gap;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+    }
+
+    /**
+     * Looks up the position column type once and caches the result
+     * @param conn Open connection used for the metadata lookup
+     * @return Key settings
+     * @throws SQLException if database error occurs
+     */
+    static PositionKeys get(Connection conn) throws SQLException {
+        PositionKeys keys = current;
+        if (keys == null) {
+            keys = isBigint(conn.getMetaData())
+                    ? new PositionKeys(BIGINT_GAP, Long.MIN_VALUE, Long.MAX_VALUE)
+                    : new PositionKeys(INT_GAP, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            current = keys;
+        }
+        return keys;
+    }
+
+    private static boolean isBigint(DatabaseMetaData metaData) throws SQLException {
+        // Identifier case differs between databases, so try both
+        for (String table : new String[]{"playlist_songs", "PLAYLIST_SONGS"}) {
+            for (String name : new String[]{"position", "POSITION"}) {
+                try (ResultSet rs = metaData.getColumns(null, null, table, name)) {
+                    if (rs.next()) {
+                        return rs.getInt("DATA_TYPE") == Types.BIGINT;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    long gap() { return gap; }
+
+    // Key of the entry at index (0-based) in an evenly spaced playlist
+    long keyAt(int index) {
+        return (index + 1) * gap;
+    }
+
+    /**
+     * Key for an entry placed between two neighbours
+     * @param before Key of the entry before, or null at the start
+     * @param after Key of the entry after, or null at the end
+     * @return New key, or null if there is no room, or no room left in the column's
+     *         range at the start or end, and the playlist needs rebalancing
+     */
+    Long between(Long before, Long after) {
+        if (before == null && after == null) {
+            return keyAt(0);
+        }
+        // Compared this way round so the check itself cannot overflow
+        if (before == null) {
+            return after < minKey + gap ? null : after - gap;
+        }
+        if (after == null) {
+            return before > maxKey - gap ? null : before + gap;
+        }
+        if (after - before < 2) {
+            return null;
+        }
+        return before + (after - before) / 2;
+    }
+}
@@ -5,7 +5,17 @@ import dk.easv.demo.DAL.ISongDataAccess;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Database implementation of song data access operations
@@ -13,6 +23,9 @@ import java.util.List;
  */
 public class SongDAO_DB implements ISongDataAccess {
 
+    // Rows per executeBatch in createSongs; also bounds the IN list used to read IDs back (SQL Server allows 2100 parameters)
+    private static final int BATCH_SIZE = 1000;
+
     private DBConnector dbConnector;
 
     /**
@@ -31,14 +44,16 @@ public class SongDAO_DB implements ISongDataAccess {
     public List<Song> getAllSongs() throws SQLException {
         List<Song> allSongs = new ArrayList<>();
 
-        String sql = "SELECT * FROM songs ORDER BY title";
+        String sql = "SELECT * FROM songs ORDER BY title, id";
 
         try (Connection conn = dbConnector.getConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
+            SongSchema schema = SongSchema.get(conn);
+            StringPool artists = new StringPool();
             while (rs.next()) {
-                Song song = mapResultSetToSong(rs);
+                Song song = mapResultSetToSong(rs, schema, artists);
                 allSongs.add(song);
             }
         }
@@ -46,6 +61,207 @@ public class SongDAO_DB implements ISongDataAccess {
         return allSongs;
     }
 
+    /**
+     * Retrieves all songs sorted by title and id, passing them on in chunks while
+     * the result set is still being read
+     * @param chunkSize Number of songs per chunk (also used as JDBC fetch size)
+     * @param chunkConsumer Receives each chunk on the calling thread
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void getAllSongsInChunks(int chunkSize, Consumer<List<Song>> chunkConsumer) throws SQLException {
+        String sql = "SELECT * FROM songs ORDER BY title, id";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.setFetchSize(chunkSize);
+
+            SongSchema schema = SongSchema.get(conn);
+            StringPool artists = new StringPool();
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                List<Song> chunk = new ArrayList<>(chunkSize);
+                while (rs.next()) {
+                    chunk.add(mapResultSetToSong(rs, schema, artists));
+                    if (chunk.size() == chunkSize) {
+                        chunkConsumer.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    chunkConsumer.accept(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams all songs sorted by title and id. Rows are read from a forward-only,
+     * read-only cursor as the stream is consumed, so only fetchSize rows are
+     * held in memory at a time. The connection stays open until the stream
+     * is closed or fully consumed; use it in try-with-resources. Database
+     * errors while reading are rethrown as RuntimeException.
+     * @param fetchSize Number of rows the driver fetches per round trip
+     * @return Lazily filled stream of songs
+     * @throws SQLException if the query cannot be started
+     */
+    @Override
+    public Stream<Song> streamAllSongs(int fetchSize) throws SQLException {
+        String sql = "SELECT * FROM songs ORDER BY title, id";
+
+        Connection conn = dbConnector.getConnection();
+        try {
+            SongSchema schema = SongSchema.get(conn);
+            Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            ResultSet rs = stmt.executeQuery(sql);
+
+            SongCursor cursor = new SongCursor(conn, stmt, rs, schema);
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    // Maps one row per tryAdvance and releases the connection at the end of the rows or on close
+    private static final class SongCursor extends Spliterators.AbstractSpliterator<Song> {
+        private final Connection conn;
+        private final Statement stmt;
+        private final ResultSet rs;
+        private final SongSchema schema;
+        private final StringPool artists = new StringPool();
+        private boolean closed = false;
+
+        SongCursor(Connection conn, Statement stmt, ResultSet rs, SongSchema schema) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.conn = conn;
+            this.stmt = stmt;
+            this.rs = rs;
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Song> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapResultSetToSong(rs, schema, artists));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("Database error while streaming songs", e);
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                try {
+                    rs.close();
+                } finally {
+                    try {
+                        stmt.close();
+                    } finally {
+                        conn.close();
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Failed to close song stream: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Counts the songs in the database
+     * @return Number of songs
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public int countSongs() throws SQLException {
+        String sql = "SELECT COUNT(*) FROM songs";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Retrieves the page of songs that follows a given song in (title, id)
+     * order. The leading title >= ? lets the database seek into the title
+     * index instead of skipping rows, so every page costs the same however
+     * deep into the library it is.
+     * @param afterTitle Title of the last song of the previous page, or null for the first page
+     * @param afterId ID of the last song of the previous page
+     * @param pageSize Maximum number of songs to return
+     * @return Songs of the page, fewer than pageSize at the end of the library
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Song> getSongsPage(String afterTitle, int afterId, int pageSize) throws SQLException {
+        String sql = afterTitle == null
+                ? "SELECT * FROM songs ORDER BY title, id OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY"
+                : "SELECT * FROM songs WHERE title >= ? AND (title > ? OR id > ?) "
+                + "ORDER BY title, id OFFSET 0 ROWS FETCH NEXT ? ROWS ONLY";
+
+        try (Connection conn = dbConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            if (afterTitle != null) {
+                stmt.setString(index++, afterTitle);
+                stmt.setString(index++, afterTitle);
+                stmt.setInt(index++, afterId);
+            }
+            stmt.setInt(index, pageSize);
+            return readPage(conn, stmt, pageSize);
+        }
+    }
+
+    /**
+     * Retrieves a page of songs in (title, id) order by row offset. The
+     * database has to skip the offset rows, so this is only meant for jumps
+     * to a page whose preceding song is not known yet.
+     * @param offset Number of songs to skip
+     * @param pageSize Maximum number of songs to return
+     * @return Songs of the page
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Song> getSongsPageAt(int offset, int pageSize) throws SQLException {
+        String sql = "SELECT * FROM songs ORDER BY title, id OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+
+        try (Connection conn = dbConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, offset);
+            stmt.setInt(2, pageSize);
+            return readPage(conn, stmt, pageSize);
+        }
+    }
+
+    private List<Song> readPage(Connection conn, PreparedStatement stmt, int pageSize) throws SQLException {
+        List<Song> page = new ArrayList<>(pageSize);
+        SongSchema schema = SongSchema.get(conn);
+        StringPool artists = new StringPool();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                page.add(mapResultSetToSong(rs, schema, artists));
+            }
+        }
+        return page;
+    }
+
     /**
      * Creates a new song in the database
      * @param title Song title
@@ -58,32 +274,124 @@ public class SongDAO_DB implements ISongDataAccess {
      */
     @Override
     public Song createSong(String title, String artist, String category, int duration, String filePath) throws SQLException {
-        String sql = "INSERT INTO songs (title, artist, category, duration, file_path) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = dbConnector.getConnection()) {
+            SongSchema schema = SongSchema.get(conn);
+            String sql = "INSERT INTO songs (title, artist, category, " + schema.durationColumns() + ", file_path) "
+                    + "VALUES (?, ?, ?, " + schema.durationPlaceholders() + ", ?)";
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                stmt.setString(1, title);
+                stmt.setString(2, artist);
+                stmt.setString(3, category);
+                int index = schema.bindDuration(stmt, 4, duration);
+                stmt.setString(index, filePath);
+                stmt.executeUpdate();
+
+                // Retrieve the auto-generated ID
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    if (rs.next()) {
+                        int id = rs.getInt(1);
+                        return new Song(id, title, artist, category, duration, filePath);
+                    }
+                }
+            }
+        }
 
-        try (Connection conn = dbConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        return null;
+    }
 
-            stmt.setString(1, title);
-            stmt.setString(2, artist);
-            stmt.setString(3, category);
+    /**
+     * Creates many songs in one transaction. Rows are inserted with one
+     * batched statement per chunk, then the generated IDs are read back by
+     * file path, since not every driver returns generated keys for batches.
+     * @param songs Songs to create, with distinct file paths; their IDs are ignored
+     * @return The created songs with generated IDs, in the same order
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<Song> createSongs(List<Song> songs) throws SQLException {
+        List<Song> created = new ArrayList<>(songs.size());
+        if (songs.isEmpty()) {
+            return created;
+        }
 
-            // Convert seconds to "MM:SS" format for database
-            String durationStr = convertSecondsToDuration(duration);
-            stmt.setString(4, durationStr);
+        try (Connection conn = dbConnector.getConnection()) {
+            SongSchema schema = SongSchema.get(conn);
+            String insertSql = "INSERT INTO songs (title, artist, category, " + schema.durationColumns() + ", file_path) "
+                    + "VALUES (?, ?, ?, " + schema.durationPlaceholders() + ", ?)";
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                for (int from = 0; from < songs.size(); from += BATCH_SIZE) {
+                    List<Song> chunk = songs.subList(from, Math.min(from + BATCH_SIZE, songs.size()));
+                    for (Song song : chunk) {
+                        insert.setString(1, song.getTitle());
+                        insert.setString(2, song.getArtist());
+                        insert.setString(3, song.getCategory());
+                        int index = schema.bindDuration(insert, 4, song.getDuration());
+                        insert.setString(index, song.getFilePath());
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+
+                    Map<String, Integer> ids = findIdsByFilePath(conn, chunk);
+                    for (Song song : chunk) {
+                        Integer id = ids.get(song.getFilePath());
+                        if (id != null) {
+                            created.add(new Song(id, song.getTitle(), song.getArtist(), song.getCategory(),
+                                    song.getDuration(), song.getFilePath()));
+                        }
+                    }
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return created;
+    }
 
-            stmt.setString(5, filePath);
-            stmt.executeUpdate();
+    // Newest song ID for each file path of the chunk, in one query
+    private Map<String, Integer> findIdsByFilePath(Connection conn, List<Song> chunk) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, file_path FROM songs WHERE file_path IN (");
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
 
-            // Retrieve the auto-generated ID
-            try (ResultSet rs = stmt.getGeneratedKeys()) {
-                if (rs.next()) {
-                    int id = rs.getInt(1);
-                    return new Song(id, title, artist, category, duration, filePath);
+        Map<String, Integer> ids = new HashMap<>(chunk.size() * 2);
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < chunk.size(); i++) {
+                stmt.setString(i + 1, chunk.get(i).getFilePath());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.merge(rs.getString("file_path"), rs.getInt("id"), Math::max);
                 }
             }
         }
+        return ids;
+    }
 
-        return null;
+    /**
+     * Retrieves the file paths of all songs
+     * @return Set of file paths
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public Set<String> getAllFilePaths() throws SQLException {
+        Set<String> filePaths = new HashSet<>();
+        String sql = "SELECT file_path FROM songs WHERE file_path IS NOT NULL";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                filePaths.add(rs.getString(1));
+            }
+        }
+        return filePaths;
     }
 
     /**
@@ -93,22 +401,58 @@ public class SongDAO_DB implements ISongDataAccess {
      */
     @Override
     public void updateSong(Song song) throws SQLException {
-        String sql = "UPDATE songs SET title = ?, artist = ?, category = ?, duration = ?, file_path = ? WHERE id = ?";
-
-        try (Connection conn = dbConnector.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, song.getTitle());
-            stmt.setString(2, song.getArtist());
-            stmt.setString(3, song.getCategory());
+        try (Connection conn = dbConnector.getConnection()) {
+            SongSchema schema = SongSchema.get(conn);
+            String sql = "UPDATE songs SET title = ?, artist = ?, category = ?, " + schema.durationAssignments()
+                    + ", file_path = ? WHERE id = ?";
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, song.getTitle());
+                stmt.setString(2, song.getArtist());
+                stmt.setString(3, song.getCategory());
+                int index = schema.bindDuration(stmt, 4, song.getDuration());
+                stmt.setString(index++, song.getFilePath());
+                stmt.setInt(index, song.getId());
+                stmt.executeUpdate();
+            }
+        }
+    }
 
-            // Convert seconds to "MM:SS" format
-            String durationStr = convertSecondsToDuration(song.getDuration());
-            stmt.setString(4, durationStr);
+    /**
+     * Updates many songs in one transaction, one batched statement per chunk
+     * @param songs The songs to update
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void updateSongs(List<Song> songs) throws SQLException {
+        if (songs.isEmpty()) {
+            return;
+        }
 
-            stmt.setString(5, song.getFilePath());
-            stmt.setInt(6, song.getId());
-            stmt.executeUpdate();
+        try (Connection conn = dbConnector.getConnection()) {
+            SongSchema schema = SongSchema.get(conn);
+            String sql = "UPDATE songs SET title = ?, artist = ?, category = ?, " + schema.durationAssignments()
+                    + ", file_path = ? WHERE id = ?";
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int from = 0; from < songs.size(); from += BATCH_SIZE) {
+                    for (Song song : songs.subList(from, Math.min(from + BATCH_SIZE, songs.size()))) {
+                        stmt.setString(1, song.getTitle());
+                        stmt.setString(2, song.getArtist());
+                        stmt.setString(3, song.getCategory());
+                        int index = schema.bindDuration(stmt, 4, song.getDuration());
+                        stmt.setString(index++, song.getFilePath());
+                        stmt.setInt(index, song.getId());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
         }
     }
 
@@ -129,6 +473,37 @@ public class SongDAO_DB implements ISongDataAccess {
         }
     }
 
+    /**
+     * Deletes many songs in one transaction, one batched statement per chunk
+     * @param songs The songs to delete
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void deleteSongs(List<Song> songs) throws SQLException {
+        if (songs.isEmpty()) {
+            return;
+        }
+
+        String sql = "DELETE FROM songs WHERE id = ?";
+
+        try (Connection conn = dbConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int from = 0; from < songs.size(); from += BATCH_SIZE) {
+                    for (Song song : songs.subList(from, Math.min(from + BATCH_SIZE, songs.size()))) {
+                        stmt.setInt(1, song.getId());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
     /**
      * Retrieves a specific song by its ID
      * @param id The ID of the song to retrieve
@@ -146,7 +521,7 @@ public class SongDAO_DB implements ISongDataAccess {
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToSong(rs);
+                    return mapResultSetToSong(rs, SongSchema.get(conn), new StringPool());
                 }
             }
         }
@@ -157,77 +532,22 @@ public class SongDAO_DB implements ISongDataAccess {
     /**
      * Helper method to convert ResultSet row to Song object
      * @param rs ResultSet containing song data
-     * @return Song object populated with data
+     * @param schema Duration columns present in the songs table
+     * @param artists Pool of the current load, so repeated artists share one String
+     * @return Song object populated with data; the category is stored as a CategoryDictionary id
      * @throws SQLException if database error occurs
      */
-    private Song mapResultSetToSong(ResultSet rs) throws SQLException {
+    static Song mapResultSetToSong(ResultSet rs, SongSchema schema, StringPool artists) throws SQLException {
         int id = rs.getInt("id");
         String title = rs.getString("title");
-        String artist = rs.getString("artist");
+        String artist = artists.canonical(rs.getString("artist"));
         String category = rs.getString("category");
         String filePath = rs.getString("file_path");
-
-        // IMPORTANT: Get duration as String from database
-        String durationStr = rs.getString("duration");
-        int durationSeconds = convertDurationToSeconds(durationStr);
+        int durationSeconds = schema.readDuration(rs);
 
         return new Song(id, title, artist, category, durationSeconds, filePath);
     }
 
-    /**
-     * Helper method to convert duration string (MM:SS) to seconds
-     * @param duration String in format "MM:SS" or "H:MM:SS"
-     * @return Duration in seconds
-     */
-    private int convertDurationToSeconds(String duration) {
-        if (duration == null || duration.trim().isEmpty()) {
-            return 0;
-        }
-
-        try {
-            duration = duration.trim();
-            String[] parts = duration.split(":");
-
-            if (parts.length == 2) {
-                // Format: "minutes:seconds" (e.g., "3:45")
-                int minutes = Integer.parseInt(parts[0]);
-                int seconds = Integer.parseInt(parts[1]);
-                return (minutes * 60) + seconds;
-            } else if (parts.length == 3) {
-                // Format: "hours:minutes:seconds" (e.g., "1:23:45")
-                int hours = Integer.parseInt(parts[0]);
-                int minutes = Integer.parseInt(parts[1]);
-                int seconds = Integer.parseInt(parts[2]);
-                return (hours * 3600) + (minutes * 60) + seconds;
-            } else {
-                // Try to parse as plain seconds
-                try {
-                    return Integer.parseInt(duration);
-                } catch (NumberFormatException e) {
-                    return 0;
-                }
-            }
-        } catch (Exception e) {
-            return 0;
-        }
-    }
-
-    /**
-     * Helper method to convert seconds to "minutes:seconds" format
-     * @param seconds Duration in seconds
-     * @return Formatted string (e.g., "3:45")
-     */
-    private String convertSecondsToDuration(int seconds) {
-        if (seconds <= 0) {
-            return "0:00";
-        }
-
-        int minutes = seconds / 60;
-        int remainingSeconds = seconds % 60;
-
-        return String.format("%d:%02d", minutes, remainingSeconds);
-    }
-
     /**
      * Searches for songs by title or artist
      * @param query Search query
@@ -245,9 +565,11 @@ public class SongDAO_DB implements ISongDataAccess {
             stmt.setString(1, "%" + query + "%");
             stmt.setString(2, "%" + query + "%");
 
+            SongSchema schema = SongSchema.get(conn);
+            StringPool artists = new StringPool();
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Song song = mapResultSetToSong(rs);
+                    Song song = mapResultSetToSong(rs, schema, artists);
                     results.add(song);
                 }
             }
@@ -262,6 +584,7 @@ public class SongDAO_DB implements ISongDataAccess {
      * @return List of songs in the category
      * @throws SQLException if database error occurs
      */
+    @Override
     public List<Song> getSongsByCategory(String category) throws SQLException {
         List<Song> results = new ArrayList<>();
 
@@ -272,9 +595,11 @@ public class SongDAO_DB implements ISongDataAccess {
 
             stmt.setString(1, category);
 
+            SongSchema schema = SongSchema.get(conn);
+            StringPool artists = new StringPool();
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Song song = mapResultSetToSong(rs);
+                    Song song = mapResultSetToSong(rs, schema, artists);
                     results.add(song);
                 }
             }
@@ -282,4 +607,29 @@ public class SongDAO_DB implements ISongDataAccess {
 
         return results;
     }
+
+    /**
+     * Gets the distinct categories without reading the songs themselves
+     * @return Non-empty categories, sorted
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<String> getAllCategories() throws SQLException {
+        TreeSet<String> categories = new TreeSet<>();
+
+        String sql = "SELECT DISTINCT category FROM songs WHERE category IS NOT NULL";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                String category = rs.getString(1);
+                if (!category.trim().isEmpty()) {
+                    categories.add(category);
+                }
+            }
+        }
+
+        return new ArrayList<>(categories);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package dk.easv.demo.DAL.db;
+
+import dk.easv.demo.BE.SongFile;
+import dk.easv.demo.DAL.ISongFileDataAccess;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Database implementation of the file manifest (table song_files, see
+ * sql/03_file_manifest.sql). One row per scanned song holds the file size,
+ * modification time and content hash seen by the last scan; the path itself
+ * stays in the songs table.
+ */
+public class SongFileDAO_DB implements ISongFileDataAccess {
+
+    // Rows per executeBatch
+    private static final int BATCH_SIZE = 1000;
+
+    private DBConnector dbConnector;
+
+    /**
+     * Constructor - initializes database connection
+     */
+    public SongFileDAO_DB() {
+        dbConnector = new DBConnector();
+    }
+
+    /**
+     * Retrieves every song that has a file path, joined with its file state
+     * @return Song files; songs that were never scanned have no state
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public List<SongFile> getAllSongFiles() throws SQLException {
+        List<SongFile> songFiles = new ArrayList<>();
+        String sql = "SELECT s.id, s.file_path, f.file_size, f.modified_at, f.content_hash "
+                + "FROM songs s LEFT JOIN song_files f ON f.song_id = s.id "
+                + "WHERE s.file_path IS NOT NULL";
+
+        try (Connection conn = dbConnector.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.setFetchSize(BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                while (rs.next()) {
+                    int songId = rs.getInt(1);
+                    String filePath = rs.getString(2);
+                    long fileSize = rs.getLong(3);
+                    if (rs.wasNull()) {
+                        songFiles.add(new SongFile(songId, filePath));
+                    } else {
+                        songFiles.add(new SongFile(songId, filePath, fileSize, rs.getLong(4), rs.getLong(5)));
+                    }
+                }
+            }
+        }
+        return songFiles;
+    }
+
+    /**
+     * Inserts or replaces the file state of songs. Existing rows are deleted
+     * and rewritten with batched statements in one transaction.
+     * @param songFiles File states to store
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void saveSongFiles(List<SongFile> songFiles) throws SQLException {
+        if (songFiles.isEmpty()) {
+            return;
+        }
+
+        String deleteSql = "DELETE FROM song_files WHERE song_id = ?";
+        String insertSql = "INSERT INTO song_files (song_id, file_size, modified_at, content_hash) VALUES (?, ?, ?, ?)";
+
+        try (Connection conn = dbConnector.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement(deleteSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+
+                for (int from = 0; from < songFiles.size(); from += BATCH_SIZE) {
+                    List<SongFile> chunk = songFiles.subList(from, Math.min(from + BATCH_SIZE, songFiles.size()));
+                    for (SongFile songFile : chunk) {
+                        delete.setInt(1, songFile.getSongId());
+                        delete.addBatch();
+
+                        insert.setInt(1, songFile.getSongId());
+                        insert.setLong(2, songFile.getFileSize());
+                        insert.setLong(3, songFile.getModifiedMillis());
+                        insert.setLong(4, songFile.getContentHash());
+                        insert.addBatch();
+                    }
+                    delete.executeBatch();
+                    insert.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Deletes the file state of songs
+     * @param songIds IDs of the songs
+     * @throws SQLException if database error occurs
+     */
+    @Override
+    public void deleteSongFiles(Collection<Integer> songIds) throws SQLException {
+        if (songIds.isEmpty()) {
+            return;
+        }
+
+        String sql = "DELETE FROM song_files WHERE song_id = ?";
+
+        try (Connection conn = dbConnector.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int pending = 0;
+            for (int songId : songIds) {
+                stmt.setInt(1, songId);
+                stmt.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    stmt.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dk.easv.demo.DAL.db;
+
+import dk.easv.demo.BE.DurationConverter;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Describes which duration columns the songs table has.
+ * During the migration from the legacy "MM:SS" text column (duration) to the
+ * integer column (duration_seconds) both may exist: reads prefer the integer
+ * column and fall back to the text column for rows not yet backfilled, and
+ * writes keep both in sync so older clients keep working.
+ */
+final class SongSchema {
+    static final String DURATION_SECONDS = "duration_seconds";
+    static final String LEGACY_DURATION = "duration";
+
+    private static volatile SongSchema current;
+
+    private final boolean hasDurationSeconds;
+    private final boolean hasLegacyDuration;
+
+    private SongSchema(boolean hasDurationSeconds, boolean hasLegacyDuration) {
+        this.hasDurationSeconds = hasDurationSeconds;
+        this.hasLegacyDuration = hasLegacyDuration;
+    }
+
+    /**
+     * Looks up the songs table columns once and caches the result
+     * @param conn Open connection used for the metadata lookup
+     * @return Schema description
+     * @throws SQLException if database error occurs
+     */
+    static SongSchema get(Connection conn) throws SQLException {
+        SongSchema schema = current;
+        if (schema == null) {
+            DatabaseMetaData metaData = conn.getMetaData();
+            schema = new SongSchema(
+                    hasColumn(metaData, DURATION_SECONDS),
+                    hasColumn(metaData, LEGACY_DURATION));
+            current = schema;
+        }
+        return schema;
+    }
+
+    private static boolean hasColumn(DatabaseMetaData metaData, String column) throws SQLException {
+        // Identifier case differs between databases, so try both
+        for (String table : new String[]{"songs", "SONGS"}) {
+            for (String name : new String[]{column, column.toUpperCase()}) {
+                try (ResultSet rs = metaData.getColumns(null, null, table, name)) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean hasDurationSeconds() { return hasDurationSeconds; }
+
+    // Column list for INSERT, e.g. "duration_seconds, duration"
+    String durationColumns() {
+        if (hasDurationSeconds && hasLegacyDuration) {
+            return DURATION_SECONDS + ", " + LEGACY_DURATION;
+        }
+        return hasDurationSeconds ? DURATION_SECONDS : LEGACY_DURATION;
+    }
+
+    // Placeholders matching durationColumns()
+    String durationPlaceholders() {
+        return hasDurationSeconds && hasLegacyDuration ? "?, ?" : "?";
+    }
+
+    // SET clause for UPDATE, e.g. "duration_seconds = ?, duration = ?"
+    String durationAssignments() {
+        if (hasDurationSeconds && hasLegacyDuration) {
+            return DURATION_SECONDS + " = ?, " + LEGACY_DURATION + " = ?";
+        }
+        return (hasDurationSeconds ? DURATION_SECONDS : LEGACY_DURATION) + " = ?";
+    }
+
+    /**
+     * Binds a duration to the placeholders produced by durationPlaceholders()
+     * @param stmt Statement to bind
+     * @param index Index of the first duration placeholder
+     * @param seconds Duration in seconds
+     * @return Index of the next placeholder
+     * @throws SQLException if database error occurs
+     */
+    int bindDuration(PreparedStatement stmt, int index, int seconds) throws SQLException {
+        if (hasDurationSeconds) {
+            stmt.setInt(index++, seconds);
+        }
+        if (hasLegacyDuration) {
+            stmt.setString(index++, DurationConverter.formatMinutes(seconds));
+        }
+        return index;
+    }
+
+    /**
+     * Reads the duration of the current row
+     * @param rs Result set positioned on a songs row
+     * @return Duration in seconds
+     * @throws SQLException if database error occurs
+     */
+    int readDuration(ResultSet rs) throws SQLException {
+        if (hasDurationSeconds) {
+            int seconds = rs.getInt(DURATION_SECONDS);
+            if (!rs.wasNull() || !hasLegacyDuration) {
+                return seconds;
+            }
+        }
+
+        // Legacy "MM:SS" text, only for rows the migration has not backfilled
+        int seconds = DurationConverter.parseSeconds(rs.getString(LEGACY_DURATION));
+        return Math.max(seconds, 0);
+    }
+}
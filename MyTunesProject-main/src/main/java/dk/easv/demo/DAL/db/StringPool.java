@@ -0,0 +1,21 @@
+package dk.easv.demo.DAL.db;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canonicalizes repeated column values while one result set is mapped, so
+ * all songs of an artist share one String instead of each row holding its
+ * own copy. Create one per load and let it go afterwards; not thread-safe.
+ */
+final class StringPool {
+    private final Map<String, String> values = new HashMap<>();
+
+    String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = values.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
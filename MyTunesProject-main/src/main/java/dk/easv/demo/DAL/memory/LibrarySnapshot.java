@@ -0,0 +1,221 @@
+package dk.easv.demo.DAL.memory;
+
+import dk.easv.demo.BE.Song;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a MemoryStore.
+ *
+ * Layout, big-endian:
+ *   int magic, int version, int next song id, int next playlist id
+ *   int n, n strings            artists and categories, referenced by index
+ *   int n, n songs              in title order: int id, string title,
+ *                               int artist ref, int category ref,
+ *                               int duration, string file path,
+ *                               byte has file state [long size, long modified, long hash]
+ *   int n, n playlists          int id, string name, int count, count song ids
+ *   int end marker
+ * A string is an int byte length (-1 for null) followed by UTF-8 bytes;
+ * a ref is an index into the string table, -1 for null.
+ *
+ * The file is read onto the heap in one piece and written to a temporary
+ * file that then replaces the old snapshot, so a crash while writing leaves
+ * the previous snapshot intact.
+ */
+final class LibrarySnapshot {
+
+    private static final int MAGIC = 0x4D54534E; // "MTSN"
+    private static final int VERSION = 1;
+    private static final int END_MARKER = 0x454E4421; // "END!"
+
+    private LibrarySnapshot() {
+    }
+
+    /**
+     * Loads a snapshot into an empty store
+     * @param file Snapshot file
+     * @param store Store to fill
+     * @throws IOException if the file cannot be read or is not a complete snapshot
+     */
+    static void read(Path file, MemoryStore store) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // Read onto the heap rather than mapped: Windows cannot replace a file while a mapping is open,
+            // and checkpoint() moves the next snapshot over this one
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            byte[] scratch = new byte[256];
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a library snapshot: " + file);
+            }
+            int nextSongId = buffer.getInt();
+            int nextPlaylistId = buffer.getInt();
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer, scratch);
+            }
+
+            int[] order = new int[buffer.getInt()];
+            for (int i = 0; i < order.length; i++) {
+                int id = buffer.getInt();
+                String title = readString(buffer, scratch);
+                String artist = ref(strings, buffer.getInt());
+                String category = ref(strings, buffer.getInt());
+                int duration = buffer.getInt();
+                String filePath = readString(buffer, scratch);
+                store.applyPutSong(new Song(id, title, artist, category, duration, filePath));
+                if (buffer.get() != 0) {
+                    store.applyPutSongFile(id, buffer.getLong(), buffer.getLong(), buffer.getLong());
+                }
+                order[i] = id;
+            }
+
+            int playlistCount = buffer.getInt();
+            for (int i = 0; i < playlistCount; i++) {
+                int id = buffer.getInt();
+                String name = readString(buffer, scratch);
+                int[] songIds = new int[buffer.getInt()];
+                buffer.asIntBuffer().get(songIds);
+                buffer.position(buffer.position() + songIds.length * Integer.BYTES);
+                store.applyPutPlaylist(new StoredPlaylist(id, name, songIds));
+            }
+
+            if (buffer.getInt() != END_MARKER) {
+                throw new IOException("Library snapshot is incomplete: " + file);
+            }
+            store.restoreNextIds(nextSongId, nextPlaylistId);
+            store.restoreTitleOrder(order);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Library snapshot is truncated: " + file, e);
+        }
+    }
+
+    /**
+     * Writes the store to a temporary file, forces it to disk and moves it
+     * over the snapshot. Call with the store locked.
+     * @param store Store to save
+     * @param file Snapshot file
+     * @param tempFile Temporary file next to it
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(MemoryStore store, Path file, Path tempFile) throws IOException {
+        int[] order = store.titleOrder();
+
+        // Artists and categories repeat a lot, so they go into a shared table
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (int id : order) {
+            Song song = store.song(id);
+            addRef(refs, strings, song.getArtist());
+            addRef(refs, strings, song.getCategory());
+        }
+        List<StoredPlaylist> playlists = store.playlists();
+
+        try (FileOutputStream fileOut = new FileOutputStream(tempFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(store.newSongId());
+            out.writeInt(store.newPlaylistId());
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                writeString(out, string);
+            }
+
+            out.writeInt(order.length);
+            for (int id : order) {
+                Song song = store.song(id);
+                out.writeInt(id);
+                writeString(out, song.getTitle());
+                out.writeInt(song.getArtist() == null ? -1 : refs.get(song.getArtist()));
+                out.writeInt(song.getCategory() == null ? -1 : refs.get(song.getCategory()));
+                out.writeInt(song.getDuration());
+                writeString(out, song.getFilePath());
+                if (store.hasSongFile(id)) {
+                    out.writeByte(1);
+                    out.writeLong(store.fileSize(id));
+                    out.writeLong(store.fileModified(id));
+                    out.writeLong(store.fileHash(id));
+                } else {
+                    out.writeByte(0);
+                }
+            }
+
+            out.writeInt(playlists.size());
+            for (StoredPlaylist playlist : playlists) {
+                out.writeInt(playlist.id);
+                writeString(out, playlist.name);
+                out.writeInt(playlist.songIds.length);
+                for (int songId : playlist.songIds) {
+                    out.writeInt(songId);
+                }
+            }
+
+            out.writeInt(END_MARKER);
+            out.flush();
+            fileOut.getChannel().force(true);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void addRef(Map<String, Integer> refs, List<String> strings, String value) {
+        if (value != null && !refs.containsKey(value)) {
+            refs.put(value, strings.size());
+            strings.add(value);
+        }
+    }
+
+    private static String ref(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by writeString
+     * @param buffer Buffer positioned on the string
+     * @param scratch Reusable buffer for the bytes of short strings
+     * @return The string, or null
+     */
+    static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
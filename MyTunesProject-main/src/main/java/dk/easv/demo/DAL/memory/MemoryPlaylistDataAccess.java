@@ -0,0 +1,291 @@
+package dk.easv.demo.DAL.memory;
+
+import dk.easv.demo.BE.Playlist;
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.IPlaylistDataAccess;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Playlist operations on a MemoryStore, with the same results as
+ * PlaylistDAO_DB. A playlist's order is a plain array of song ids, so moves
+ * and reorders just build the new array; there are no position keys.
+ */
+public class MemoryPlaylistDataAccess implements IPlaylistDataAccess {
+
+    // ORDER BY name on a case-insensitive collation
+    private static final Comparator<StoredPlaylist> NAME_ORDER =
+            Comparator.comparing((StoredPlaylist playlist) -> playlist.name, String.CASE_INSENSITIVE_ORDER)
+                    .thenComparingInt(playlist -> playlist.id);
+
+    private final MemoryStore store;
+
+    public MemoryPlaylistDataAccess(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Playlist> getAllPlaylists() {
+        return store.read(() -> {
+            List<Playlist> playlists = new ArrayList<>();
+            for (StoredPlaylist stored : sortedPlaylists()) {
+                playlists.add(new Playlist(stored.id, stored.name));
+            }
+            return playlists;
+        });
+    }
+
+    @Override
+    public List<Playlist> getAllPlaylistsWithSongs(Collection<Song> allSongs) {
+        Map<Integer, Song> songsById = new HashMap<>(allSongs.size() * 2);
+        for (Song song : allSongs) {
+            songsById.put(song.getId(), song);
+        }
+
+        return store.read(() -> {
+            List<Playlist> playlists = new ArrayList<>();
+            for (StoredPlaylist stored : sortedPlaylists()) {
+                List<Song> songs = new ArrayList<>(stored.songIds.length);
+                for (int songId : stored.songIds) {
+                    Song song = songsById.get(songId);
+                    if (song != null) {
+                        songs.add(song);
+                    }
+                }
+                Playlist playlist = new Playlist(stored.id, stored.name);
+                playlist.setSongs(songs);
+                playlists.add(playlist);
+            }
+            return playlists;
+        });
+    }
+
+    @Override
+    public List<Playlist> getAllPlaylistsWithTotals() {
+        return store.read(() -> {
+            List<Playlist> playlists = new ArrayList<>();
+            for (StoredPlaylist stored : sortedPlaylists()) {
+                int totalSeconds = 0;
+                List<Integer> songIds = new ArrayList<>(stored.songIds.length);
+                for (int songId : stored.songIds) {
+                    totalSeconds += store.song(songId).getDuration();
+                    songIds.add(songId);
+                }
+                Playlist playlist = new Playlist(stored.id, stored.name);
+                playlist.setSongCount(songIds.size());
+                playlist.setTotalTime(totalSeconds);
+                playlist.setSongIds(songIds);
+                playlists.add(playlist);
+            }
+            return playlists;
+        });
+    }
+
+    @Override
+    public Playlist createPlaylist(String name) throws SQLException {
+        return store.change(() -> {
+            StoredPlaylist playlist = new StoredPlaylist(store.newPlaylistId(), name, new int[0]);
+            store.putPlaylist(playlist);
+            return new Playlist(playlist.id, name);
+        });
+    }
+
+    @Override
+    public void updatePlaylist(Playlist playlist) throws SQLException {
+        store.change(() -> {
+            StoredPlaylist stored = store.playlist(playlist.getId());
+            if (stored != null) {
+                store.putPlaylist(stored.withName(playlist.getName()));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deletePlaylist(Playlist playlist) throws SQLException {
+        store.change(() -> {
+            store.deletePlaylist(playlist.getId());
+            return null;
+        });
+    }
+
+    @Override
+    public void addSongToPlaylist(int playlistId, int songId, int position) throws SQLException {
+        addSongsToPlaylist(playlistId, List.of(songId), position);
+    }
+
+    @Override
+    public void addSongsToPlaylist(int playlistId, List<Integer> songIds, int atPosition) throws SQLException {
+        if (songIds.isEmpty()) {
+            return;
+        }
+        store.change(() -> {
+            StoredPlaylist stored = existingPlaylist(playlistId);
+            Set<Integer> added = new HashSet<>();
+            for (int songId : songIds) {
+                if (store.song(songId) == null) {
+                    throw new SQLException("Song " + songId + " does not exist");
+                }
+                if (stored.indexOf(songId) >= 0 || !added.add(songId)) {
+                    throw new SQLException("Song " + songId + " is already in playlist " + playlistId);
+                }
+            }
+
+            int[] current = stored.songIds;
+            int at = Math.max(0, Math.min(atPosition, current.length));
+            int[] order = new int[current.length + songIds.size()];
+            System.arraycopy(current, 0, order, 0, at);
+            for (int i = 0; i < songIds.size(); i++) {
+                order[at + i] = songIds.get(i);
+            }
+            System.arraycopy(current, at, order, at + songIds.size(), current.length - at);
+            store.putPlaylist(stored.withSongs(order));
+            return null;
+        });
+    }
+
+    // Kept songs need no special care: the whole order is stored either way
+    @Override
+    public void replacePlaylistSongs(int playlistId, List<Integer> songIds, Set<Integer> keptSongIds) throws SQLException {
+        store.change(() -> {
+            StoredPlaylist stored = existingPlaylist(playlistId);
+            Set<Integer> seen = new HashSet<>();
+            for (int songId : songIds) {
+                if (store.song(songId) == null) {
+                    throw new SQLException("Song " + songId + " does not exist");
+                }
+                if (!seen.add(songId)) {
+                    throw new SQLException("Song " + songId + " is listed twice for playlist " + playlistId);
+                }
+            }
+            store.putPlaylist(stored.withSongs(toArray(songIds)));
+            return null;
+        });
+    }
+
+    @Override
+    public void removeSongFromPlaylist(int playlistId, int songId) throws SQLException {
+        store.change(() -> {
+            StoredPlaylist stored = store.playlist(playlistId);
+            if (stored != null && stored.indexOf(songId) >= 0) {
+                store.putPlaylist(stored.without(songId));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<Song> getSongsInPlaylist(int playlistId) {
+        return store.read(() -> {
+            StoredPlaylist stored = store.playlist(playlistId);
+            if (stored == null) {
+                return new ArrayList<>();
+            }
+            List<Song> songs = new ArrayList<>(stored.songIds.length);
+            for (int songId : stored.songIds) {
+                songs.add(MemorySongDataAccess.copy(store.song(songId)));
+            }
+            return songs;
+        });
+    }
+
+    @Override
+    public void moveSongUp(int playlistId, int songId) throws SQLException {
+        moveSongByOffset(playlistId, songId, -1);
+    }
+
+    @Override
+    public void moveSongDown(int playlistId, int songId) throws SQLException {
+        moveSongByOffset(playlistId, songId, 1);
+    }
+
+    @Override
+    public void moveSongByOffset(int playlistId, int songId, int offset) throws SQLException {
+        store.change(() -> {
+            StoredPlaylist stored = store.playlist(playlistId);
+            int index = stored != null ? stored.indexOf(songId) : -1;
+            if (index >= 0) {
+                move(stored, index, index + offset);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void moveSongToIndex(int playlistId, int songId, int targetIndex) throws SQLException {
+        store.change(() -> {
+            StoredPlaylist stored = store.playlist(playlistId);
+            int index = stored != null ? stored.indexOf(songId) : -1;
+            if (index >= 0) {
+                move(stored, index, targetIndex);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void reorderPlaylist(int playlistId, List<Integer> orderedSongIds) throws SQLException {
+        store.change(() -> {
+            StoredPlaylist stored = existingPlaylist(playlistId);
+            int[] order = toArray(orderedSongIds);
+            int[] sortedNew = order.clone();
+            int[] sortedCurrent = stored.songIds.clone();
+            Arrays.sort(sortedNew);
+            Arrays.sort(sortedCurrent);
+            if (!Arrays.equals(sortedNew, sortedCurrent)) {
+                throw new IllegalArgumentException("Song order does not match the songs of playlist " + playlistId);
+            }
+            store.putPlaylist(stored.withSongs(order));
+            return null;
+        });
+    }
+
+    // Call under the write lock
+    private void move(StoredPlaylist stored, int from, int to) throws java.io.IOException {
+        int[] order = stored.songIds.clone();
+        int target = Math.max(0, Math.min(to, order.length - 1));
+        if (target == from) {
+            return;
+        }
+        int songId = order[from];
+        if (target < from) {
+            System.arraycopy(order, target, order, target + 1, from - target);
+        } else {
+            System.arraycopy(order, from + 1, order, from, target - from);
+        }
+        order[target] = songId;
+        store.putPlaylist(stored.withSongs(order));
+    }
+
+    // Call under a lock
+    private List<StoredPlaylist> sortedPlaylists() {
+        List<StoredPlaylist> playlists = store.playlists();
+        playlists.sort(NAME_ORDER);
+        return playlists;
+    }
+
+    private StoredPlaylist existingPlaylist(int playlistId) throws SQLException {
+        StoredPlaylist stored = store.playlist(playlistId);
+        if (stored == null) {
+            throw new SQLException("Playlist " + playlistId + " does not exist");
+        }
+        return stored;
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] array = new int[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+}
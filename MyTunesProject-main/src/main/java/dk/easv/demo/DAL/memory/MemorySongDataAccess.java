@@ -0,0 +1,255 @@
+package dk.easv.demo.DAL.memory;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.DAL.ISongDataAccess;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Song operations on a MemoryStore, with the same results and ordering as
+ * SongDAO_DB. Returned songs are copies, so callers can change them freely.
+ */
+public class MemorySongDataAccess implements ISongDataAccess {
+
+    private final MemoryStore store;
+
+    public MemorySongDataAccess(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Song> getAllSongs() {
+        return store.read(() -> {
+            int[] order = store.titleOrder();
+            List<Song> songs = new ArrayList<>(order.length);
+            for (int id : order) {
+                songs.add(copy(store.song(id)));
+            }
+            return songs;
+        });
+    }
+
+    @Override
+    public void getAllSongsInChunks(int chunkSize, Consumer<List<Song>> chunkConsumer) {
+        TitleOrderCursor cursor = new TitleOrderCursor(chunkSize);
+        while (cursor.hasNext()) {
+            List<Song> chunk = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && cursor.hasNext()) {
+                chunk.add(cursor.next());
+            }
+            chunkConsumer.accept(chunk);
+        }
+    }
+
+    /**
+     * Streams the library in title order. The order is fixed when the stream
+     * starts; songs deleted while it runs are skipped and updates show up.
+     * @param fetchSize Songs copied per read lock
+     * @return Songs in title order
+     */
+    @Override
+    public Stream<Song> streamAllSongs(int fetchSize) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new TitleOrderCursor(fetchSize),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public int countSongs() {
+        return store.read(store::songCount);
+    }
+
+    @Override
+    public List<Song> getSongsPage(String afterTitle, int afterId, int pageSize) {
+        return store.read(() -> {
+            int[] order = store.titleOrder();
+            int from = afterTitle == null ? 0 : store.indexAfter(order, afterTitle, afterId);
+            return copyRange(order, from, pageSize);
+        });
+    }
+
+    @Override
+    public List<Song> getSongsPageAt(int offset, int pageSize) {
+        return store.read(() -> copyRange(store.titleOrder(), Math.max(offset, 0), pageSize));
+    }
+
+    // Case is ignored, like the database's default collation does
+    @Override
+    public List<Song> getSongsByCategory(String category) {
+        return store.read(() -> {
+            List<Song> songs = new ArrayList<>();
+            for (int id : store.titleOrder()) {
+                Song song = store.song(id);
+                if (category.equalsIgnoreCase(song.getCategory())) {
+                    songs.add(copy(song));
+                }
+            }
+            return songs;
+        });
+    }
+
+    @Override
+    public List<String> getAllCategories() {
+        return store.read(() -> {
+            TreeSet<String> categories = new TreeSet<>();
+            for (int id : store.titleOrder()) {
+                String category = store.song(id).getCategory();
+                if (category != null && !category.trim().isEmpty()) {
+                    categories.add(category);
+                }
+            }
+            return new ArrayList<>(categories);
+        });
+    }
+
+    @Override
+    public Song createSong(String title, String artist, String category, int duration, String filePath) throws SQLException {
+        return store.change(() -> {
+            Song song = new Song(store.newSongId(), title, artist, category, duration, filePath);
+            store.putSong(song);
+            return copy(song);
+        });
+    }
+
+    @Override
+    public List<Song> createSongs(List<Song> songs) throws SQLException {
+        return store.change(() -> {
+            List<Song> created = new ArrayList<>(songs.size());
+            for (Song song : songs) {
+                Song stored = new Song(store.newSongId(), song.getTitle(), song.getArtist(), song.getCategory(),
+                        song.getDuration(), song.getFilePath());
+                store.putSong(stored);
+                created.add(copy(stored));
+            }
+            return created;
+        });
+    }
+
+    @Override
+    public Set<String> getAllFilePaths() {
+        return store.read(() -> {
+            Set<String> paths = new HashSet<>(store.songCount() * 2);
+            for (int id : store.titleOrder()) {
+                String path = store.song(id).getFilePath();
+                if (path != null) {
+                    paths.add(path);
+                }
+            }
+            return paths;
+        });
+    }
+
+    @Override
+    public void updateSong(Song song) throws SQLException {
+        updateSongs(List.of(song));
+    }
+
+    // Like an UPDATE, songs that no longer exist are ignored
+    @Override
+    public void updateSongs(List<Song> songs) throws SQLException {
+        store.change(() -> {
+            for (Song song : songs) {
+                if (store.song(song.getId()) != null) {
+                    store.putSong(copy(song));
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteSong(Song song) throws SQLException {
+        deleteSongs(List.of(song));
+    }
+
+    @Override
+    public void deleteSongs(List<Song> songs) throws SQLException {
+        store.change(() -> {
+            for (Song song : songs) {
+                store.deleteSong(song.getId());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Song getSongById(int id) {
+        return store.read(() -> {
+            Song song = store.song(id);
+            return song != null ? copy(song) : null;
+        });
+    }
+
+    // Call under the read lock
+    private List<Song> copyRange(int[] order, int from, int count) {
+        int to = (int) Math.min(order.length, (long) from + count);
+        List<Song> songs = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            songs.add(copy(store.song(order[i])));
+        }
+        return songs;
+    }
+
+    static Song copy(Song song) {
+        return new Song(song.getId(), song.getTitle(), song.getArtist(), song.getCategory(),
+                song.getDuration(), song.getFilePath());
+    }
+
+    /**
+     * Walks the title order as it was when created, copying a batch of songs
+     * per read lock so a long walk does not hold writers up
+     */
+    private final class TitleOrderCursor implements Iterator<Song> {
+        private final int[] order;
+        private final int batchSize;
+        private final List<Song> batch = new ArrayList<>();
+        private int position = 0;
+        private int batchIndex = 0;
+
+        private TitleOrderCursor(int batchSize) {
+            this.order = store.read(store::titleOrder);
+            this.batchSize = Math.max(1, batchSize);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (batchIndex == batch.size()) {
+                if (position >= order.length) {
+                    return false;
+                }
+                batch.clear();
+                batchIndex = 0;
+                store.read(() -> {
+                    int end = Math.min(order.length, position + batchSize);
+                    for (; position < end; position++) {
+                        Song song = store.song(order[position]);
+                        if (song != null) {
+                            batch.add(copy(song));
+                        }
+                    }
+                    return null;
+                });
+            }
+            return true;
+        }
+
+        @Override
+        public Song next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(batchIndex++);
+        }
+    }
+}
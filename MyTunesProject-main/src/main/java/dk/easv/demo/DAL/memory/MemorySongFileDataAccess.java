@@ -0,0 +1,59 @@
+package dk.easv.demo.DAL.memory;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.BE.SongFile;
+import dk.easv.demo.DAL.ISongFileDataAccess;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * File manifest for incremental scans, kept in a MemoryStore next to the songs
+ */
+public class MemorySongFileDataAccess implements ISongFileDataAccess {
+
+    private final MemoryStore store;
+
+    public MemorySongFileDataAccess(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<SongFile> getAllSongFiles() {
+        return store.read(() -> {
+            List<SongFile> files = new ArrayList<>(store.songCount());
+            for (int id : store.titleOrder()) {
+                Song song = store.song(id);
+                if (song.getFilePath() == null) {
+                    continue;
+                }
+                files.add(store.hasSongFile(id)
+                        ? new SongFile(id, song.getFilePath(), store.fileSize(id), store.fileModified(id), store.fileHash(id))
+                        : new SongFile(id, song.getFilePath()));
+            }
+            return files;
+        });
+    }
+
+    @Override
+    public void saveSongFiles(List<SongFile> songFiles) throws SQLException {
+        store.change(() -> {
+            for (SongFile file : songFiles) {
+                store.putSongFile(file.getSongId(), file.getFileSize(), file.getModifiedMillis(), file.getContentHash());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteSongFiles(Collection<Integer> songIds) throws SQLException {
+        store.change(() -> {
+            for (int songId : songIds) {
+                store.deleteSongFile(songId);
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,413 @@
+package dk.easv.demo.DAL.memory;
+
+import dk.easv.demo.BE.Song;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * The whole library held in memory, for the in-memory backend.
+ * Songs and playlists sit in arrays indexed by their id (ids are handed out
+ * in sequence, so the arrays stay dense), a playlist's order is an int array
+ * of song ids, and the file state used by the incremental scanner is kept in
+ * long arrays next to the songs.
+ *
+ * On open the state is read from a binary snapshot, then the journal of changes made since that snapshot is replayed.
+ * Every change is appended to the journal before the call returns, so it
+ * survives the application being killed; checkpoint() writes a fresh
+ * snapshot and empties the journal. That happens on open when the journal
+ * is not empty, when it grows past MAX_JOURNAL_BYTES, and on close.
+ *
+ * Stored Song instances are never handed out or changed: the DAOs return
+ * copies and replace the stored song on update. Reads run under the read
+ * lock and changes under the write lock, through read() and change().
+ */
+public final class MemoryStore implements AutoCloseable {
+
+    static final String SNAPSHOT_FILE = "library.snapshot";
+    static final String JOURNAL_FILE = "library.journal";
+
+    // Journal size that triggers a checkpoint after a change
+    private static final long MAX_JOURNAL_BYTES = 64L << 20;
+
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private MutationJournal journal;
+
+    // Set when a journal write failed; memory may then be ahead of disk, so changes are refused
+    private IOException journalFailure;
+
+    // song id -> song, null where deleted or never used
+    private Song[] songs = new Song[1024];
+    private int songCount = 0;
+    private int nextSongId = 1;
+
+    // song id -> file state recorded by the last scan; a negative size means none
+    private long[] fileSizes = newFileSizes(1024);
+    private long[] fileModified = new long[1024];
+    private long[] fileHashes = new long[1024];
+
+    // playlist id -> playlist, null where deleted or never used
+    private StoredPlaylist[] playlists = new StoredPlaylist[64];
+    private int nextPlaylistId = 1;
+
+    // Song ids in Song.TITLE_ORDER; null after a change until the next read needs it
+    private volatile int[] titleOrder = new int[0];
+
+    private MemoryStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Loads the library from the snapshot and journal in a folder, creating
+     * the folder for a new library
+     * @param directory Folder holding library.snapshot and library.journal
+     * @return The open store
+     * @throws IOException if the files cannot be read or written
+     */
+    public static MemoryStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MemoryStore store = new MemoryStore(directory);
+
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            LibrarySnapshot.read(snapshot, store);
+        }
+
+        store.journal = MutationJournal.open(directory.resolve(JOURNAL_FILE));
+        int replayed = store.journal.replay(store);
+        if (replayed > 0) {
+            // Start the next session from the snapshot alone
+            store.checkpoint();
+        }
+        return store;
+    }
+
+    /**
+     * Writes a snapshot of the current state and empties the journal.
+     * Replaying a journal onto a snapshot that already holds its changes gives
+     * the same state, so a crash between the two steps loses nothing.
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void checkpoint() throws IOException {
+        lock.writeLock().lock();
+        try {
+            journal.flush();
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            LibrarySnapshot.write(this, snapshot, directory.resolve(SNAPSHOT_FILE + ".tmp"));
+            journal.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Checkpoints and closes the journal
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (journalFailure == null) {
+                checkpoint();
+            }
+            journal.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===== Locking =====
+
+    <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Work that changes the store through the journaling methods below
+    interface Change<T> {
+        T apply() throws SQLException, IOException;
+    }
+
+    /**
+     * Runs a change under the write lock and writes its journal records
+     * before returning. Work should check its input before changing anything;
+     * what it did change before failing is still journaled.
+     * @param change Work using the journaling methods
+     * @return Result of the work
+     * @throws SQLException if the work fails or the journal cannot be written
+     */
+    <T> T change(Change<T> change) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (journalFailure != null) {
+                throw new SQLException("In-memory library is read-only after a journal write failed", journalFailure);
+            }
+
+            T result;
+            try {
+                try {
+                    result = change.apply();
+                } finally {
+                    journal.flush();
+                }
+            } catch (IOException e) {
+                journalFailure = e;
+                throw new SQLException("Failed to write the library journal", e);
+            }
+
+            if (journal.size() > MAX_JOURNAL_BYTES) {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    // The journal still holds every change, so only startup gets slower
+                    System.err.println("Library checkpoint failed: " + e.getMessage());
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            throw new SQLException("Failed to read the library journal size", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===== Songs =====
+
+    Song song(int id) {
+        return id > 0 && id < songs.length ? songs[id] : null;
+    }
+
+    int songCount() {
+        return songCount;
+    }
+
+    int newSongId() {
+        return nextSongId;
+    }
+
+    void putSong(Song song) throws IOException {
+        journal.putSong(song);
+        applyPutSong(song);
+    }
+
+    // Deletes the song, its file state and its playlist entries, like the cascading foreign keys
+    void deleteSong(int id) throws IOException {
+        if (song(id) != null) {
+            journal.deleteSong(id);
+            applyDeleteSong(id);
+        }
+    }
+
+    /**
+     * Song ids in Song.TITLE_ORDER, sorted again on the first read after a change.
+     * Call under the read lock; the returned array is never modified.
+     * @return Ordered song ids
+     */
+    int[] titleOrder() {
+        int[] order = titleOrder;
+        if (order == null) {
+            Song[] sorted = new Song[songCount];
+            int n = 0;
+            for (Song song : songs) {
+                if (song != null) {
+                    sorted[n++] = song;
+                }
+            }
+            Arrays.sort(sorted, Song.TITLE_ORDER);
+            order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = sorted[i].getId();
+            }
+            titleOrder = order;
+        }
+        return order;
+    }
+
+    // Position in an ordered id array of the first song after (title, id)
+    int indexAfter(int[] order, String title, int id) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTitle(title, id, songs[order[mid]]) >= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // ===== Song files =====
+
+    boolean hasSongFile(int songId) {
+        return song(songId) != null && fileSizes[songId] >= 0;
+    }
+
+    long fileSize(int songId) { return fileSizes[songId]; }
+    long fileModified(int songId) { return fileModified[songId]; }
+    long fileHash(int songId) { return fileHashes[songId]; }
+
+    void putSongFile(int songId, long size, long modified, long hash) throws IOException {
+        if (song(songId) != null) {
+            journal.putSongFile(songId, size, modified, hash);
+            applyPutSongFile(songId, size, modified, hash);
+        }
+    }
+
+    void deleteSongFile(int songId) throws IOException {
+        if (hasSongFile(songId)) {
+            journal.deleteSongFile(songId);
+            applyDeleteSongFile(songId);
+        }
+    }
+
+    // ===== Playlists =====
+
+    StoredPlaylist playlist(int id) {
+        return id > 0 && id < playlists.length ? playlists[id] : null;
+    }
+
+    // All playlists in id order
+    List<StoredPlaylist> playlists() {
+        List<StoredPlaylist> all = new ArrayList<>();
+        for (StoredPlaylist playlist : playlists) {
+            if (playlist != null) {
+                all.add(playlist);
+            }
+        }
+        return all;
+    }
+
+    int newPlaylistId() {
+        return nextPlaylistId;
+    }
+
+    void putPlaylist(StoredPlaylist playlist) throws IOException {
+        journal.putPlaylist(playlist);
+        applyPutPlaylist(playlist);
+    }
+
+    void deletePlaylist(int id) throws IOException {
+        if (playlist(id) != null) {
+            journal.deletePlaylist(id);
+            applyDeletePlaylist(id);
+        }
+    }
+
+    // ===== Applying changes, also used by snapshot loading and journal replay =====
+
+    void applyPutSong(Song song) {
+        int id = song.getId();
+        ensureSongCapacity(id);
+        if (songs[id] == null) {
+            songCount++;
+        }
+        songs[id] = song;
+        nextSongId = Math.max(nextSongId, id + 1);
+        titleOrder = null;
+    }
+
+    void applyDeleteSong(int id) {
+        if (song(id) == null) {
+            return;
+        }
+        songs[id] = null;
+        songCount--;
+        fileSizes[id] = -1;
+        titleOrder = null;
+
+        for (int i = 0; i < playlists.length; i++) {
+            if (playlists[i] != null) {
+                playlists[i] = playlists[i].without(id);
+            }
+        }
+    }
+
+    void applyPutSongFile(int songId, long size, long modified, long hash) {
+        ensureSongCapacity(songId);
+        fileSizes[songId] = size;
+        fileModified[songId] = modified;
+        fileHashes[songId] = hash;
+    }
+
+    void applyDeleteSongFile(int songId) {
+        if (songId < fileSizes.length) {
+            fileSizes[songId] = -1;
+        }
+    }
+
+    void applyPutPlaylist(StoredPlaylist playlist) {
+        if (playlist.id >= playlists.length) {
+            playlists = Arrays.copyOf(playlists, Math.max(playlist.id + 1, playlists.length * 2));
+        }
+        playlists[playlist.id] = playlist;
+        nextPlaylistId = Math.max(nextPlaylistId, playlist.id + 1);
+    }
+
+    void applyDeletePlaylist(int id) {
+        if (id < playlists.length) {
+            playlists[id] = null;
+        }
+    }
+
+    // Counters as stored in the snapshot, so deleted ids are not handed out again
+    void restoreNextIds(int songId, int playlistId) {
+        nextSongId = Math.max(nextSongId, songId);
+        nextPlaylistId = Math.max(nextPlaylistId, playlistId);
+    }
+
+    // Snapshot songs are stored in title order, so loading can skip the sort;
+    // an order saved with an older tie-break is left to be sorted again
+    void restoreTitleOrder(int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            if (Song.TITLE_ORDER.compare(songs[order[i - 1]], songs[order[i]]) > 0) {
+                titleOrder = null;
+                return;
+            }
+        }
+        titleOrder = order;
+    }
+
+    // ===== Internals =====
+
+    private void ensureSongCapacity(int id) {
+        if (id < songs.length) {
+            return;
+        }
+        int capacity = Math.max(id + 1, songs.length * 2);
+        songs = Arrays.copyOf(songs, capacity);
+        int oldLength = fileSizes.length;
+        fileSizes = Arrays.copyOf(fileSizes, capacity);
+        Arrays.fill(fileSizes, oldLength, capacity, -1);
+        fileModified = Arrays.copyOf(fileModified, capacity);
+        fileHashes = Arrays.copyOf(fileHashes, capacity);
+    }
+
+    private static long[] newFileSizes(int capacity) {
+        long[] sizes = new long[capacity];
+        Arrays.fill(sizes, -1);
+        return sizes;
+    }
+
+    static String titleOf(Song song) {
+        return song.getTitle() != null ? song.getTitle() : "";
+    }
+
+    // Compares (title, id) with a song in Song.TITLE_ORDER
+    static int compareTitle(String title, int id, Song song) {
+        String other = titleOf(song);
+        int result = String.CASE_INSENSITIVE_ORDER.compare(title, other);
+        return result != 0 ? result : Integer.compare(id, song.getId());
+    }
+}
@@ -0,0 +1,241 @@
+package dk.easv.demo.DAL.memory;
+
+import dk.easv.demo.BE.Song;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to a MemoryStore since its snapshot.
+ * Each record is an int length, an int CRC32 of the body and the body: a
+ * one byte operation followed by the full new state of what it changed, so
+ * replaying a record twice gives the same result. Records of one change are
+ * collected in memory and written together by flush(), which hands them to
+ * the operating system; a crash of the application loses nothing, a power
+ * cut can lose the last changes. A torn or corrupt record at the end, left
+ * by a crash while writing, ends the replay and is cut off.
+ */
+final class MutationJournal implements Closeable {
+
+    private static final byte PUT_SONG = 1;
+    private static final byte DELETE_SONG = 2;
+    private static final byte PUT_PLAYLIST = 3;
+    private static final byte DELETE_PLAYLIST = 4;
+    private static final byte PUT_SONG_FILE = 5;
+    private static final byte DELETE_SONG_FILE = 6;
+
+    private final FileChannel channel;
+
+    // Body of the record being built
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+
+    // Finished records waiting for flush()
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+
+    private final CRC32 crc = new CRC32();
+
+    private MutationJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static MutationJournal open(Path file) throws IOException {
+        return new MutationJournal(FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Applies every complete record to the store and cuts off a torn tail
+     * @param store Store loaded from the snapshot the journal belongs to
+     * @return Number of records applied
+     * @throws IOException if the journal cannot be read
+     */
+    int replay(MemoryStore store) throws IOException {
+        long size = channel.size();
+        int applied = 0;
+        long end = 0;
+
+        if (size > 0) {
+            // Read onto the heap rather than mapped: Windows cannot truncate a file while a mapping is open
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            byte[] scratch = new byte[256];
+            CRC32 check = new CRC32();
+
+            while (buffer.remaining() >= 2 * Integer.BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                check.reset();
+                check.update(record.duplicate());
+                if ((int) check.getValue() != checksum) {
+                    break;
+                }
+
+                try {
+                    apply(record, store, scratch);
+                } catch (BufferUnderflowException e) {
+                    break;
+                }
+                buffer.position(buffer.position() + length);
+                end = buffer.position();
+                applied++;
+            }
+        }
+
+        if (end < size) {
+            System.err.println("Library journal: dropped " + (size - end) + " bytes of an incomplete change");
+            channel.truncate(end);
+        }
+        channel.position(end);
+        return applied;
+    }
+
+    private static void apply(ByteBuffer record, MemoryStore store, byte[] scratch) throws IOException {
+        byte operation = record.get();
+        switch (operation) {
+            case PUT_SONG: {
+                int id = record.getInt();
+                String title = LibrarySnapshot.readString(record, scratch);
+                String artist = LibrarySnapshot.readString(record, scratch);
+                String category = LibrarySnapshot.readString(record, scratch);
+                int duration = record.getInt();
+                String filePath = LibrarySnapshot.readString(record, scratch);
+                store.applyPutSong(new Song(id, title, artist, category, duration, filePath));
+                break;
+            }
+            case DELETE_SONG:
+                store.applyDeleteSong(record.getInt());
+                break;
+            case PUT_PLAYLIST: {
+                int id = record.getInt();
+                String name = LibrarySnapshot.readString(record, scratch);
+                int[] songIds = new int[record.getInt()];
+                for (int i = 0; i < songIds.length; i++) {
+                    songIds[i] = record.getInt();
+                }
+                store.applyPutPlaylist(new StoredPlaylist(id, name, songIds));
+                break;
+            }
+            case DELETE_PLAYLIST:
+                store.applyDeletePlaylist(record.getInt());
+                break;
+            case PUT_SONG_FILE:
+                store.applyPutSongFile(record.getInt(), record.getLong(), record.getLong(), record.getLong());
+                break;
+            case DELETE_SONG_FILE:
+                store.applyDeleteSongFile(record.getInt());
+                break;
+            default:
+                throw new IOException("Unknown operation " + operation + " in library journal");
+        }
+    }
+
+    void putSong(Song song) throws IOException {
+        bodyOut.writeByte(PUT_SONG);
+        bodyOut.writeInt(song.getId());
+        LibrarySnapshot.writeString(bodyOut, song.getTitle());
+        LibrarySnapshot.writeString(bodyOut, song.getArtist());
+        LibrarySnapshot.writeString(bodyOut, song.getCategory());
+        bodyOut.writeInt(song.getDuration());
+        LibrarySnapshot.writeString(bodyOut, song.getFilePath());
+        endRecord();
+    }
+
+    void deleteSong(int id) throws IOException {
+        bodyOut.writeByte(DELETE_SONG);
+        bodyOut.writeInt(id);
+        endRecord();
+    }
+
+    void putPlaylist(StoredPlaylist playlist) throws IOException {
+        bodyOut.writeByte(PUT_PLAYLIST);
+        bodyOut.writeInt(playlist.id);
+        LibrarySnapshot.writeString(bodyOut, playlist.name);
+        bodyOut.writeInt(playlist.songIds.length);
+        for (int songId : playlist.songIds) {
+            bodyOut.writeInt(songId);
+        }
+        endRecord();
+    }
+
+    void deletePlaylist(int id) throws IOException {
+        bodyOut.writeByte(DELETE_PLAYLIST);
+        bodyOut.writeInt(id);
+        endRecord();
+    }
+
+    void putSongFile(int songId, long size, long modified, long hash) throws IOException {
+        bodyOut.writeByte(PUT_SONG_FILE);
+        bodyOut.writeInt(songId);
+        bodyOut.writeLong(size);
+        bodyOut.writeLong(modified);
+        bodyOut.writeLong(hash);
+        endRecord();
+    }
+
+    void deleteSongFile(int songId) throws IOException {
+        bodyOut.writeByte(DELETE_SONG_FILE);
+        bodyOut.writeInt(songId);
+        endRecord();
+    }
+
+    private void endRecord() throws IOException {
+        crc.reset();
+        crc.update(body.toByteArray());
+        pendingOut.writeInt(body.size());
+        pendingOut.writeInt((int) crc.getValue());
+        body.writeTo(pendingOut);
+        body.reset();
+    }
+
+    // Writes the pending records at the end of the file
+    void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        pending.reset();
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    // Empties the journal once its changes are in a snapshot
+    void clear() throws IOException {
+        pending.reset();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.force(true);
+        channel.close();
+    }
+}
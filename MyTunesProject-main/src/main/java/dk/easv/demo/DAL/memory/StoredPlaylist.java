@@ -0,0 +1,53 @@
+package dk.easv.demo.DAL.memory;
+
+/**
+ * A playlist as held by MemoryStore: its name and the ids of its songs in
+ * order. Immutable, so a change stores a new instance and readers never
+ * see a half-done change.
+ */
+final class StoredPlaylist {
+    final int id;
+    final String name;
+    final int[] songIds;
+
+    StoredPlaylist(int id, String name, int[] songIds) {
+        this.id = id;
+        this.name = name;
+        this.songIds = songIds;
+    }
+
+    StoredPlaylist withName(String newName) {
+        return new StoredPlaylist(id, newName, songIds);
+    }
+
+    StoredPlaylist withSongs(int[] newSongIds) {
+        return new StoredPlaylist(id, name, newSongIds);
+    }
+
+    // Index of a song in the playlist, -1 if it is not in it
+    int indexOf(int songId) {
+        for (int i = 0; i < songIds.length; i++) {
+            if (songIds[i] == songId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Copy without the given song, or this playlist if it does not contain it
+    StoredPlaylist without(int songId) {
+        int index = indexOf(songId);
+        if (index < 0) {
+            return this;
+        }
+        int[] remaining = new int[songIds.length - 1];
+        System.arraycopy(songIds, 0, remaining, 0, index);
+        System.arraycopy(songIds, index + 1, remaining, index, remaining.length - index);
+        return withSongs(remaining);
+    }
+
+    @Override
+    public String toString() {
+        return "StoredPlaylist{id=" + id + ", name='" + name + "', songs=" + songIds.length + "}";
+    }
+}
@@ -1,24 +1,48 @@
 package dk.easv.demo.GUI.Controller;
 
+import dk.easv.demo.BE.DurationConverter;
+import dk.easv.demo.BE.LibraryChanges;
 import dk.easv.demo.BE.Playlist;
 import dk.easv.demo.BE.Song;
+import dk.easv.demo.BLL.LibraryReconciler;
 import dk.easv.demo.BLL.MusicManager;
 import dk.easv.demo.BLL.PlaylistManager;
+import dk.easv.demo.BLL.cache.StartupSnapshot;
+import dk.easv.demo.BLL.importer.ImportProgress;
+import dk.easv.demo.BLL.importer.LibraryImporter;
+import dk.easv.demo.DAL.DataAccessFactory;
+import dk.easv.demo.DAL.DeltaSyncService;
+import dk.easv.demo.DAL.db.DatabaseSettings;
+import dk.easv.demo.GUI.Model.PagedSongList;
+import dk.easv.demo.GUI.Model.SongPlaylistIndex;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class MainController implements Initializable {
 
@@ -32,6 +56,7 @@ public class MainController implements Initializable {
     @FXML private Button pauseButton;
     @FXML private Button stopButton;
 
+    @FXML private TextField searchField;
     @FXML private TableView<Song> songsTableView;
     @FXML private TableColumn<Song, String> songTitleColumn;
     @FXML private TableColumn<Song, String> songArtistColumn;
@@ -46,31 +71,70 @@ public class MainController implements Initializable {
     @FXML private ListView<Song> playlistSongsListView;
 
     @FXML private Button closeButton;
+    @FXML private Button importButton;
+    @FXML private ProgressBar loadProgressBar;
+    @FXML private Label statusLabel;
+
+    // Songs are read in chunks of this size while loading the library
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    // The songs table fetches rows in pages of this size and keeps this many pages in memory
+    private static final int SONG_PAGE_SIZE = 200;
+    private static final int MAX_CACHED_SONG_PAGES = 50;
 
     private MusicManager musicManager;
     private PlaylistManager playlistManager;
+    private LibraryReconciler libraryReconciler;
+    private DeltaSyncService deltaSync;
     private MediaPlayer mediaPlayer;
 
-    private ObservableList<Song> allSongs;
+    private PagedSongList librarySongs;
     private ObservableList<Playlist> allPlaylists;
+    private final SongPlaylistIndex playlistIndex = new SongPlaylistIndex();
     private Playlist selectedPlaylist;
 
+    // Library saved by the last run, shown until the database has been read; null when there is none
+    private StartupSnapshot startupSnapshot;
+
+    // Change version the loaded library was read at; -1 without change tracking
+    private long libraryVersion = -1;
+
     private boolean isSeeking = false;
+    private LibraryImporter runningImport;
+
+    // All database work runs here, one task at a time, so the FX thread never waits on JDBC
+    private final ExecutorService dbExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "db-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Song table pages load here, so scrolling does not queue behind a long load or save
+    private final ExecutorService pageExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "song-pages");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         try {
             musicManager = new MusicManager();
             playlistManager = new PlaylistManager();
+            libraryReconciler = new LibraryReconciler();
+            deltaSync = DataAccessFactory.createDeltaSyncService(dbExecutor);
 
-            allSongs = FXCollections.observableArrayList();
+            librarySongs = new PagedSongList(musicManager, SONG_PAGE_SIZE, MAX_CACHED_SONG_PAGES, pageExecutor);
             allPlaylists = FXCollections.observableArrayList();
+            songsTableView.setItems(librarySongs);
+            playlistsTableView.setItems(allPlaylists);
 
             setupMediaControls();
             setupTableColumns();
             setupEventHandlers();
             setupPlaylistSongsDisplay(); // Custom display for playlist songs
 
+            showStartupSnapshot();
             loadDataFromDatabase();
 
             pauseButton.setDisable(true);
@@ -156,6 +220,9 @@ public class MainController implements Initializable {
                     loadPlaylistSongs(newValue);
                 });
 
+        // Filter songs as the user types
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> applySongFilter());
+
         // Double-click on playlist song to play it
         playlistSongsListView.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2) {
@@ -167,41 +234,283 @@ public class MainController implements Initializable {
         });
     }
 
-    // Load all songs and playlists from database
+    // Show songs matching the filter text, or all songs when it is empty
+    private void applySongFilter() {
+        String query = searchField.getText();
+        if (query == null || query.trim().isEmpty() || !musicManager.isSearchIndexBuilt()) {
+            songsTableView.setItems(librarySongs);
+        } else {
+            songsTableView.setItems(FXCollections.observableArrayList(musicManager.searchSongs(query)));
+        }
+    }
+
+    // Show the library saved by the last run at once; without one the songs table pages from the database
+    private void showStartupSnapshot() {
+        // The in-memory backend opens as fast as a snapshot
+        if (!DataAccessFactory.isInMemory()) {
+            startupSnapshot = StartupSnapshot.open(DatabaseSettings.libraryName());
+        }
+        if (startupSnapshot == null) {
+            librarySongs.refresh();
+            return;
+        }
+
+        librarySongs.showSnapshot(startupSnapshot.getSongs());
+        showPlaylists(startupSnapshot.getPlaylists());
+    }
+
+    // Bring the library up to date with the database in the background
     private void loadDataFromDatabase() {
-        try {
-            List<Song> songs = musicManager.getAllSongs();
-            allSongs.setAll(songs);
-            songsTableView.setItems(allSongs);
+        // A snapshot that knows its version only needs what changed since
+        if (startupSnapshot != null && startupSnapshot.getLibraryVersion() >= 0) {
+            revalidateStartupSnapshot();
+        } else {
+            loadWholeLibrary();
+        }
+    }
 
-            List<Playlist> playlists = playlistManager.getAllPlaylists();
+    // Load playlists with their totals, then the library for search, in the background; the songs table pages on its own
+    private void loadWholeLibrary() {
+        // Counts and totals come from one grouped query, so the playlist table shows before any song is read
+        loadInBackground(() -> {
+            // Read before the library, so neither the snapshot nor the delta sync claims changes it does not have
+            libraryVersion = DataAccessFactory.isInMemory() ? -1 : libraryReconciler.getCurrentVersion();
+            return playlistManager.getAllPlaylistsWithTotals();
+        }, this::showPlaylists, "Load Error", "Failed to load playlists");
 
-            for (Playlist playlist : playlists) {
+        Task<Set<Integer>> loadTask = new Task<>() {
+            @Override
+            protected Set<Integer> call() {
+                // Each chunk is indexed, added to the snapshot and dropped, so the library is never held in a list
+                Set<Integer> songIds = new HashSet<>();
+                StartupSnapshot.Writer snapshot = DataAccessFactory.isInMemory() ? null : openStartupSnapshot(libraryVersion);
                 try {
-                    List<Song> playlistSongs = playlistManager.getSongsInPlaylist(playlist);
-                    playlist.setSongs(playlistSongs);
-
-                    int totalSeconds = 0;
-                    for (Song song : playlistSongs) {
-                        totalSeconds += song.getDuration();
+                    updateMessage("Loading songs...");
+                    musicManager.indexAllSongsInChunks(LOAD_CHUNK_SIZE, chunk -> {
+                        for (Song song : chunk) {
+                            songIds.add(song.getId());
+                        }
+                        if (snapshot != null) {
+                            snapshot.addSongs(chunk);
+                        }
+                        updateMessage("Loading songs... " + songIds.size());
+                    });
+
+                    if (snapshot != null) {
+                        updateMessage("Saving library for the next start...");
+                        saveStartupSnapshot(snapshot);
+                    }
+                } finally {
+                    if (snapshot != null) {
+                        snapshot.close();
                     }
-                    playlist.setTotalTime(totalSeconds);
+                }
+                return songIds;
+            }
+        };
+
+        loadProgressBar.progressProperty().bind(loadTask.progressProperty());
+        loadProgressBar.visibleProperty().bind(loadTask.runningProperty());
+        statusLabel.textProperty().bind(loadTask.messageProperty());
+
+        loadTask.setOnSucceeded(event -> {
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Loaded " + loadTask.getValue().size() + " songs and " + allPlaylists.size() + " playlists");
+            // The saved library has served its purpose; page the songs table from the database again
+            if (startupSnapshot != null) {
+                startupSnapshot = null;
+                librarySongs.refresh();
+            }
+            applySongFilter();
+            startDeltaSync(libraryVersion, loadTask.getValue());
+        });
+
+        loadTask.setOnFailed(event -> {
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Loading failed");
+            showError("Load Error", "Failed to load data: " + loadTask.getException().getMessage());
+            loadTask.getException().printStackTrace();
+        });
+
+        dbExecutor.submit(loadTask);
+    }
+
+    // Read only what changed since the snapshot was saved and apply it to the tables shown from it
+    private void revalidateStartupSnapshot() {
+        StartupSnapshot snapshot = startupSnapshot;
+        Task<LibraryReconciler.Result> revalidateTask = new Task<>() {
+            @Override
+            protected LibraryReconciler.Result call() {
+                updateMessage("Checking for changes...");
+                LibraryReconciler.Result result = libraryReconciler.revalidate(snapshot, DatabaseSettings.libraryName());
+
+                updateMessage("Indexing songs...");
+                musicManager.buildSearchIndex(result.getSongs());
+                return result;
+            }
+        };
+
+        loadProgressBar.progressProperty().bind(revalidateTask.progressProperty());
+        loadProgressBar.visibleProperty().bind(revalidateTask.runningProperty());
+        statusLabel.textProperty().bind(revalidateTask.messageProperty());
+
+        revalidateTask.setOnSucceeded(event -> {
+            LibraryReconciler.Result result = revalidateTask.getValue();
+            startupSnapshot = null;
+            librarySongs.updateSnapshot(result.getSongs());
+            applyLibraryChanges(result.getChanges());
+            statusLabel.textProperty().unbind();
+            statusLabel.setText("Loaded " + result.getSongs().size() + " songs and " + allPlaylists.size() + " playlists"
+                    + (result.getChanges().isEmpty() ? ", no changes since last start" : ": " + result.getChanges()));
+            applySongFilter();
+            libraryVersion = result.getChanges().getVersion();
+            startDeltaSync(libraryVersion, result.getSongsById().keySet());
+        });
+
+        // Without a usable change set, fall back to reading everything
+        revalidateTask.setOnFailed(event -> {
+            System.err.println("Failed to check for changes: " + revalidateTask.getException().getMessage());
+            statusLabel.textProperty().unbind();
+            loadWholeLibrary();
+        });
+
+        dbExecutor.submit(revalidateTask);
+    }
+
+    // Apply playlist changes read from the database to the playlists on screen without reloading them
+    private void applyLibraryChanges(LibraryChanges changes) {
+        Map<Integer, Playlist> shown = new HashMap<>();
+        for (Playlist playlist : allPlaylists) {
+            shown.put(playlist.getId(), playlist);
+        }
+        for (Integer playlistId : changes.getDeletedPlaylistIds()) {
+            Playlist playlist = shown.remove(playlistId);
+            if (playlist != null) {
+                allPlaylists.remove(playlist);
+                playlistIndex.removePlaylist(playlist);
+            }
+        }
+        for (Playlist changed : changes.getChangedPlaylists()) {
+            Playlist playlist = shown.get(changed.getId());
+            if (playlist != null) {
+                playlist.setName(changed.getName());
+                playlist.setSongCount(changed.getSongCount());
+                playlist.setTotalTime(changed.getTotalTime());
+            } else {
+                allPlaylists.add(changed);
+                shown.put(changed.getId(), changed);
+            }
+        }
+
+        for (Map.Entry<Integer, List<Integer>> contents : changes.getPlaylistContents().entrySet()) {
+            Playlist playlist = shown.get(contents.getKey());
+            // Our own edits come back too; the loaded songs already match those
+            if (playlist == null || hasSongsInOrder(playlist, contents.getValue())) {
+                continue;
+            }
+            playlistIndex.removePlaylist(playlist);
+            playlist.setSongIds(contents.getValue());
+            playlistIndex.addPlaylist(playlist);
+            if (playlist == selectedPlaylist) {
+                loadPlaylistSongs(playlist);
+            }
+        }
+        playlistsTableView.refresh();
+    }
+
+    // True if the loaded songs of a playlist are exactly the given song ids, in order
+    private boolean hasSongsInOrder(Playlist playlist, List<Integer> songIds) {
+        List<Song> songs = playlist.getSongs();
+        // No songs loaded but ids known: only the ids say what the playlist holds
+        if (songs.isEmpty() && !playlist.getSongIds().isEmpty()) {
+            return false;
+        }
+        if (songs.size() != songIds.size()) {
+            return false;
+        }
+        for (int i = 0; i < songs.size(); i++) {
+            if (songs.get(i).getId() != songIds.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Poll for changes other clients make to the database, starting from the library just loaded
+    private void startDeltaSync(long version, Collection<Integer> songIds) {
+        if (deltaSync == null || version < 0) {
+            return;
+        }
+        Map<Integer, Integer> playlistSizes = new HashMap<>();
+        for (Playlist playlist : allPlaylists) {
+            playlistSizes.put(playlist.getId(), playlist.getSongIds().size());
+        }
+        deltaSync.start(version, songIds, playlistSizes, changes -> {
+            // On the worker: caches and search index first, then the tables in one go
+            musicManager.applyRemoteChanges(changes);
+            playlistManager.applyRemoteChanges(changes);
+            Platform.runLater(() -> applyRemoteChanges(changes));
+        });
+    }
 
-                } catch (Exception e) {
-                    System.out.println("Error loading songs for playlist " + playlist.getName());
+    // Show a batch of changes made by other clients
+    private void applyRemoteChanges(LibraryChanges changes) {
+        libraryVersion = changes.getVersion();
+        if (changes.hasSongChanges()) {
+            // The database already has the changes, so only the visible rows are read again
+            librarySongs.refresh();
+            if (songsTableView.getItems() != librarySongs) {
+                applySongFilter();
+            }
+            if (selectedPlaylist != null && !changes.getPlaylistContents().containsKey(selectedPlaylist.getId())) {
+                for (Song song : changes.getChangedSongs()) {
+                    if (selectedPlaylist.containsSong(song.getId())) {
+                        loadPlaylistSongs(selectedPlaylist);
+                        break;
+                    }
                 }
             }
+        }
+        applyLibraryChanges(changes);
+        if (!statusLabel.textProperty().isBound()) {
+            statusLabel.setText("Synced changes from the database: " + changes);
+        }
+    }
 
-            allPlaylists.setAll(playlists);
-            playlistsTableView.setItems(allPlaylists);
+    // Replace the playlist table, keeping the selected playlist selected
+    private void showPlaylists(List<Playlist> playlists) {
+        int selectedId = selectedPlaylist != null ? selectedPlaylist.getId() : -1;
+        allPlaylists.setAll(playlists);
+        playlistIndex.rebuild(playlists);
 
-            if (!playlists.isEmpty()) {
-                playlistsTableView.getSelectionModel().selectFirst();
+        for (Playlist playlist : playlists) {
+            if (playlist.getId() == selectedId) {
+                playlistsTableView.getSelectionModel().select(playlist);
+                return;
             }
+        }
+        if (!playlists.isEmpty()) {
+            playlistsTableView.getSelectionModel().selectFirst();
+        }
+    }
 
-        } catch (Exception e) {
-            showError("Load Error", "Failed to load data: " + e.getMessage());
-            e.printStackTrace();
+    // Start the snapshot the loading library streams into, or null if it cannot be written
+    private StartupSnapshot.Writer openStartupSnapshot(long version) {
+        try {
+            return StartupSnapshot.writer(DatabaseSettings.libraryName(), version);
+        } catch (IOException e) {
+            System.err.println("Failed to save startup snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Finish the snapshot with the playlists as they are now; runs on the worker thread and only logs a failure
+    private void saveStartupSnapshot(StartupSnapshot.Writer snapshot) {
+        try {
+            List<Playlist> playlists = playlistManager.getAllPlaylists();
+            snapshot.finish(playlists, libraryReconciler.getPlaylistSongIds(playlists));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to save startup snapshot: " + e.getMessage());
         }
     }
 
@@ -211,13 +520,45 @@ public class MainController implements Initializable {
             playlistSongsListView.getItems().clear();
             return;
         }
-
-        try {
-            List<Song> songs = playlistManager.getSongsInPlaylist(playlist);
-            playlistSongsListView.getItems().setAll(songs);
-        } catch (Exception e) {
-            showError("Load Error", "Failed to load playlist songs: " + e.getMessage());
+        // Until the database has been read, the saved contents show at once
+        if (startupSnapshot != null) {
+            playlistSongsListView.getItems().setAll(startupSnapshot.getSongsInPlaylist(playlist.getId()));
         }
+
+        loadInBackground(() -> playlistManager.getSongsInPlaylist(playlist),
+                songs -> {
+                    // Keep the songs on the playlist so removing one updates its totals
+                    playlistIndex.removePlaylist(playlist);
+                    playlist.setSongs(songs);
+                    playlistIndex.addPlaylist(playlist);
+                    // Only show them if the playlist is still selected
+                    if (playlist == selectedPlaylist) {
+                        playlistSongsListView.getItems().setAll(songs);
+                    }
+                    playlistsTableView.refresh();
+                },
+                "Load Error", "Failed to load playlist songs");
+    }
+
+    // Run a database read on the worker thread and hand the result to the FX thread
+    private <T> void loadInBackground(Callable<T> work, Consumer<T> onLoaded, String errorTitle, String errorText) {
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(event -> onLoaded.accept(task.getValue()));
+        task.setOnFailed(event -> showError(errorTitle, errorText + ": " + task.getException().getMessage()));
+        dbExecutor.submit(task);
+    }
+
+    // Run a database write on the worker thread, then update the UI on the FX thread
+    private void saveInBackground(Runnable work, Runnable onSaved, String errorText) {
+        loadInBackground(() -> {
+            work.run();
+            return null;
+        }, result -> onSaved.run(), "Error", errorText);
     }
 
     // Play the selected song
@@ -313,10 +654,7 @@ public class MainController implements Initializable {
         }
 
         int totalSeconds = (int) Math.floor(duration.toSeconds());
-        int minutes = totalSeconds / 60;
-        int seconds = totalSeconds % 60;
-
-        return String.format("%d:%02d", minutes, seconds);
+        return DurationConverter.formatMinutes(totalSeconds);
     }
 
     // Play button action
@@ -370,14 +708,13 @@ public class MainController implements Initializable {
 
         dialog.showAndWait().ifPresent(name -> {
             if (!name.trim().isEmpty()) {
-                try {
-                    Playlist newPlaylist = playlistManager.createPlaylist(name.trim());
-                    allPlaylists.add(newPlaylist);
-                    playlistsTableView.getSelectionModel().select(newPlaylist);
-                    showInfo("Success", "Created playlist: " + name);
-                } catch (Exception e) {
-                    showError("Error", "Failed to create playlist: " + e.getMessage());
-                }
+                loadInBackground(() -> playlistManager.createPlaylist(name.trim()),
+                        newPlaylist -> {
+                            allPlaylists.add(newPlaylist);
+                            playlistsTableView.getSelectionModel().select(newPlaylist);
+                            showInfo("Success", "Created playlist: " + name);
+                        },
+                        "Error", "Failed to create playlist");
             }
         });
     }
@@ -398,14 +735,13 @@ public class MainController implements Initializable {
 
         dialog.showAndWait().ifPresent(newName -> {
             if (!newName.trim().isEmpty() && !newName.equals(selectedPlaylist.getName())) {
-                try {
-                    selectedPlaylist.setName(newName.trim());
-                    playlistManager.updatePlaylist(selectedPlaylist);
+                // Save a renamed copy so the list keeps the old name if the update fails
+                Playlist renamed = new Playlist(selectedPlaylist.getId(), newName.trim());
+                saveInBackground(() -> playlistManager.updatePlaylist(renamed), () -> {
+                    selectedPlaylist.setName(renamed.getName());
                     playlistsTableView.refresh();
                     showInfo("Success", "Playlist updated to: " + newName);
-                } catch (Exception e) {
-                    showError("Error", "Failed to update playlist: " + e.getMessage());
-                }
+                }, "Failed to update playlist");
             }
         });
     }
@@ -426,9 +762,9 @@ public class MainController implements Initializable {
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                try {
-                    playlistManager.deletePlaylist(selectedPlaylist);
+                saveInBackground(() -> playlistManager.deletePlaylist(selectedPlaylist), () -> {
                     allPlaylists.remove(selectedPlaylist);
+                    playlistIndex.removePlaylist(selectedPlaylist);
 
                     if (this.selectedPlaylist != null && this.selectedPlaylist.getId() == selectedPlaylist.getId()) {
                         this.selectedPlaylist = null;
@@ -436,10 +772,7 @@ public class MainController implements Initializable {
                     }
 
                     showInfo("Success", "Playlist deleted.");
-
-                } catch (Exception e) {
-                    showError("Error", "Failed to delete playlist: " + e.getMessage());
-                }
+                }, "Failed to delete playlist");
             }
         });
     }
@@ -477,24 +810,21 @@ public class MainController implements Initializable {
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                try {
-                    musicManager.deleteSong(selectedSong);
-                    allSongs.remove(selectedSong);
+                saveInBackground(() -> musicManager.deleteSong(selectedSong), () -> {
+                    librarySongs.refresh();
+                    if (songsTableView.getItems() != librarySongs) {
+                        songsTableView.getItems().remove(selectedSong);
+                    }
                     playlistSongsListView.getItems().remove(selectedSong);
 
-                    // Remove from all playlists and update their totals
-                    for (Playlist playlist : allPlaylists) {
-                        playlist.getSongs().remove(selectedSong);
-                        playlist.setSongCount(playlist.getSongs().size());
-                        playlist.calculateTotalTime();
+                    // Only the playlists containing the song are touched
+                    for (Playlist playlist : playlistIndex.removeSong(selectedSong.getId())) {
+                        playlist.removeAllOccurrences(selectedSong);
                     }
                     playlistsTableView.refresh();
 
                     showInfo("Success", "Song deleted.");
-
-                } catch (Exception e) {
-                    showError("Error", "Failed to delete song: " + e.getMessage());
-                }
+                }, "Failed to delete song");
             }
         });
     }
@@ -515,24 +845,22 @@ public class MainController implements Initializable {
             return;
         }
 
-        try {
-            playlistManager.addSongToPlaylist(selectedPlaylist, selectedSong);
-            loadPlaylistSongs(selectedPlaylist);
-
-            // Update playlist total time
-            List<Song> playlistSongs = playlistManager.getSongsInPlaylist(selectedPlaylist);
-            int totalSeconds = 0;
-            for (Song song : playlistSongs) {
-                totalSeconds += song.getDuration();
-            }
-            selectedPlaylist.setTotalTime(totalSeconds);
-            playlistsTableView.refresh();
-
-            showInfo("Success", "Added song to playlist");
+        loadInBackground(() -> {
+                    playlistManager.addSongToPlaylist(selectedPlaylist, selectedSong);
+                    return playlistManager.getSongsInPlaylist(selectedPlaylist);
+                },
+                playlistSongs -> {
+                    // Update song count and total time
+                    selectedPlaylist.setSongs(playlistSongs);
+                    playlistIndex.songAdded(selectedPlaylist, selectedSong.getId());
+                    if (selectedPlaylist == this.selectedPlaylist) {
+                        playlistSongsListView.getItems().setAll(playlistSongs);
+                    }
+                    playlistsTableView.refresh();
 
-        } catch (Exception e) {
-            showError("Database Error", "Failed to add song to playlist: " + e.getMessage());
-        }
+                    showInfo("Success", "Added song to playlist");
+                },
+                "Database Error", "Failed to add song to playlist");
     }
 
     // Move selected song up in playlist
@@ -544,19 +872,13 @@ public class MainController implements Initializable {
             return;
         }
 
-        try {
-            playlistManager.moveSongUp(selectedPlaylist, selectedSong);
-            loadPlaylistSongs(selectedPlaylist);
-
-            // Keep selection on the moved song
-            int currentIndex = playlistSongsListView.getItems().indexOf(selectedSong);
-            if (currentIndex > 0) {
-                playlistSongsListView.getSelectionModel().select(currentIndex - 1);
-            }
-
-        } catch (Exception e) {
-            showError("Error", "Failed to move song up: " + e.getMessage());
-        }
+        Playlist playlist = selectedPlaylist;
+        loadInBackground(() -> {
+                    playlistManager.moveSongUp(playlist, selectedSong);
+                    return playlistManager.getSongsInPlaylist(playlist);
+                },
+                songs -> showReorderedSongs(playlist, songs, selectedSong),
+                "Error", "Failed to move song up");
     }
 
     // Move selected song down in playlist
@@ -568,18 +890,21 @@ public class MainController implements Initializable {
             return;
         }
 
-        try {
-            playlistManager.moveSongDown(selectedPlaylist, selectedSong);
-            loadPlaylistSongs(selectedPlaylist);
-
-            // Keep selection on the moved song
-            int currentIndex = playlistSongsListView.getItems().indexOf(selectedSong);
-            if (currentIndex < playlistSongsListView.getItems().size() - 1) {
-                playlistSongsListView.getSelectionModel().select(currentIndex + 1);
-            }
+        Playlist playlist = selectedPlaylist;
+        loadInBackground(() -> {
+                    playlistManager.moveSongDown(playlist, selectedSong);
+                    return playlistManager.getSongsInPlaylist(playlist);
+                },
+                songs -> showReorderedSongs(playlist, songs, selectedSong),
+                "Error", "Failed to move song down");
+    }
 
-        } catch (Exception e) {
-            showError("Error", "Failed to move song down: " + e.getMessage());
+    // Show new playlist order and keep selection on the moved song
+    private void showReorderedSongs(Playlist playlist, List<Song> songs, Song movedSong) {
+        playlist.setSongs(songs);
+        if (playlist == selectedPlaylist) {
+            playlistSongsListView.getItems().setAll(songs);
+            playlistSongsListView.getSelectionModel().select(movedSong);
         }
     }
 
@@ -592,22 +917,76 @@ public class MainController implements Initializable {
             return;
         }
 
-        try {
-            playlistManager.removeSongFromPlaylist(selectedPlaylist, selectedSong);
-            playlistSongsListView.getItems().remove(selectedSong);
-            selectedPlaylist.removeSong(selectedSong);
+        Playlist playlist = selectedPlaylist;
+        saveInBackground(() -> playlistManager.removeSongFromPlaylist(playlist, selectedSong), () -> {
+            if (playlist == selectedPlaylist) {
+                playlistSongsListView.getItems().remove(selectedSong);
+            }
+            playlist.removeSong(selectedSong);
+            playlistIndex.songRemoved(playlist, selectedSong.getId());
             playlistsTableView.refresh();
             showInfo("Success", "Song removed from playlist.");
-
-        } catch (Exception e) {
-            showError("Error", "Failed to remove song from playlist: " + e.getMessage());
-        }
+        }, "Failed to remove song from playlist");
     }
 
-    // Import songs (placeholder)
+    // Import all audio files below a chosen folder in the background
     @FXML
     private void importSongs() {
-        showInfo("Import Songs", "Import feature would open file browser to select songs.");
+        // A second click while importing cancels the import
+        if (runningImport != null) {
+            runningImport.cancel();
+            importButton.setText("Cancelling...");
+            importButton.setDisable(true);
+            return;
+        }
+
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Choose Music Folder");
+        File folder = chooser.showDialog(importButton.getScene().getWindow());
+        if (folder == null) {
+            return;
+        }
+
+        LibraryImporter importer = new LibraryImporter(musicManager);
+        Task<ImportProgress> importTask = new Task<>() {
+            @Override
+            protected ImportProgress call() {
+                return importer.importFrom(List.of(folder.toPath()), progress -> {
+                    updateMessage("Importing: " + progress);
+                    updateProgress(progress.getFraction(), 1);
+                }, songs -> { }); // the song table is refreshed once when the import is done
+            }
+        };
+
+        loadProgressBar.progressProperty().bind(importTask.progressProperty());
+        loadProgressBar.visibleProperty().bind(importTask.runningProperty());
+        statusLabel.textProperty().bind(importTask.messageProperty());
+
+        importTask.setOnSucceeded(event -> {
+            ImportProgress result = importTask.getValue();
+            finishImport((result.isCancelled() ? "Import cancelled: " : "Import finished: ") + result);
+            librarySongs.refresh();
+            applySongFilter();
+        });
+        importTask.setOnFailed(event -> {
+            finishImport("Import failed");
+            showError("Import Error", "Failed to import songs: " + importTask.getException().getMessage());
+        });
+
+        runningImport = importer;
+        importButton.setText("Cancel Import");
+
+        Thread thread = new Thread(importTask, "library-import-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void finishImport(String message) {
+        runningImport = null;
+        importButton.setText("Import...");
+        importButton.setDisable(false);
+        statusLabel.textProperty().unbind();
+        statusLabel.setText(message);
     }
 
     // Close application
@@ -667,5 +1046,14 @@ public class MainController implements Initializable {
                 System.out.println("Error shutting down media player");
             }
         }
+        if (runningImport != null) {
+            runningImport.cancel();
+        }
+        if (deltaSync != null) {
+            deltaSync.stop();
+        }
+        dbExecutor.shutdownNow();
+        pageExecutor.shutdownNow();
+        DataAccessFactory.shutdown();
     }
 }
\ No newline at end of file
@@ -4,7 +4,8 @@ import dk.easv.demo.BLL.MusicManager;
 import dk.easv.demo.BE.Song;
 import dk.easv.demo.BE.Playlist;
 import dk.easv.demo.DAL.db.SongDAO_DB;
-import dk.easv.demo.DAL.db.PlaylistDAO_DB;
+import dk.easv.demo.DAL.DataAccessFactory;
+import dk.easv.demo.DAL.IPlaylistDataAccess;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -42,7 +43,7 @@ public class MainViewController {
 
     // Managers
     private MusicManager musicManager;
-    private PlaylistDAO_DB playlistDAO;
+    private IPlaylistDataAccess playlistDAO;
 
     /**
      * Initialize the controller
@@ -52,7 +53,7 @@ public class MainViewController {
         try {
             // Create managers
             musicManager = new MusicManager();
-            playlistDAO = new PlaylistDAO_DB();
+            playlistDAO = DataAccessFactory.createPlaylistDataAccess();
 
             // Set up table columns
             setupTableColumns();
@@ -110,19 +111,8 @@ public class MainViewController {
      */
     private void loadPlaylists() {
         try {
-            List<Playlist> playlists = playlistDAO.getAllPlaylists();
-
-            // Calculate song count and total time for each playlist
-            for (Playlist playlist : playlists) {
-                List<Song> playlistSongs = playlistDAO.getSongsInPlaylist(playlist.getId());
-                playlist.setSongCount(playlistSongs.size());
-
-                int totalSeconds = 0;
-                for (Song song : playlistSongs) {
-                    totalSeconds += song.getDuration();
-                }
-                playlist.setTotalTime(totalSeconds);
-            }
+            // Bulk load playlists with song count and total time, sharing the loaded songs
+            List<Playlist> playlists = playlistDAO.getAllPlaylistsWithSongs(songsTable.getItems());
 
             ObservableList<Playlist> observablePlaylists = FXCollections.observableArrayList(playlists);
             playlistsTable.setItems(observablePlaylists);
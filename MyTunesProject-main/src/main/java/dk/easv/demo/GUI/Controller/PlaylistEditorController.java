@@ -141,9 +141,7 @@ public class PlaylistEditorController implements Initializable {
                 // Create new playlist
                 Playlist newPlaylist = playlistManager.createPlaylist(playlistName);
                 if (newPlaylist != null) {
-                    for (Song song : playlistSongs) {
-                        playlistManager.addSongToPlaylist(newPlaylist, song);
-                    }
+                    playlistManager.addSongsToPlaylist(newPlaylist, playlistSongs);
                 }
                 showInfoDialog("Success", "Playlist '" + playlistName + "' created successfully");
             }
@@ -156,25 +154,10 @@ public class PlaylistEditorController implements Initializable {
         }
     }
 
-    // Update playlist songs in database
+    // Update playlist songs in database, applying only the differences in one transaction
     private void updatePlaylistSongs() {
         try {
-            List<Song> currentSongsInPlaylist = playlistManager.getSongsInPlaylist(currentPlaylist);
-
-            // Remove songs that were deleted
-            for (Song song : currentSongsInPlaylist) {
-                if (!playlistSongs.contains(song)) {
-                    playlistManager.removeSongFromPlaylist(currentPlaylist, song);
-                }
-            }
-
-            // Add songs that were added
-            for (Song song : playlistSongs) {
-                if (!currentSongsInPlaylist.contains(song)) {
-                    playlistManager.addSongToPlaylist(currentPlaylist, song);
-                }
-            }
-
+            playlistManager.savePlaylistSongs(currentPlaylist, playlistSongs);
         } catch (Exception e) {
             showErrorDialog("Error updating playlist songs: " + e.getMessage());
             e.printStackTrace();
@@ -1,6 +1,7 @@
     package dk.easv.demo.GUI.Controller;
 
     // Business entities
+    import dk.easv.demo.BE.DurationConverter;
     import dk.easv.demo.BE.Song;
 
     // Business logic
@@ -137,39 +138,18 @@
                 return 0;
             }
 
-            try {
-                String[] parts = duration.split(":");
-                if (parts.length == 2) {
-                    // MM:SS format
-                    int minutes = Integer.parseInt(parts[0]);
-                    int seconds = Integer.parseInt(parts[1]);
-                    return minutes * 60 + seconds;
-                } else if (parts.length == 3) {
-                    // HH:MM:SS format
-                    int hours = Integer.parseInt(parts[0]);
-                    int minutes = Integer.parseInt(parts[1]);
-                    int seconds = Integer.parseInt(parts[2]);
-                    return hours * 3600 + minutes * 60 + seconds;
-                } else if (parts.length == 1) {
-                    // Just seconds
-                    return Integer.parseInt(parts[0]);
-                }
-            } catch (NumberFormatException e) {
+            // Accepts SS, MM:SS and HH:MM:SS
+            int seconds = DurationConverter.parseSeconds(duration);
+            if (seconds < 0) {
                 showErrorDialog("Invalid duration format. Please use MM:SS or HH:MM:SS");
+                return 0;
             }
-            return 0;
+            return seconds;
         }
 
         // Format seconds to display format
         private String formatDurationForDisplay(int seconds) {
-            if (seconds <= 0) {
-                return "0:00";
-            }
-
-            int minutes = seconds / 60;
-            int remainingSeconds = seconds % 60;
-
-            return String.format("%d:%02d", minutes, remainingSeconds);
+            return DurationConverter.formatMinutes(seconds);
         }
 
         // Show error dialog
@@ -0,0 +1,285 @@
+package dk.easv.demo.GUI.Model;
+
+import dk.easv.demo.BE.Song;
+import dk.easv.demo.BLL.MusicManager;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Read-only view of the whole library in (title, id) order that loads songs
+ * page by page as a TableView asks for rows, so the table can show a huge
+ * library without holding it in memory.
+ *
+ * Rows whose page is not loaded yet are null, which the table draws as an
+ * empty row; the page is fetched on the given executor and the rows are
+ * replaced with a change event when it arrives. Pages are fetched with a
+ * keyset query after the last song of the previous page when that song is
+ * known, and by offset otherwise. Only the most recently used pages are
+ * kept; an evicted page reads as null again and is fetched on the next
+ * access. Call refresh() after songs are added or deleted.
+ *
+ * At startup the list can show a saved copy of the library instead, see
+ * showSnapshot(); the first refresh() goes back to the database.
+ *
+ * Like every ObservableList bound to a control, use it on the FX thread only.
+ * contains() and indexOf() only look at loaded pages.
+ */
+public class PagedSongList extends ObservableListBase<Song> {
+
+    private final MusicManager musicManager;
+    private final int pageSize;
+    private final int maxPages;
+    private final Executor executor;
+
+    private int size = 0;
+
+    // page index -> songs, least recently used first
+    private final LinkedHashMap<Integer, List<Song>> pages;
+
+    // page index -> last song of the page before it, kept after the page itself is evicted
+    private final Map<Integer, Song> pageStarts = new HashMap<>();
+
+    private final Set<Integer> loading = new HashSet<>();
+
+    // Saved library shown until the next refresh(), null when paging from the database
+    private List<Song> snapshotRows;
+
+    // Bumped by refresh() so pages requested before it are dropped
+    private int generation = 0;
+
+    // Most recently requested page; queued requests far away from it are skipped
+    private volatile int latestPage = 0;
+
+    public PagedSongList(MusicManager musicManager, int pageSize, int maxPages, Executor executor) {
+        this.musicManager = musicManager;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.executor = executor;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Song>> eldest) {
+                return size() > PagedSongList.this.maxPages;
+            }
+        };
+    }
+
+    @Override
+    public Song get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        if (snapshotRows != null) {
+            return snapshotRows.get(index);
+        }
+        int page = index / pageSize;
+        List<Song> songs = pages.get(page);
+        if (songs == null) {
+            requestPage(page);
+            return null;
+        }
+        int offset = index % pageSize;
+        return offset < songs.size() ? songs.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        for (Map.Entry<Integer, List<Song>> entry : pages.entrySet()) {
+            int offset = entry.getValue().indexOf(o);
+            if (offset >= 0) {
+                return entry.getKey() * pageSize + offset;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    // Number of pages currently held in memory
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Drops all loaded pages and reloads the song count; visible rows are
+     * fetched again as the table asks for them
+     */
+    public void refresh() {
+        generation++;
+        snapshotRows = null;
+        pages.clear();
+        pageStarts.clear();
+        loading.clear();
+
+        int requestGeneration = generation;
+        submit(() -> {
+            try {
+                int count = musicManager.countSongs();
+                Platform.runLater(() -> sizeLoaded(requestGeneration, count));
+            } catch (RuntimeException e) {
+                System.err.println("Failed to count songs: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Shows saved rows, e.g. from a StartupSnapshot, without asking the
+     * database; pages requested before are dropped
+     * @param rows Songs in (title, id) order
+     */
+    public void showSnapshot(List<Song> rows) {
+        generation++;
+        pages.clear();
+        pageStarts.clear();
+        loading.clear();
+        snapshotRows = rows;
+        sizeLoaded(generation, rows.size());
+    }
+
+    /**
+     * Replaces the saved rows with an updated copy, e.g. from
+     * LibraryReconciler.applyToSongs(). Only the rows between the first and
+     * the last difference are reported as changed, so the table keeps its
+     * scroll position and selection elsewhere.
+     * @param rows Songs in (title, id) order; unchanged rows must be the same objects
+     */
+    public void updateSnapshot(List<Song> rows) {
+        if (snapshotRows == null) {
+            // Paging from the database, which already has the changes
+            return;
+        }
+        List<Song> oldRows = snapshotRows;
+        int common = Math.min(oldRows.size(), rows.size());
+        int prefix = 0;
+        while (prefix < common && oldRows.get(prefix) == rows.get(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < common - prefix
+                && oldRows.get(oldRows.size() - 1 - suffix) == rows.get(rows.size() - 1 - suffix)) {
+            suffix++;
+        }
+
+        snapshotRows = rows;
+        size = rows.size();
+        int oldEnd = oldRows.size() - suffix;
+        int newEnd = rows.size() - suffix;
+        if (oldEnd == prefix && newEnd == prefix) {
+            return;
+        }
+        beginChange();
+        if (oldEnd > prefix) {
+            nextRemove(prefix, new ArrayList<>(oldRows.subList(prefix, oldEnd)));
+        }
+        if (newEnd > prefix) {
+            nextAdd(prefix, newEnd);
+        }
+        endChange();
+    }
+
+    public boolean isShowingSnapshot() {
+        return snapshotRows != null;
+    }
+
+    private void sizeLoaded(int requestGeneration, int count) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        int oldSize = size;
+        size = count;
+
+        beginChange();
+        if (oldSize > 0) {
+            nextRemove(0, Collections.nCopies(oldSize, (Song) null));
+        }
+        if (count > 0) {
+            nextAdd(0, count);
+        }
+        endChange();
+    }
+
+    private void requestPage(int page) {
+        latestPage = page;
+        if (!loading.add(page)) {
+            return;
+        }
+
+        Song after = pageStarts.get(page);
+        boolean keyed = page == 0 || after != null;
+        int requestGeneration = generation;
+        submit(() -> {
+            // The user scrolled on while this request was queued
+            if (Math.abs(page - latestPage) > maxPages / 2) {
+                Platform.runLater(() -> {
+                    if (requestGeneration == generation) {
+                        loading.remove(page);
+                    }
+                });
+                return;
+            }
+
+            try {
+                List<Song> songs = keyed
+                        ? musicManager.getSongsPage(after, pageSize)
+                        : musicManager.getSongsPageAt(page * pageSize, pageSize);
+                Platform.runLater(() -> pageLoaded(requestGeneration, page, songs));
+            } catch (RuntimeException e) {
+                // The page stays in loading, so it is not retried on every layout pass until refresh()
+                System.err.println("Failed to load song page " + page + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void pageLoaded(int requestGeneration, int page, List<Song> songs) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        loading.remove(page);
+        pages.put(page, songs);
+        if (!songs.isEmpty()) {
+            pageStarts.put(page + 1, songs.get(songs.size() - 1));
+        }
+
+        int from = page * pageSize;
+        int to = Math.min(size, from + songs.size());
+        if (from >= to) {
+            return;
+        }
+        beginChange();
+        for (int i = from; i < to; i++) {
+            nextSet(i, null);
+        }
+        endChange();
+    }
+
+    private void submit(Runnable work) {
+        try {
+            executor.execute(work);
+        } catch (RejectedExecutionException e) {
+            // Executor shut down, the application is closing
+        }
+    }
+}
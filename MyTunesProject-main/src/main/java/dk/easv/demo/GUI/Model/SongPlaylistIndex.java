@@ -0,0 +1,71 @@
+package dk.easv.demo.GUI.Model;
+
+import dk.easv.demo.BE.Playlist;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse index from song id to the playlists that contain the song, built
+ * from the song ids each Playlist knows about. Lets the controller update
+ * only the affected playlists when a song is deleted instead of visiting
+ * every playlist. Like the playlists it indexes, use it on the FX thread only.
+ */
+public class SongPlaylistIndex {
+
+    private final Map<Integer, Set<Playlist>> playlistsBySong = new HashMap<>();
+
+    // Replace the index with the given playlists
+    public void rebuild(Collection<Playlist> playlists) {
+        playlistsBySong.clear();
+        for (Playlist playlist : playlists) {
+            addPlaylist(playlist);
+        }
+    }
+
+    // Index every song of a playlist, e.g. after its songs were reloaded
+    public void addPlaylist(Playlist playlist) {
+        for (Integer songId : playlist.getSongIds()) {
+            playlistsBySong.computeIfAbsent(songId, id -> new HashSet<>()).add(playlist);
+        }
+    }
+
+    // Forget a deleted playlist, or its old songs before they are replaced
+    public void removePlaylist(Playlist playlist) {
+        for (Integer songId : playlist.getSongIds()) {
+            Set<Playlist> playlists = playlistsBySong.get(songId);
+            if (playlists != null && playlists.remove(playlist) && playlists.isEmpty()) {
+                playlistsBySong.remove(songId);
+            }
+        }
+    }
+
+    // Record that a song was added to a playlist
+    public void songAdded(Playlist playlist, int songId) {
+        playlistsBySong.computeIfAbsent(songId, id -> new HashSet<>()).add(playlist);
+    }
+
+    // Record that a song was removed from a playlist; kept while other occurrences remain
+    public void songRemoved(Playlist playlist, int songId) {
+        if (playlist.containsSong(songId)) {
+            return;
+        }
+        Set<Playlist> playlists = playlistsBySong.get(songId);
+        if (playlists != null && playlists.remove(playlist) && playlists.isEmpty()) {
+            playlistsBySong.remove(songId);
+        }
+    }
+
+    /**
+     * Drops a song deleted from the library
+     * @param songId Id of the deleted song
+     * @return Playlists that contained the song, empty if none
+     */
+    public Set<Playlist> removeSong(int songId) {
+        Set<Playlist> playlists = playlistsBySong.remove(songId);
+        return playlists != null ? playlists : Set.of();
+    }
+}
@@ -0,0 +1,53 @@
+package dk.easv.demo;
+
+import dk.easv.demo.BLL.MusicManager;
+import dk.easv.demo.BLL.importer.IncrementalScanner;
+import dk.easv.demo.BLL.importer.LibraryWatcher;
+import dk.easv.demo.BLL.importer.RescanResult;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line entry point for the nightly library rescan.
+ * Usage: LibraryRescan [--watch] folder...
+ * Without --watch the folders are rescanned once. With --watch the process
+ * keeps running after that and applies changes as they happen.
+ */
+public class LibraryRescan {
+
+    public static void main(String[] args) throws Exception {
+        boolean watch = false;
+        List<Path> roots = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--watch")) {
+                watch = true;
+            } else {
+                roots.add(Paths.get(arg));
+            }
+        }
+        if (roots.isEmpty()) {
+            System.err.println("Usage: LibraryRescan [--watch] folder...");
+            System.exit(2);
+        }
+
+        IncrementalScanner scanner = new IncrementalScanner(new MusicManager());
+        RescanResult result = scanner.rescan(roots);
+        System.out.println("Rescan: " + result);
+        if (!watch) {
+            return;
+        }
+
+        LibraryWatcher watcher = new LibraryWatcher(scanner, changes -> {
+            if (changes.hasChanges() || changes.getFailed() > 0) {
+                System.out.println("Live rescan: " + changes);
+            }
+        });
+        watcher.start(roots);
+        Runtime.getRuntime().addShutdownHook(new Thread(watcher::close));
+        System.out.println("Watching " + roots + " for changes, press Ctrl+C to stop");
+        Thread.currentThread().join();
+    }
+}
@@ -6,6 +6,7 @@ module dk.easv.demo {
     requires java.naming;
     requires jdk.crypto.ec;
     requires com.microsoft.sqlserver.jdbc;
+    requires com.h2database;
 
     opens dk.easv.demo to javafx.fxml;
     opens dk.easv.demo.GUI.Controller to javafx.fxml;
@@ -0,0 +1,37 @@
+-- Migration 01: store song duration as whole seconds
+-- Adds songs.duration_seconds (INT) next to the legacy "MM:SS" text column
+-- and backfills it. The legacy column is kept during the transition: the
+-- application reads duration_seconds first and falls back to the text column
+-- for rows that are still NULL, and writes both columns while both exist.
+-- Safe to run more than once.
+
+IF COL_LENGTH('dbo.songs', 'duration_seconds') IS NULL
+    ALTER TABLE dbo.songs ADD duration_seconds INT NULL;
+GO
+
+-- Backfill in batches to keep locks and the transaction log small
+DECLARE @batchSize INT = 10000;
+
+WHILE 1 = 1
+BEGIN
+    UPDATE TOP (@batchSize) s
+    SET duration_seconds = ISNULL(
+            CASE LEN(t.value) - LEN(REPLACE(t.value, ':', ''))
+                WHEN 0 THEN TRY_CAST(t.value AS INT)
+                WHEN 1 THEN TRY_CAST(PARSENAME(REPLACE(t.value, ':', '.'), 2) AS INT) * 60
+                          + TRY_CAST(PARSENAME(REPLACE(t.value, ':', '.'), 1) AS INT)
+                WHEN 2 THEN TRY_CAST(PARSENAME(REPLACE(t.value, ':', '.'), 3) AS INT) * 3600
+                          + TRY_CAST(PARSENAME(REPLACE(t.value, ':', '.'), 2) AS INT) * 60
+                          + TRY_CAST(PARSENAME(REPLACE(t.value, ':', '.'), 1) AS INT)
+            END, 0)
+    FROM dbo.songs s
+    CROSS APPLY (SELECT LTRIM(RTRIM(CAST(s.duration AS NVARCHAR(20)))) AS value) t
+    WHERE s.duration_seconds IS NULL;
+
+    IF @@ROWCOUNT = 0 BREAK;
+END
+GO
+
+-- Once every client reads duration_seconds, finish the migration with:
+--   ALTER TABLE dbo.songs ALTER COLUMN duration_seconds INT NOT NULL;
+--   ALTER TABLE dbo.songs DROP COLUMN duration;
@@ -0,0 +1,26 @@
+-- Migration 02: sparse playlist ordering keys
+-- Widens playlist_songs.position to BIGINT and respaces every playlist to
+-- keys 1048576 apart (PositionKeys.BIGINT_GAP), so inserts and moves only
+-- touch the moved row. The application also works on the INT column with a
+-- smaller gap and respaces playlists lazily, so this script is optional.
+-- Safe to run more than once.
+
+IF EXISTS (SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS
+           WHERE TABLE_NAME = 'playlist_songs' AND COLUMN_NAME = 'position' AND DATA_TYPE = 'int')
+    ALTER TABLE dbo.playlist_songs ALTER COLUMN position BIGINT NOT NULL;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes
+               WHERE name = 'ix_playlist_songs_position' AND object_id = OBJECT_ID('dbo.playlist_songs'))
+    CREATE INDEX ix_playlist_songs_position ON dbo.playlist_songs (playlist_id, position);
+GO
+
+WITH ordered AS (
+    SELECT position,
+           ROW_NUMBER() OVER (PARTITION BY playlist_id ORDER BY position, song_id) AS rn
+    FROM dbo.playlist_songs
+)
+UPDATE ordered
+SET position = rn * CAST(1048576 AS BIGINT)
+WHERE position <> rn * CAST(1048576 AS BIGINT);
+GO
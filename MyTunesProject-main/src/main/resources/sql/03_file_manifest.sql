@@ -0,0 +1,17 @@
+-- Migration 03: file manifest for incremental library scans
+-- Adds song_files with the size, modification time (epoch milliseconds) and
+-- sampled content hash of each song file as seen by the last scan. A rescan
+-- compares these with the file system and only reads files whose size or
+-- modification time changed. The path stays in songs.file_path. Songs
+-- without a row are fingerprinted on the next scan, so no backfill is needed.
+-- Safe to run more than once.
+
+IF OBJECT_ID('dbo.song_files', 'U') IS NULL
+    CREATE TABLE dbo.song_files (
+        song_id      INT    NOT NULL PRIMARY KEY
+                     REFERENCES dbo.songs (id) ON DELETE CASCADE,
+        file_size    BIGINT NOT NULL,
+        modified_at  BIGINT NOT NULL,
+        content_hash BIGINT NOT NULL
+    );
+GO
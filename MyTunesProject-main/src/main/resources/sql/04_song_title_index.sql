@@ -0,0 +1,10 @@
+-- Migration 04: index for keyset paging of the song list
+-- The song table is read page by page in (title, id) order. With this index
+-- each page is a seek plus a short range scan instead of a sort of the
+-- whole table.
+-- Safe to run more than once.
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes
+               WHERE name = 'ix_songs_title_id' AND object_id = OBJECT_ID('dbo.songs'))
+    CREATE INDEX ix_songs_title_id ON dbo.songs (title, id);
+GO
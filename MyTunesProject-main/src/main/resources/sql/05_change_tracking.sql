@@ -0,0 +1,31 @@
+-- Migration 05: change tracking for incremental reloads
+-- Adds a rowversion column to songs, playlists and playlist_songs. SQL
+-- Server sets it from one database-wide counter on every insert and update,
+-- so a client that saved the library at version V only reads the rows with
+-- row_version > V on its next start. Deleted rows leave no trace; clients
+-- notice them because the row counts no longer add up, and only then read
+-- the ids. Without this script the application reloads the whole library
+-- on every start.
+-- Safe to run more than once.
+
+IF COL_LENGTH('dbo.songs', 'row_version') IS NULL
+    ALTER TABLE dbo.songs ADD row_version rowversion;
+GO
+
+IF COL_LENGTH('dbo.playlists', 'row_version') IS NULL
+    ALTER TABLE dbo.playlists ADD row_version rowversion;
+GO
+
+IF COL_LENGTH('dbo.playlist_songs', 'row_version') IS NULL
+    ALTER TABLE dbo.playlist_songs ADD row_version rowversion;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes
+               WHERE name = 'ix_songs_row_version' AND object_id = OBJECT_ID('dbo.songs'))
+    CREATE INDEX ix_songs_row_version ON dbo.songs (row_version);
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes
+               WHERE name = 'ix_playlist_songs_row_version' AND object_id = OBJECT_ID('dbo.playlist_songs'))
+    CREATE INDEX ix_playlist_songs_row_version ON dbo.playlist_songs (row_version);
+GO
@@ -0,0 +1,64 @@
+-- Schema for the embedded (H2) backend
+-- Same tables, columns and indexes as the SQL Server database after
+-- migrations 01 to 05, without the legacy "MM:SS" duration column, since a
+-- new embedded library has no old clients to stay compatible with. The
+-- database runs in MSSQLServer mode, so the DAOs use the same SQL for both.
+-- That mode keeps H2's case-sensitive comparison, so text columns are
+-- VARCHAR_IGNORECASE to sort and match like SQL Server's default collation.
+-- Run by DBConnector on every start of the embedded backend.
+-- Safe to run more than once.
+
+-- Stands in for SQL Server's rowversion: one counter for every table
+CREATE SEQUENCE IF NOT EXISTS row_versions;
+
+CREATE TABLE IF NOT EXISTS songs (
+    id               INT IDENTITY(1,1) PRIMARY KEY,
+    title            VARCHAR_IGNORECASE(255) NOT NULL,
+    artist           VARCHAR_IGNORECASE(255),
+    category         VARCHAR_IGNORECASE(100),
+    duration_seconds INT,
+    file_path        VARCHAR_IGNORECASE(500)
+);
+
+CREATE INDEX IF NOT EXISTS ix_songs_title_id ON songs (title, id);
+
+CREATE TABLE IF NOT EXISTS playlists (
+    id   INT IDENTITY(1,1) PRIMARY KEY,
+    name VARCHAR_IGNORECASE(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS playlist_songs (
+    playlist_id INT    NOT NULL REFERENCES playlists (id) ON DELETE CASCADE,
+    song_id     INT    NOT NULL REFERENCES songs (id) ON DELETE CASCADE,
+    position    BIGINT NOT NULL,
+    PRIMARY KEY (playlist_id, song_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_playlist_songs_position ON playlist_songs (playlist_id, position);
+
+CREATE TABLE IF NOT EXISTS song_files (
+    song_id      INT    NOT NULL PRIMARY KEY REFERENCES songs (id) ON DELETE CASCADE,
+    file_size    BIGINT NOT NULL,
+    modified_at  BIGINT NOT NULL,
+    content_hash BIGINT NOT NULL
+);
+
+-- Libraries created with case-sensitive text columns are converted; for
+-- columns that already ignore case these statements change nothing
+ALTER TABLE songs ALTER COLUMN title SET DATA TYPE VARCHAR_IGNORECASE(255);
+ALTER TABLE songs ALTER COLUMN artist SET DATA TYPE VARCHAR_IGNORECASE(255);
+ALTER TABLE songs ALTER COLUMN category SET DATA TYPE VARCHAR_IGNORECASE(100);
+ALTER TABLE songs ALTER COLUMN file_path SET DATA TYPE VARCHAR_IGNORECASE(500);
+ALTER TABLE playlists ALTER COLUMN name SET DATA TYPE VARCHAR_IGNORECASE(255);
+
+-- Change tracking (migration 05), added separately so libraries created
+-- before it get the columns too
+ALTER TABLE songs ADD COLUMN IF NOT EXISTS
+    row_version BIGINT DEFAULT NEXT VALUE FOR row_versions ON UPDATE NEXT VALUE FOR row_versions;
+ALTER TABLE playlists ADD COLUMN IF NOT EXISTS
+    row_version BIGINT DEFAULT NEXT VALUE FOR row_versions ON UPDATE NEXT VALUE FOR row_versions;
+ALTER TABLE playlist_songs ADD COLUMN IF NOT EXISTS
+    row_version BIGINT DEFAULT NEXT VALUE FOR row_versions ON UPDATE NEXT VALUE FOR row_versions;
+
+CREATE INDEX IF NOT EXISTS ix_songs_row_version ON songs (row_version);
+CREATE INDEX IF NOT EXISTS ix_playlist_songs_row_version ON playlist_songs (row_version);